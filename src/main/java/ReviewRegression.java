@@ -1,4 +1,5 @@
 import com.ericrobertbrewer.bookspider.sites.db.DatabaseHelper;
+import com.ericrobertbrewer.bookspider.sites.db.DatabaseProfile;
 import com.ericrobertbrewer.bookspider.sites.meta.BookCave;
 
 import java.io.IOException;
@@ -34,7 +35,7 @@ public class ReviewRegression {
         }
 
         //get reviews
-        db.connectToContentsDatabase();
+        db.connectToContentsDatabase(DatabaseProfile.analytics());
         List<String> texts = new LinkedList<>();
         List<String> ratings = new LinkedList<>();
         try {
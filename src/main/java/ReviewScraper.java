@@ -1,10 +1,12 @@
 import com.ericrobertbrewer.bookspider.sites.db.DatabaseHelper;
+import com.ericrobertbrewer.bookspider.sites.db.DatabaseProfile;
 import com.ericrobertbrewer.bookspider.sites.meta.BookCave;
+import com.ericrobertbrewer.web.driver.ChromeDriverFactory;
 import com.ericrobertbrewer.web.driver.DriverUtils;
+import com.ericrobertbrewer.web.driver.WebDriverPool;
 import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
-import org.openqa.selenium.chrome.ChromeDriver;
-import org.openqa.selenium.chrome.ChromeOptions;
 
 import java.io.PrintWriter;
 import java.util.List;
@@ -15,7 +17,7 @@ public class ReviewScraper {
     static DatabaseHelper db = new DatabaseHelper(Logger.getLogger("string".getClass().getSimpleName()));
 
     public static void main(String args[]){
-        db.connectToContentsDatabase();
+        db.connectToContentsDatabase(DatabaseProfile.analytics());
         List<BookCave.Book> books = null;
        try {
           books = db.getBookCaveBooks();
@@ -23,12 +25,15 @@ public class ReviewScraper {
            System.out.println("BAD SQL");
        }
         System.setProperty("webdriver.chrome.driver", "D:\\PonyStreamer\\src\\chromedriver.exe");
-        ChromeDriver driver = new ChromeDriver();
+        WebDriverPool pool = new WebDriverPool(new ChromeDriverFactory(), 1, db.getLogger());
+        pool.setMaxPageLoads(200);
 
         for(BookCave.Book book: books){
 
 
+            WebDriver driver = null;
             try {
+                driver = pool.lease();
                 driver.navigate().to(book.amazonKindleUrl);
 
                 DriverUtils.scrollDown(driver, 2, 1000);
@@ -40,9 +45,14 @@ public class ReviewScraper {
                 tagfile.close();
             } catch (Exception e){
 
+            } finally {
+                if (driver != null) {
+                    pool.release(driver);
+                }
             }
 
         }
+        pool.close();
     }
 
 
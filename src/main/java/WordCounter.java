@@ -1,4 +1,5 @@
 import com.ericrobertbrewer.bookspider.sites.db.DatabaseHelper;
+import com.ericrobertbrewer.bookspider.sites.db.DatabaseProfile;
 import com.ericrobertbrewer.bookspider.sites.meta.BookCave;
 
 
@@ -61,7 +62,7 @@ public class WordCounter {
     }
 
     public static Map<String, Map<String, Integer>> getCounts() {
-        db.connectToContentsDatabase();
+        db.connectToContentsDatabase(DatabaseProfile.analytics());
         String ignore = "<div </div> <span var <a the &amp;&amp; if to of </a> #&gt; </span> a-row class=\"a-row: &lt;# class=\"a-icon class=\"a-section <td and <script in window.$Nav class=\"a-size-base function" +
                 "a-text-normal\" your: display:: </script>: for: type=\"hidden\": class=\"a-link-normal: <input: class=\"a-link-normal\": Book: class=\"a-size-small: width:: return: font-size:: <option:  class=\"a-declarative\":" +
                 "this: type=\"text/javascript\">:" ;
@@ -76,9 +77,8 @@ public class WordCounter {
         //Adult+ also has color Kindle: before color::
 
         try {
-            List<BookCave.BookRating> books = db.getBookCaveRatings();
             Map<String, Map<String, Integer>> wordCounts = new HashMap<>();
-            for(BookCave.BookRating book : books){
+            db.forEachBookCaveRating(book -> {
                 try {
                     List<String> lines = Files.readAllLines(Paths.get("Reviews/" + book.bookId +".txt"));
                     //System.out.println(book.rating);
@@ -103,7 +103,7 @@ public class WordCounter {
                 }catch (IOException io){
                     //System.out.println(book.bookId);
                 }
-            }
+            });
             return wordCounts;
         }catch (SQLException e){
             System.out.println("BAD SQL");
@@ -18,8 +18,6 @@ public class Launcher {
     }
 
     public static <T extends SiteScraper> void launch(String[] args, SiteScraper.Provider<T> provider) throws IOException {
-        // Create web driver factory.
-        final WebDriverFactory factory = new ChromeDriverFactory();
         // Create logger.
         final String id = provider.getId();
         final Logger logger = Logger.getLogger(provider.getClass().getSimpleName());
@@ -32,6 +30,8 @@ public class Launcher {
         final File contentFolder = Folders.getOrMakeContentFolder(id);
         // Create site scraper.
         final T siteScraper = provider.newInstance(logger);
+        // Create web driver factory.
+        final WebDriverFactory factory = new ChromeDriverFactory(siteScraper.getDriverProfile());
         System.out.println("Starting scrape...");
         siteScraper.scrape(factory, contentFolder, args, () -> {
             fileHandler.close();
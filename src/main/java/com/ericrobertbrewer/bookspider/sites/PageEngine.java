@@ -0,0 +1,36 @@
+package com.ericrobertbrewer.bookspider.sites;
+
+import java.util.Locale;
+
+/**
+ * How a scraper reads the pages of a site.
+ */
+public enum PageEngine {
+
+    /**
+     * Navigate a browser to each page, then query the page element by element.
+     * Works for any page, but each browser process can only load one page at a time.
+     */
+    DRIVER,
+
+    /**
+     * Navigate a browser to each page, then parse a single snapshot of its source locally.
+     * The browser is only queried again for content which needs JavaScript, e.g., tooltips.
+     */
+    SNAPSHOT,
+
+    /**
+     * Fetch each page over plain HTTP, then parse it locally.
+     * Only works for server-rendered pages, but many fetches may run concurrently in one process.
+     */
+    HTTP;
+
+    /**
+     * @param arg Name of the engine, in any case, e.g., `driver` or `http`.
+     * @return The engine.
+     * @throws IllegalArgumentException When no engine has the given name.
+     */
+    public static PageEngine fromArg(String arg) {
+        return valueOf(arg.trim().toUpperCase(Locale.US));
+    }
+}
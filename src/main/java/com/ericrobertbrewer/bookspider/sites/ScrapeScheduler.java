@@ -0,0 +1,104 @@
+package com.ericrobertbrewer.bookspider.sites;
+
+import com.ericrobertbrewer.bookspider.Launcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the stages of a scraping session (e.g., exploring the frontier, scraping books, downloading files),
+ * each on its own fixed number of threads, and reports completion exactly once when every stage has finished.
+ */
+public class ScrapeScheduler {
+
+    /**
+     * A unit of work run by each thread of a stage.
+     * Workers typically loop on a {@link WorkQueue} until it has been closed and drained.
+     */
+    public interface Worker {
+        void work() throws Exception;
+    }
+
+    private final Logger logger;
+    private final List<ExecutorService> executors = new ArrayList<>();
+    private final List<CompletableFuture<Void>> stages = new ArrayList<>();
+    private boolean isCompleting = false;
+
+    public ScrapeScheduler(Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Start a stage.
+     *
+     * @param name    Name of the stage. Threads are named `[name]-[index]`.
+     * @param threads Number of threads on which `worker` will be run concurrently.
+     * @param worker  Run once by each thread. Exceptions are logged, never propagated.
+     * @return A future which completes when every thread of this stage has finished, regardless of errors.
+     */
+    public synchronized CompletableFuture<Void> submit(String name, int threads, Worker worker) {
+        if (isCompleting) {
+            throw new IllegalStateException("Unable to submit stage `" + name + "` after `whenComplete` has been called.");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("Stage `" + name + "` must have at least one thread; found " + threads + ".");
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, newThreadFactory(name));
+        executors.add(executor);
+        final List<CompletableFuture<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(CompletableFuture.runAsync(() -> run(worker), executor));
+        }
+        final CompletableFuture<Void> stage = CompletableFuture.allOf(workers.toArray(new CompletableFuture<?>[0]));
+        stages.add(stage);
+        return stage;
+    }
+
+    /**
+     * Invoke `callback` exactly once, after every stage submitted so far has finished.
+     * No stage may be submitted after calling this method.
+     *
+     * @param callback Notified on the thread which finishes last.
+     */
+    public synchronized void whenComplete(Launcher.Callback callback) {
+        if (isCompleting) {
+            throw new IllegalStateException("`whenComplete` has already been called.");
+        }
+        isCompleting = true;
+        CompletableFuture.allOf(stages.toArray(new CompletableFuture<?>[0])).whenComplete((result, t) -> {
+            shutdown();
+            callback.onComplete();
+        });
+    }
+
+    private void run(Worker worker) {
+        final String name = Thread.currentThread().getName();
+        try {
+            worker.work();
+            logger.log(Level.INFO, "Thread `" + name + "` finished.");
+        } catch (InterruptedException e) {
+            logger.log(Level.WARNING, "Thread `" + name + "` was interrupted.", e);
+            Thread.currentThread().interrupt();
+        } catch (Throwable t) {
+            logger.log(Level.SEVERE, "Exiting thread `" + name + "` with cause:", t);
+        }
+    }
+
+    private synchronized void shutdown() {
+        for (ExecutorService executor : executors) {
+            executor.shutdown();
+        }
+    }
+
+    private static ThreadFactory newThreadFactory(String name) {
+        final AtomicInteger index = new AtomicInteger(0);
+        return runnable -> new Thread(runnable, name + "-" + index.getAndIncrement());
+    }
+}
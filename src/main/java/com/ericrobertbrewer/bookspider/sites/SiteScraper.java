@@ -1,6 +1,7 @@
 package com.ericrobertbrewer.bookspider.sites;
 
 import com.ericrobertbrewer.bookspider.Launcher;
+import com.ericrobertbrewer.web.driver.DriverProfile;
 import com.ericrobertbrewer.web.driver.WebDriverFactory;
 
 import java.io.File;
@@ -15,9 +16,11 @@ public abstract class SiteScraper {
     }
 
     private final Logger logger;
+    private final ScrapeScheduler scheduler;
 
     protected SiteScraper(Logger logger) {
         this.logger = logger;
+        this.scheduler = new ScrapeScheduler(logger);
     }
 
     /**
@@ -30,7 +33,22 @@ public abstract class SiteScraper {
      */
     public abstract void scrape(WebDriverFactory factory, File contentFolder, String[] args, Launcher.Callback callback);
 
+    /**
+     * The kind of browser which the factory passed to {@link #scrape} should launch.
+     * Scrapers which only read text from the DOM should override this to skip rendering unused assets.
+     */
+    public DriverProfile getDriverProfile() {
+        return DriverProfile.defaults();
+    }
+
     protected Logger getLogger() {
         return logger;
     }
+
+    /**
+     * Used to run the threads of each stage of this scraping session.
+     */
+    protected ScrapeScheduler getScheduler() {
+        return scheduler;
+    }
 }
@@ -0,0 +1,63 @@
+package com.ericrobertbrewer.bookspider.sites;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+
+/**
+ * A thread-safe queue of work items which consumers can block on.
+ * Producers {@link #offer(Object)} items, then {@link #close()} the queue once no more items will arrive.
+ * Consumers {@link #take()} items until `null` is returned, which signals that the queue is both closed and drained.
+ *
+ * @param <T> The type of work item.
+ */
+public class WorkQueue<T> {
+
+    private final Deque<T> items = new ArrayDeque<>();
+    private boolean isClosed = false;
+
+    public WorkQueue() {
+    }
+
+    public WorkQueue(Collection<? extends T> items) {
+        this.items.addAll(items);
+    }
+
+    public synchronized void offer(T item) {
+        if (isClosed) {
+            throw new IllegalStateException("Unable to offer item to closed work queue.");
+        }
+        items.offer(item);
+        notify();
+    }
+
+    /**
+     * Wait for the next item.
+     *
+     * @return The next item, or `null` when the queue has been closed and no items remain.
+     * @throws InterruptedException When the calling thread is interrupted while waiting.
+     */
+    public synchronized T take() throws InterruptedException {
+        while (items.isEmpty() && !isClosed) {
+            wait();
+        }
+        return items.poll();
+    }
+
+    /**
+     * Signal that no more items will be offered. Idempotent.
+     * Consumers which are waiting will drain any remaining items, then receive `null`.
+     */
+    public synchronized void close() {
+        isClosed = true;
+        notifyAll();
+    }
+
+    public synchronized boolean isClosed() {
+        return isClosed;
+    }
+
+    public synchronized int size() {
+        return items.size();
+    }
+}
@@ -1,6 +1,16 @@
 package com.ericrobertbrewer.bookspider.sites.db;
 
+import org.sqlite.SQLiteConfig;
+
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -16,7 +26,18 @@ public abstract class AbstractDatabaseHelper {
     }
 
     private final Logger logger;
-    private Connection connection = null;
+    private String fileName = null;
+    private DatabaseProfile profile = null;
+    // The only connection which writes, shared by every thread.
+    private Connection writeConnection = null;
+    // One read-only connection for each thread which reads, opened lazily.
+    private ThreadLocal<Connection> readConnection = null;
+    private final List<Connection> readConnections = new ArrayList<>();
+    // Compiled statements of each connection, by SQL.
+    private final Map<Connection, Map<String, PreparedStatement>> statementCaches = new ConcurrentHashMap<>();
+    private final StatementMetrics statementMetrics = new StatementMetrics();
+    // Logs a summary of `statementMetrics` periodically, if enabled by the profile.
+    private ScheduledExecutorService metricsLogger = null;
 
     public AbstractDatabaseHelper(Logger logger) {
         this.logger = logger;
@@ -26,24 +47,146 @@ public abstract class AbstractDatabaseHelper {
         return logger;
     }
 
-    protected Connection getConnection() {
+    /**
+     * @return Metrics of every statement which has been executed through this helper's connections.
+     */
+    public StatementMetrics getStatementMetrics() {
+        return statementMetrics;
+    }
+
+    /**
+     * @return The connection through which every insert, update and schema change is made.
+     * SQLite allows only one writer at a time, so writers share this connection rather than contending for the lock.
+     */
+    protected Connection getWriteConnection() {
+        return writeConnection;
+    }
+
+    /**
+     * @return A read-only connection which belongs to the calling thread, so that threads may read without waiting
+     * on each other's queries.
+     * @throws SQLException When the connection cannot be opened.
+     */
+    protected Connection getReadConnection() throws SQLException {
+        if (readConnection == null) {
+            throw new SQLException("Not connected to a database.");
+        }
+        Connection connection = readConnection.get();
+        if (connection == null) {
+            connection = openConnection(true);
+            synchronized (readConnections) {
+                readConnections.add(connection);
+            }
+            readConnection.set(connection);
+        }
         return connection;
     }
 
+    /**
+     * Get the statement for `sql` on the given connection, compiling it only the first time.
+     * Callers should close the statement's result sets, but never the statement itself; it is closed by {@link #close()}.
+     * Like their connection, cached statements are not thread-safe: statements of the write connection should only be
+     * used while holding this helper's lock, and statements of a read connection only by the thread which owns it.
+     *
+     * @param connection Either {@link #getWriteConnection()} or {@link #getReadConnection()}.
+     * @param sql        SQL.
+     * @return The compiled statement, whose parameters may still be set from its last execution.
+     * @throws SQLException When an error occurs.
+     */
+    protected PreparedStatement prepareCached(Connection connection, String sql) throws SQLException {
+        final Map<String, PreparedStatement> statements = statementCaches.computeIfAbsent(connection, c -> new HashMap<>());
+        synchronized (statements) {
+            PreparedStatement statement = statements.get(sql);
+            if (statement == null) {
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+            }
+            return statement;
+        }
+    }
+
     public void connect(String fileName) {
+        connect(fileName, DatabaseProfile.defaults());
+    }
+
+    /**
+     * @param fileName Path to the database file.
+     * @param profile  How every connection to the database is opened.
+     */
+    public void connect(String fileName, DatabaseProfile profile) {
+        this.fileName = fileName;
+        this.profile = profile;
         try {
-            connection = DriverManager.getConnection("jdbc:sqlite:" + fileName);
+            writeConnection = openConnection(false);
+            readConnection = new ThreadLocal<>();
         } catch (SQLException e) {
             logger.log(Level.SEVERE, "Unable to connect to database: `" + fileName + "`.", e);
+            return;
+        }
+        final long intervalMillis = profile.getMetricsLogIntervalMillis();
+        if (intervalMillis > 0L) {
+            metricsLogger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+            metricsLogger.scheduleAtFixedRate(this::logStatementMetrics, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
         }
     }
 
+    private void logStatementMetrics() {
+        if (!statementMetrics.isEmpty()) {
+            logger.log(Level.INFO, "Statement metrics of `" + fileName + "`:" + statementMetrics.summarize());
+        }
+    }
+
+    private Connection openConnection(boolean isReadOnly) throws SQLException {
+        final SQLiteConfig config = new SQLiteConfig();
+        config.setBusyTimeout(profile.getBusyTimeoutMillis());
+        config.setReadOnly(isReadOnly);
+        if (!isReadOnly) {
+            // The journal mode persists in the database file, and can only be changed by a connection which may write.
+            config.setJournalMode(profile.getJournalMode());
+        }
+        config.setSynchronous(profile.getSynchronous());
+        // A negative size is in kibibytes, rather than pages.
+        config.setCacheSize(-profile.getCacheSizeKibibytes());
+        config.setPragma(SQLiteConfig.Pragma.MMAP_SIZE, String.valueOf(profile.getMmapSizeBytes()));
+        final Connection connection = DriverManager.getConnection("jdbc:sqlite:" + fileName, config.toProperties());
+        if (!isReadOnly && profile.isWal()) {
+            final Statement pragma = connection.createStatement();
+            pragma.execute("PRAGMA wal_autocheckpoint=" + profile.getWalAutoCheckpointPages() + ";");
+            pragma.close();
+        }
+        return InstrumentedJdbc.wrap(connection, statementMetrics);
+    }
+
+    /**
+     * Copy the write-ahead log back into the database file.
+     * Only useful with a WAL {@link DatabaseProfile}; otherwise, this does nothing.
+     *
+     * @param truncate When `true`, wait for readers to finish, then truncate the log to zero bytes.
+     *                 Otherwise, copy as much as possible without waiting on any reader.
+     * @throws SQLException When an error occurs.
+     */
+    public synchronized void checkpoint(boolean truncate) throws SQLException {
+        if (!profile.isWal()) {
+            return;
+        }
+        final Statement pragma = getWriteConnection().createStatement();
+        final ResultSet result = pragma.executeQuery("PRAGMA wal_checkpoint(" + (truncate ? "TRUNCATE" : "PASSIVE") + ");");
+        if (result.next() && result.getInt(1) != 0) {
+            logger.log(Level.INFO, "Checkpoint of `" + fileName + "` was blocked by another connection.");
+        }
+        pragma.close();
+    }
+
     public boolean isConnected() {
-        if (connection == null) {
+        if (writeConnection == null) {
             return false;
         }
         try {
-            return !connection.isClosed();
+            return !writeConnection.isClosed();
         } catch (SQLException e) {
             logger.log(Level.SEVERE, "Unable to query whether database connection is closed.", e);
         }
@@ -51,23 +194,51 @@ public abstract class AbstractDatabaseHelper {
     }
 
     public void close() {
+        if (metricsLogger != null) {
+            metricsLogger.shutdownNow();
+            metricsLogger = null;
+            logStatementMetrics();
+        }
+        for (Map<String, PreparedStatement> statements : statementCaches.values()) {
+            synchronized (statements) {
+                for (PreparedStatement statement : statements.values()) {
+                    try {
+                        statement.close();
+                    } catch (SQLException e) {
+                        logger.log(Level.WARNING, "Unable to close cached statement.", e);
+                    }
+                }
+            }
+        }
+        statementCaches.clear();
+        synchronized (readConnections) {
+            for (Connection connection : readConnections) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    logger.log(Level.WARNING, "Unable to close read-only database connection.", e);
+                }
+            }
+            readConnections.clear();
+        }
+        readConnection = null;
         try {
-            connection.close();
-            connection = null;
+            writeConnection.close();
+            writeConnection = null;
         } catch (SQLException e) {
             logger.log(Level.SEVERE, "Unable to close database connection.", e);
         }
     }
 
     public boolean recordExists(String table, String key, String value) throws SQLException {
-        final PreparedStatement select = getConnection().prepareStatement(
+        final PreparedStatement select = prepareCached(getReadConnection(),
                 "SELECT " + key +
                 " FROM " + table +
                 " WHERE " + key + "=?;");
         select.setString(1, value);
         final ResultSet result = select.executeQuery();
         final boolean exists = result.next();
-        select.close();  // Also closes `result`.
+        result.close();
         return exists;
     }
 
@@ -0,0 +1,52 @@
+package com.ericrobertbrewer.bookspider.sites.db;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Digests the scraped fields of a record into a `content_hash` column,
+ * so that a record which is scraped again can be compared to the saved one without reading it back.
+ * <p>
+ * Fields are length-prefixed, so `("ab", "c")` and `("a", "bc")` differ, and `null` differs from every string.
+ */
+class ContentHash {
+
+    private final MessageDigest digest;
+
+    ContentHash() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    ContentHash add(String value) {
+        if (value == null) {
+            return add(-1L);
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        add((long) bytes.length);
+        digest.update(bytes);
+        return this;
+    }
+
+    ContentHash add(long value) {
+        digest.update(ByteBuffer.allocate(Long.BYTES).putLong(value).array());
+        return this;
+    }
+
+    ContentHash add(boolean value) {
+        return add(value ? 1L : 0L);
+    }
+
+    /**
+     * @return The first 64 bits of the digest, which fit in an `INTEGER` column.
+     */
+    long get() {
+        return ByteBuffer.wrap(digest.digest()).getLong();
+    }
+}
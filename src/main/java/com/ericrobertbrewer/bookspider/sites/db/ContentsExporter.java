@@ -0,0 +1,361 @@
+package com.ericrobertbrewer.bookspider.sites.db;
+
+import com.ericrobertbrewer.bookspider.Folders;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports every Amazon book of the contents database, joined by ASIN to its BookCave and CommonSenseMedia books and
+ * to the path of its paragraphs file, into gzipped NDJSON or CSV shards.
+ * <p>
+ * Each shard covers one range of rows and is written by its own thread, from its own streaming query,
+ * so no table is ever held in memory. Exports may be incremental: only books whose rows (in any of the three tables)
+ * were updated after a watermark are written.
+ */
+public class ContentsExporter {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 4) {
+            throw new IllegalArgumentException("Usage: <output-folder> [format=ndjson|csv] [shards=4] [incremental=true]");
+        }
+        final File outputFolder = new File(args[0]);
+        final Format format;
+        if (args.length > 1) {
+            format = Format.fromArg(args[1]);
+        } else {
+            format = Format.NDJSON;
+        }
+        final int shards;
+        if (args.length > 2) {
+            shards = Integer.parseInt(args[2]);
+        } else {
+            shards = 4;
+        }
+        final boolean isIncremental;
+        if (args.length > 3) {
+            isIncremental = Boolean.parseBoolean(args[3]);
+        } else {
+            isIncremental = true;
+        }
+        final Logger logger = Logger.getLogger(ContentsExporter.class.getSimpleName());
+        final DatabaseHelper databaseHelper = new DatabaseHelper(logger);
+        databaseHelper.connectToContentsDatabase(DatabaseProfile.analytics());
+        final File paragraphsFolder = new File(Folders.getOrMakeContentFolder(Folders.ID_AMAZON_KINDLE), "paragraphs");
+        final ContentsExporter exporter = new ContentsExporter(databaseHelper, paragraphsFolder, logger);
+        exporter.setFormat(format);
+        exporter.setShards(shards);
+        try {
+            exporter.exportSinceWatermark(outputFolder, isIncremental);
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Unable to read contents database.", e);
+        } catch (InterruptedException e) {
+            logger.log(Level.WARNING, "Interrupted while exporting.", e);
+        } finally {
+            databaseHelper.close();
+        }
+    }
+
+    public enum Format {
+        NDJSON("ndjson"),
+        CSV("csv");
+
+        public static Format fromArg(String arg) {
+            for (Format format : values()) {
+                if (format.extension.equalsIgnoreCase(arg)) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("Unknown export format: `" + arg + "`.");
+        }
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+    }
+
+    // File in the output folder which holds the watermark of the next incremental export.
+    public static final String WATERMARK_FILE_NAME = "watermark.txt";
+
+    // Books may be committed a little while after their `last_updated` times are set (e.g., by a write-behind queue),
+    // so the next export starts this long before the current one did. Such books may be exported twice.
+    private static final long WATERMARK_LAG_MILLIS = 10L * 60L * 1000L;
+
+    private static final String PARAGRAPHS_FILE_COLUMN = "paragraphs_file";
+
+    private static final String SELECT_BOOKS = "SELECT" +
+            " a.asin AS asin" +
+            ",a.title AS amazon_title" +
+            ",a.is_kindle_unlimited AS amazon_is_kindle_unlimited" +
+            ",a.is_freetime_unlimited AS amazon_is_freetime_unlimited" +
+            ",a.price AS amazon_price" +
+            ",b.id AS bookcave_id" +
+            ",b.title AS bookcave_title" +
+            ",b.authors AS bookcave_authors" +
+            ",b.community_ratings_count AS bookcave_community_ratings_count" +
+            ",b.community_average_rating AS bookcave_community_average_rating" +
+            ",b.pages AS bookcave_pages" +
+            ",bg.value AS bookcave_genres" +
+            ",c.id AS commonsensemedia_id" +
+            ",c.title AS commonsensemedia_title" +
+            ",c.authors AS commonsensemedia_authors" +
+            ",c.age AS commonsensemedia_age" +
+            ",c.stars AS commonsensemedia_stars" +
+            ",cg.value AS commonsensemedia_genre" +
+            ",c.topics AS commonsensemedia_topics" +
+            ",ct.value AS commonsensemedia_type" +
+            ",c.pages AS commonsensemedia_pages" +
+            ",MAX(IFNULL(a.last_updated, 0), IFNULL(b.last_updated, 0), IFNULL(c.last_updated, 0)) AS last_updated" +
+            " FROM " + DatabaseHelper.TABLE_AMAZON_BOOKS + " a" +
+            " LEFT JOIN " + DatabaseHelper.TABLE_BOOKCAVE_BOOKS + " b ON b.asin=a.asin" +
+            " LEFT JOIN " + DatabaseHelper.TABLE_COMMONSENSEMEDIA_BOOKS + " c ON c.asin=a.asin" +
+            " LEFT JOIN " + DatabaseHelper.TABLE_STRINGS + " bg ON bg.id=b.genres_id" +
+            " LEFT JOIN " + DatabaseHelper.TABLE_STRINGS + " cg ON cg.id=c.genre_id" +
+            " LEFT JOIN " + DatabaseHelper.TABLE_STRINGS + " ct ON ct.id=c.type_id" +
+            " WHERE a.rowid BETWEEN ? AND ?" +
+            " AND MAX(IFNULL(a.last_updated, 0), IFNULL(b.last_updated, 0), IFNULL(c.last_updated, 0))>?" +
+            " ORDER BY a.rowid;";
+
+    private final DatabaseHelper databaseHelper;
+    private final File paragraphsFolder;
+    private final Logger logger;
+    private Format format = Format.NDJSON;
+    private int shards = 4;
+    private int fetchSize = 256;
+
+    /**
+     * @param databaseHelper   Should have already been connected. Not closed by this exporter.
+     * @param paragraphsFolder Folder of the paragraphs files of Amazon books.
+     * @param logger           Logger.
+     */
+    public ContentsExporter(DatabaseHelper databaseHelper, File paragraphsFolder, Logger logger) {
+        this.databaseHelper = databaseHelper;
+        this.paragraphsFolder = paragraphsFolder;
+        this.logger = logger;
+    }
+
+    public void setFormat(Format format) {
+        this.format = format;
+    }
+
+    /**
+     * @param shards Number of files to write, each on its own thread.
+     */
+    public void setShards(int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("Number of shards must be positive: `" + shards + "`.");
+        }
+        this.shards = shards;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Export every book which was updated after the watermark in `outputFolder`, then advance the watermark.
+     *
+     * @param outputFolder  Folder to which shards are written.
+     * @param isIncremental When `false`, the watermark is ignored and every book is exported.
+     * @return The number of books exported.
+     */
+    public long exportSinceWatermark(File outputFolder, boolean isIncremental) throws IOException, SQLException, InterruptedException {
+        final File watermarkFile = new File(outputFolder, WATERMARK_FILE_NAME);
+        long since = 0L;
+        if (isIncremental && watermarkFile.exists()) {
+            since = Long.parseLong(new String(Files.readAllBytes(watermarkFile.toPath()), StandardCharsets.UTF_8).trim());
+        }
+        final long start = System.currentTimeMillis();
+        final long count = export(outputFolder, "books-" + start, since);
+        Files.write(watermarkFile.toPath(), String.valueOf(start - WATERMARK_LAG_MILLIS).getBytes(StandardCharsets.UTF_8));
+        return count;
+    }
+
+    /**
+     * @param outputFolder Folder to which shards are written. Created if needed.
+     * @param prefix       Prefix of the name of each shard file.
+     * @param since        Only books which were updated after this time, in milliseconds since the epoch, are exported.
+     * @return The number of books exported.
+     */
+    public long export(File outputFolder, String prefix, long since) throws IOException, SQLException, InterruptedException {
+        if (!outputFolder.exists() && !outputFolder.mkdirs()) {
+            throw new IOException("Unable to create output folder: `" + outputFolder.getPath() + "`.");
+        }
+        final long[] rowIdRange = getRowIdRange();
+        final long shardSize = (rowIdRange[1] - rowIdRange[0]) / shards + 1;
+        final ExecutorService executor = Executors.newFixedThreadPool(shards);
+        final List<Future<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < shards; i++) {
+            final File file = new File(outputFolder, String.format("%s-%05d.%s.gz", prefix, i, format.extension));
+            final long fromRowId = rowIdRange[0] + i * shardSize;
+            final long toRowId = fromRowId + shardSize - 1;
+            futures.add(executor.submit(() -> exportShard(file, fromRowId, toRowId, since)));
+        }
+        executor.shutdown();
+        long count = 0L;
+        try {
+            for (Future<Long> future : futures) {
+                count += future.get();
+            }
+        } catch (ExecutionException e) {
+            executor.shutdownNow();
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        logger.log(Level.INFO, "Exported " + count + " book(s) updated since " + since + " to " + shards + " shard(s) in `" + outputFolder.getPath() + "`.");
+        return count;
+    }
+
+    private long[] getRowIdRange() throws SQLException {
+        final Statement select = databaseHelper.getReadConnection().createStatement();
+        try {
+            final ResultSet result = select.executeQuery("SELECT IFNULL(MIN(rowid), 0), IFNULL(MAX(rowid), 0) FROM " + DatabaseHelper.TABLE_AMAZON_BOOKS + ";");
+            result.next();
+            return new long[]{result.getLong(1), result.getLong(2)};
+        } finally {
+            select.close();
+        }
+    }
+
+    /**
+     * Performed by each shard thread, through its own read connection.
+     * The shard is written to a temporary file, which is only renamed once it is complete.
+     */
+    private long exportShard(File file, long fromRowId, long toRowId, long since) throws IOException, SQLException {
+        final File partFile = new File(file.getPath() + ".part");
+        long count = 0L;
+        final PreparedStatement select = databaseHelper.getReadConnection().prepareStatement(SELECT_BOOKS);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(partFile)), StandardCharsets.UTF_8))) {
+            select.setFetchSize(fetchSize);
+            select.setLong(1, fromRowId);
+            select.setLong(2, toRowId);
+            select.setLong(3, since);
+            final ResultSet result = select.executeQuery();
+            final ResultSetMetaData metaData = result.getMetaData();
+            final String[] columns = new String[metaData.getColumnCount() + 1];
+            for (int i = 0; i < columns.length - 1; i++) {
+                columns[i] = metaData.getColumnLabel(i + 1);
+            }
+            columns[columns.length - 1] = PARAGRAPHS_FILE_COLUMN;
+            if (format == Format.CSV) {
+                writeCsvRow(writer, columns);
+            }
+            final Object[] values = new Object[columns.length];
+            while (result.next()) {
+                for (int i = 0; i < values.length - 1; i++) {
+                    values[i] = result.getObject(i + 1);
+                }
+                final File paragraphsFile = new File(paragraphsFolder, result.getString("asin") + ".txt");
+                values[values.length - 1] = paragraphsFile.exists() ? paragraphsFile.getPath() : null;
+                if (format == Format.CSV) {
+                    writeCsvRow(writer, values);
+                } else {
+                    writeJsonRow(writer, columns, values);
+                }
+                count++;
+            }
+        } finally {
+            select.close();
+        }
+        Files.move(partFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return count;
+    }
+
+    private static void writeCsvRow(Writer writer, Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] == null) {
+                continue;
+            }
+            final String value = values[i].toString();
+            if (value.indexOf(',') != -1 || value.indexOf('"') != -1 || value.indexOf('\n') != -1 || value.indexOf('\r') != -1) {
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(value);
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    private static void writeJsonRow(Writer writer, String[] columns, Object[] values) throws IOException {
+        writer.write('{');
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeJsonString(writer, columns[i]);
+            writer.write(':');
+            if (values[i] == null) {
+                writer.write("null");
+            } else if (values[i] instanceof Number) {
+                writer.write(values[i].toString());
+            } else {
+                writeJsonString(writer, values[i].toString());
+            }
+        }
+        writer.write("}\n");
+    }
+
+    private static void writeJsonString(Writer writer, String s) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        writer.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        writer.write(c);
+                    }
+            }
+        }
+        writer.write('"');
+    }
+}
@@ -2,17 +2,23 @@ package com.ericrobertbrewer.bookspider.sites.db;
 
 
 import com.ericrobertbrewer.bookspider.Folders;
+import com.ericrobertbrewer.bookspider.sites.BookScrapeInfo;
 import com.ericrobertbrewer.bookspider.sites.meta.BookCave;
 import com.ericrobertbrewer.bookspider.sites.meta.CommonSenseMedia;
 import com.ericrobertbrewer.bookspider.sites.text.AmazonKindle;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
+import java.text.Normalizer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -24,24 +30,158 @@ public class DatabaseHelper extends AbstractDatabaseHelper {
     public static final String TABLE_BOOKCAVE_BOOK_RATING_LEVELS = "BookCaveBookRatingLevels";
     public static final String TABLE_COMMONSENSEMEDIA_BOOKS = "CommonSenseMediaBooks";
     public static final String TABLE_COMMONSENSEMEDIA_BOOK_CATEGORIES = "CommonSenseMediaBookCategories";
+    // Dictionary of repeated strings, which other tables refer to by ID.
+    public static final String TABLE_STRINGS = "Strings";
+    // Full-text indexes (FTS5 virtual tables), which are created by migrations.
+    public static final String TABLE_AMAZON_BOOK_TEXT = "AmazonBookText";
+    public static final String TABLE_AMAZON_BOOK_TEXT_FILES = "AmazonBookTextFiles";
+    public static final String TABLE_BOOKCAVE_BOOK_TEXT = "BookCaveBookText";
+    public static final String TABLE_COMMONSENSEMEDIA_BOOK_TEXT = "CommonSenseMediaBookText";
+
+    // Changes to the tables created by `createTableIfNeeded`. Only ever append to this list.
+    private static final SchemaMigrations MIGRATIONS = new SchemaMigrations()
+            .add("Add ASIN columns to book tables created before they existed", connection -> {
+                for (String table : new String[]{TABLE_BOOKCAVE_BOOKS, TABLE_COMMONSENSEMEDIA_BOOKS}) {
+                    if (!SchemaMigrations.hasColumn(connection, table, "asin")) {
+                        final Statement alter = connection.createStatement();
+                        alter.execute("ALTER TABLE " + table + " ADD COLUMN asin TEXT DEFAULT NULL;");
+                        alter.close();
+                    }
+                }
+            })
+            .add("Index ASINs of books", connection -> {
+                final Statement create = connection.createStatement();
+                create.execute("CREATE INDEX IF NOT EXISTS " + TABLE_BOOKCAVE_BOOKS + "_asin ON " + TABLE_BOOKCAVE_BOOKS + " (asin);");
+                create.execute("CREATE INDEX IF NOT EXISTS " + TABLE_COMMONSENSEMEDIA_BOOKS + "_asin ON " + TABLE_COMMONSENSEMEDIA_BOOKS + " (asin);");
+                create.close();
+            })
+            .add("Index last-updated times of books", connection -> {
+                final Statement create = connection.createStatement();
+                create.execute("CREATE INDEX IF NOT EXISTS " + TABLE_AMAZON_BOOKS + "_last_updated ON " + TABLE_AMAZON_BOOKS + " (last_updated);");
+                create.execute("CREATE INDEX IF NOT EXISTS " + TABLE_BOOKCAVE_BOOKS + "_last_updated ON " + TABLE_BOOKCAVE_BOOKS + " (last_updated);");
+                create.execute("CREATE INDEX IF NOT EXISTS " + TABLE_COMMONSENSEMEDIA_BOOKS + "_last_updated ON " + TABLE_COMMONSENSEMEDIA_BOOKS + " (last_updated);");
+                create.close();
+            })
+            .add("Add content hash columns to book tables", connection -> {
+                for (String table : new String[]{TABLE_AMAZON_BOOKS, TABLE_BOOKCAVE_BOOKS, TABLE_COMMONSENSEMEDIA_BOOKS}) {
+                    if (!SchemaMigrations.hasColumn(connection, table, "content_hash")) {
+                        final Statement alter = connection.createStatement();
+                        alter.execute("ALTER TABLE " + table + " ADD COLUMN content_hash INTEGER DEFAULT NULL;");
+                        alter.close();
+                    }
+                }
+            })
+            .add("Add full-text indexes of book text", connection -> {
+                createExternalTextIndex(connection, TABLE_BOOKCAVE_BOOK_TEXT, TABLE_BOOKCAVE_BOOKS, "summary", "description");
+                createExternalTextIndex(connection, TABLE_COMMONSENSEMEDIA_BOOK_TEXT, TABLE_COMMONSENSEMEDIA_BOOKS, "know", "story", "good", "talk");
+                final Statement create = connection.createStatement();
+                create.execute("CREATE TABLE IF NOT EXISTS " + TABLE_AMAZON_BOOK_TEXT_FILES + " (" +
+                        "id INTEGER PRIMARY KEY" + // Row ID of the book in the text index.
+                        ", asin TEXT NOT NULL UNIQUE" +
+                        ", indexed INTEGER NOT NULL" + // System.currentTimeMillis() -> long
+                        ");");
+                // Contentless, since the text is already kept in the paragraphs files.
+                create.execute("CREATE VIRTUAL TABLE IF NOT EXISTS " + TABLE_AMAZON_BOOK_TEXT + " USING fts5(" +
+                        "paragraphs" +
+                        ", content=''" +
+                        ");");
+                create.execute("CREATE VIRTUAL TABLE IF NOT EXISTS " + TABLE_AMAZON_BOOK_TEXT + "Terms USING fts5vocab(" + TABLE_AMAZON_BOOK_TEXT + ", 'row');");
+                create.close();
+            })
+            .add("Store BookCave ratings and rating levels as IDs of dictionary strings", connection -> {
+                final Statement statement = connection.createStatement();
+                if (!SchemaMigrations.hasColumn(connection, TABLE_BOOKCAVE_BOOK_RATINGS, "rating_id")) {
+                    statement.execute("ALTER TABLE " + TABLE_BOOKCAVE_BOOK_RATINGS + " RENAME TO " + TABLE_BOOKCAVE_BOOK_RATINGS + "_old;");
+                    createBookCaveBookRatingsTable(connection);
+                    statement.execute("INSERT OR IGNORE INTO " + TABLE_STRINGS + "(value)" +
+                            " SELECT rating FROM " + TABLE_BOOKCAVE_BOOK_RATINGS + "_old;");
+                    statement.execute("INSERT INTO " + TABLE_BOOKCAVE_BOOK_RATINGS + "(book_id, rating_id, count)" +
+                            " SELECT o.book_id, r.id, o.count" +
+                            " FROM " + TABLE_BOOKCAVE_BOOK_RATINGS + "_old o" +
+                            " JOIN " + TABLE_STRINGS + " r ON r.value=o.rating;");
+                    statement.execute("DROP TABLE " + TABLE_BOOKCAVE_BOOK_RATINGS + "_old;");
+                }
+                if (!SchemaMigrations.hasColumn(connection, TABLE_BOOKCAVE_BOOK_RATING_LEVELS, "rating_id")) {
+                    statement.execute("ALTER TABLE " + TABLE_BOOKCAVE_BOOK_RATING_LEVELS + " RENAME TO " + TABLE_BOOKCAVE_BOOK_RATING_LEVELS + "_old;");
+                    createBookCaveBookRatingLevelsTable(connection);
+                    statement.execute("INSERT OR IGNORE INTO " + TABLE_STRINGS + "(value)" +
+                            " SELECT rating FROM " + TABLE_BOOKCAVE_BOOK_RATING_LEVELS + "_old" +
+                            " UNION SELECT title FROM " + TABLE_BOOKCAVE_BOOK_RATING_LEVELS + "_old;");
+                    statement.execute("INSERT INTO " + TABLE_BOOKCAVE_BOOK_RATING_LEVELS + "(book_id, rating_id, title_id, count)" +
+                            " SELECT o.book_id, r.id, t.id, o.count" +
+                            " FROM " + TABLE_BOOKCAVE_BOOK_RATING_LEVELS + "_old o" +
+                            " JOIN " + TABLE_STRINGS + " r ON r.value=o.rating" +
+                            " JOIN " + TABLE_STRINGS + " t ON t.value=o.title;");
+                    statement.execute("DROP TABLE " + TABLE_BOOKCAVE_BOOK_RATING_LEVELS + "_old;");
+                }
+                statement.close();
+            })
+            .add("Store genres and types of books as IDs of dictionary strings", connection -> {
+                if (!SchemaMigrations.hasColumn(connection, TABLE_BOOKCAVE_BOOKS, "genres_id")) {
+                    rebuildWithStringIds(connection, TABLE_BOOKCAVE_BOOKS, DatabaseHelper::createBookCaveBooksTable, "genres");
+                }
+                if (!SchemaMigrations.hasColumn(connection, TABLE_COMMONSENSEMEDIA_BOOKS, "genre_id")) {
+                    rebuildWithStringIds(connection, TABLE_COMMONSENSEMEDIA_BOOKS, DatabaseHelper::createCommonSenseMediaBooksTable, "genre", "type");
+                }
+            });
+
+    private int fetchSize = 256;
+    private volatile LruCache<String, AmazonKindle.Book> amazonBookCache = null;
+    private final StringDictionary strings = new StringDictionary(TABLE_STRINGS);
 
     public DatabaseHelper(Logger logger) {
         super(logger);
     }
 
+    /**
+     * Connect to the contents database with {@link DatabaseProfile#wal()}, so that scrapers and analytics jobs may
+     * use it at the same time.
+     */
     public void connectToContentsDatabase() {
-        connect(Folders.CONTENTS_DATABASE_FILE_NAME);
+        connectToContentsDatabase(DatabaseProfile.wal());
+    }
+
+    public void connectToContentsDatabase(DatabaseProfile profile) {
+        connectToDatabase(Folders.CONTENTS_DATABASE_FILE_NAME, profile);
+    }
+
+    /**
+     * Connect to a database other than the contents database (e.g., a scratch copy), creating its tables if needed.
+     * @param fileName  Path to the database file.
+     */
+    public void connectToDatabase(String fileName) {
+        connectToDatabase(fileName, DatabaseProfile.wal());
+    }
+
+    public void connectToDatabase(String fileName, DatabaseProfile profile) {
+        // IDs are only meaningful within one database.
+        strings.forgetIds();
+        connect(fileName, profile);
         createTablesIfNeeded();
+        try {
+            MIGRATIONS.migrate(getWriteConnection(), getLogger());
+        } catch (SQLException e) {
+            getLogger().log(Level.SEVERE, "Unable to migrate database schema.", e);
+        }
     }
 
     /**
+     * Insert the book, or update it if it has been saved before.
+     * When none of its fields have changed since it was saved, only its `last_updated` time is written.
      * Just make sure that all fields in `book` have been updated with real values.
      * @param book  The book.
      * @return      Not `-1`.
      * @throws SQLException When an error occurs.
      */
-    public int insertOrReplace(AmazonKindle.Book book) throws SQLException {
-        final PreparedStatement insert = getConnection().prepareStatement("INSERT OR REPLACE" +
+    public synchronized int upsert(AmazonKindle.Book book) throws SQLException {
+        final long contentHash = getContentHash(book);
+        final PreparedStatement touch = prepareTouch(TABLE_AMAZON_BOOKS, "asin");
+        setTouch(touch, book.asin, book.lastUpdated, contentHash);
+        if (touch.executeUpdate() == 1) {
+            cacheAmazonBook(book);
+            return 1;
+        }
+        final PreparedStatement upsert = prepareCached(getWriteConnection(), "INSERT" +
                 " INTO " + TABLE_AMAZON_BOOKS + "(" +
                 "asin" +
                 ",title" +
@@ -49,271 +189,913 @@ public class DatabaseHelper extends AbstractDatabaseHelper {
                 ",is_freetime_unlimited" +
                 ",price" +
                 ",last_updated" +
-                ") VALUES(?,?,?,?,?,?);");
-        insert.setString(1, book.asin);
-        insert.setString(2, book.title);
-        insert.setBoolean(3, book.isKindleUnlimited);
-        insert.setBoolean(4, book.isFreeTimeUnlimited);
-        setStringOrNull(insert, 5, book.price);
-        insert.setLong(6, book.lastUpdated);
-        final int result = insert.executeUpdate();
-        insert.close();
+                ",content_hash" +
+                ") VALUES(?,?,?,?,?,?,?)" +
+                onConflictUpdate("asin", "title", "is_kindle_unlimited", "is_freetime_unlimited", "price", "last_updated", "content_hash") + ";");
+        upsert.setString(1, book.asin);
+        upsert.setString(2, book.title);
+        upsert.setBoolean(3, book.isKindleUnlimited);
+        upsert.setBoolean(4, book.isFreeTimeUnlimited);
+        setStringOrNull(upsert, 5, book.price);
+        upsert.setLong(6, book.lastUpdated);
+        upsert.setLong(7, contentHash);
+        final int result = upsert.executeUpdate();
+        cacheAmazonBook(book);
         return result;
     }
 
-    public int insert(BookCave.Book book) throws SQLException {
-        final PreparedStatement insert = getConnection().prepareStatement("INSERT" +
-                " INTO " + TABLE_BOOKCAVE_BOOKS + "(" +
-                "id" +
-                ",title" +
-                ",authors" +
-                ",summary" +
-                ",description" +
-                ",community_ratings_count" +
-                ",community_average_rating" +
-                ",pages" +
-                ",genres" +
-                ",amazon_kindle_url" +
-                ",amazon_print_url" +
-                ",audible_url" +
-                ",apple_books_url" +
-                ",barnes_and_noble_url" +
-                ",barnes_and_noble_audiobook_url" +
-                ",barnes_and_noble_print_url" +
-                ",google_play_url" +
-                ",kobo_url" +
-                ",smashwords_url" +
-                ",last_updated" +
-                ")  VALUES(?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?);");
-        insert.setString(1, book.id);
-        insert.setString(2, book.title);
-        insert.setString(3, book.authors);
-        insert.setString(4, book.summary);
-        setStringOrNull(insert, 5, book.description);
-        insert.setInt(6, book.communityRatingsCount);
-        setStringOrNull(insert, 7, book.communityAverageRating);
-        setIntOrNull(insert, 8, book.pages, -1);
-        insert.setString(9, book.genres);
-        setStringOrNull(insert, 10, book.amazonKindleUrl);
-        setStringOrNull(insert, 11, book.amazonPrintUrl);
-        setStringOrNull(insert, 12, book.audibleUrl);
-        setStringOrNull(insert, 13, book.appleBooksUrl);
-        setStringOrNull(insert, 14, book.barnesAndNobleUrl);
-        setStringOrNull(insert, 15, book.barnesAndNobleAudiobookUrl);
-        setStringOrNull(insert, 16, book.barnesAndNoblePrintUrl);
-        setStringOrNull(insert, 17, book.googlePlayUrl);
-        setStringOrNull(insert, 18, book.koboUrl);
-        setStringOrNull(insert, 19, book.smashwordsUrl);
-        insert.setLong(20, book.lastUpdated);
-        final int result = insert.executeUpdate();
-        insert.close();
-        return result;
+    private void cacheAmazonBook(AmazonKindle.Book book) {
+        final LruCache<String, AmazonKindle.Book> cache = amazonBookCache;
+        if (cache != null) {
+            cache.put(book.asin, book);
+        }
     }
 
-    public int insert(BookCave.BookRating rating) throws SQLException {
-        final PreparedStatement insert = getConnection().prepareStatement("INSERT" +
-                " INTO " + TABLE_BOOKCAVE_BOOK_RATINGS + "(" +
-                "book_id" +
-                ",rating" +
-                ",count" +
-                ") VALUES(?,?,?);");
-        insert.setString(1, rating.bookId);
-        insert.setString(2, rating.rating);
-        insert.setInt(3, rating.count);
-        final int result = insert.executeUpdate();
-        insert.close();
-        return result;
+    public synchronized int insert(BookCave.Book book) throws SQLException {
+        return insertBookCaveBooks(Collections.singletonList(book))[0];
     }
 
-    public int insert(BookCave.BookRatingLevel level) throws SQLException {
-        final PreparedStatement insert = getConnection().prepareStatement("INSERT" +
-                " INTO " + TABLE_BOOKCAVE_BOOK_RATING_LEVELS + "(" +
-                "book_id" +
-                ",rating" +
-                ",title" +
-                ",count" +
-                ") VALUES(?,?,?,?);");
-        insert.setString(1, level.bookId);
-        insert.setString(2, level.rating);
-        insert.setString(3, level.title);
-        insert.setInt(4, level.count);
-        final int result = insert.executeUpdate();
-        insert.close();
-        return result;
+    public synchronized int[] insertBookCaveBooks(List<BookCave.Book> books) throws SQLException {
+        return executeBatch(prepareInsertBookCaveBook(false), books, this::setBookCaveBook);
     }
 
-    public int insert(CommonSenseMedia.Book book, boolean orReplace) throws SQLException {
-        final PreparedStatement insert = getConnection().prepareStatement("INSERT" + (orReplace ? " OR REPLACE" : "") +
-                " INTO " + TABLE_COMMONSENSEMEDIA_BOOKS + "(" +
-                "id" +
-                ",title" +
-                ",authors" +
-                ",illustrators" +
-                ",age" +
-                ",stars" +
-                ",kicker" +
-                ",amazon_url" +
-                ",apple_books_url" +
-                ",google_play_url" +
-                ",genre" +
-                ",topics" +
-                ",type" +
-                ",know" +
-                ",story" +
-                ",good" +
-                ",talk" +
-                ",publishers" +
-                ",publication_date" +
-                ",publishers_recommended_ages" +
-                ",pages" +
-                ",last_updated" +
-                ") VALUES(?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?);");
-        insert.setString(1, book.id);
-        insert.setString(2, book.title);
-        insert.setString(3, book.authors);
-        setStringOrNull(insert, 4, book.illustrators);
-        insert.setString(5, book.age);
-        insert.setInt(6, book.stars);
-        insert.setString(7, book.kicker);
-        setStringOrNull(insert, 8, book.amazonUrl);
-        setStringOrNull(insert, 9, book.appleBooksUrl);
-        setStringOrNull(insert, 10, book.googlePlayUrl);
-        insert.setString(11, book.genre);
-        setStringOrNull(insert, 12, book.topics);
-        insert.setString(13, book.type);
-        setStringOrNull(insert, 14, book.know);
-        setStringOrNull(insert, 15, book.story);
-        setStringOrNull(insert, 16, book.good);
-        setStringOrNull(insert, 17, book.talk);
-        setStringOrNull(insert, 18, book.publishers);
-        setStringOrNull(insert, 19, book.publicationDate);
-        setStringOrNull(insert, 20, book.publishersRecommendedAges);
-        setIntOrNull(insert, 21, book.pages, -1);
-        insert.setLong(22, book.lastUpdated);
-        final int result = insert.executeUpdate();
-        insert.close();
-        return result;
+    /**
+     * Insert the books, or update those which have been saved before.
+     * Books whose fields have not changed since they were saved only have their `last_updated` times written.
+     */
+    public synchronized int[] upsertBookCaveBooks(List<BookCave.Book> books) throws SQLException {
+        return executeUpsertBatch(prepareTouch(TABLE_BOOKCAVE_BOOKS, "id"),
+                (s, book) -> setTouch(s, book.id, book.lastUpdated, getContentHash(book)),
+                prepareInsertBookCaveBook(true),
+                this::setBookCaveBook,
+                books);
     }
 
-    public int insert(CommonSenseMedia.BookCategory bookCategory, boolean orReplace) throws SQLException {
-        final PreparedStatement insert = getConnection().prepareStatement("INSERT" + (orReplace ? " OR REPLACE" : "") +
-                " INTO " + TABLE_COMMONSENSEMEDIA_BOOK_CATEGORIES + "(" +
-                "book_id" +
-                ",category_id" +
-                ",level" +
-                ",explanation" +
-                ") VALUES(?,?,?,?);");
-        insert.setString(1, bookCategory.bookId);
-        insert.setString(2, bookCategory.categoryId);
-        insert.setInt(3, bookCategory.level);
-        setStringOrNull(insert, 4, bookCategory.explanation);
-        final int result = insert.executeUpdate();
-        insert.close();
-        return result;
+    public synchronized int insert(BookCave.BookRating rating) throws SQLException {
+        return insertBookCaveBookRatings(Collections.singletonList(rating))[0];
+    }
+
+    public synchronized int[] insertBookCaveBookRatings(List<BookCave.BookRating> ratings) throws SQLException {
+        return executeBatch(prepareInsertBookCaveBookRating(), ratings, this::setBookCaveBookRating);
+    }
+
+    public synchronized int insert(BookCave.BookRatingLevel level) throws SQLException {
+        return insertBookCaveBookRatingLevels(Collections.singletonList(level))[0];
+    }
+
+    public synchronized int[] insertBookCaveBookRatingLevels(List<BookCave.BookRatingLevel> levels) throws SQLException {
+        return executeBatch(prepareInsertBookCaveBookRatingLevel(), levels, this::setBookCaveBookRatingLevel);
+    }
+
+    /**
+     * Delete the ratings and rating levels of books which are about to be saved again,
+     * since a book may lose ratings between scrapes.
+     */
+    public synchronized void deleteBookCaveBookRatings(List<String> bookIds) throws SQLException {
+        executeBatch(prepareCached(getWriteConnection(), "DELETE FROM " + TABLE_BOOKCAVE_BOOK_RATINGS + " WHERE book_id=?;"), bookIds, DatabaseHelper::setId);
+        executeBatch(prepareCached(getWriteConnection(), "DELETE FROM " + TABLE_BOOKCAVE_BOOK_RATING_LEVELS + " WHERE book_id=?;"), bookIds, DatabaseHelper::setId);
+    }
+
+    public synchronized int insert(CommonSenseMedia.Book book) throws SQLException {
+        return insertCommonSenseMediaBooks(Collections.singletonList(book))[0];
+    }
+
+    public synchronized int[] insertCommonSenseMediaBooks(List<CommonSenseMedia.Book> books) throws SQLException {
+        return executeBatch(prepareInsertCommonSenseMediaBook(false), books, this::setCommonSenseMediaBook);
+    }
+
+    /**
+     * Insert the books, or update those which have been saved before.
+     * Books whose fields have not changed since they were saved only have their `last_updated` times written.
+     */
+    public synchronized int[] upsertCommonSenseMediaBooks(List<CommonSenseMedia.Book> books) throws SQLException {
+        return executeUpsertBatch(prepareTouch(TABLE_COMMONSENSEMEDIA_BOOKS, "id"),
+                (s, book) -> setTouch(s, book.id, book.lastUpdated, getContentHash(book)),
+                prepareInsertCommonSenseMediaBook(true),
+                this::setCommonSenseMediaBook,
+                books);
+    }
+
+    public synchronized int insert(CommonSenseMedia.BookCategory bookCategory, boolean orReplace) throws SQLException {
+        return insertCommonSenseMediaBookCategories(Collections.singletonList(bookCategory), orReplace)[0];
+    }
+
+    public synchronized int[] insertCommonSenseMediaBookCategories(List<CommonSenseMedia.BookCategory> bookCategories, boolean orReplace) throws SQLException {
+        return executeBatch(prepareInsertCommonSenseMediaBookCategory(orReplace), bookCategories, DatabaseHelper::setCommonSenseMediaBookCategory);
+    }
+
+    /**
+     * Delete the categories of books which are about to be saved again.
+     */
+    public synchronized void deleteCommonSenseMediaBookCategories(List<String> bookIds) throws SQLException {
+        executeBatch(prepareCached(getWriteConnection(), "DELETE FROM " + TABLE_COMMONSENSEMEDIA_BOOK_CATEGORIES + " WHERE book_id=?;"), bookIds, DatabaseHelper::setId);
+    }
+
+    /**
+     * Serve {@link #getAmazonBook(String)} from memory, for scrapers which look up many books, possibly more than once.
+     * Books which are written through {@link #upsert(AmazonKindle.Book)} replace their cached copies.
+     * Cached books are shared between callers, so they must not be modified.
+     *
+     * @param maxSize Maximum number of books to keep. The least recently used books are evicted first.
+     */
+    public void setAmazonBookCache(int maxSize) {
+        amazonBookCache = new LruCache<>(maxSize);
+    }
+
+    /**
+     * Fill the cache set by {@link #setAmazonBookCache(int)} with every Amazon book, in one query.
+     *
+     * @return The number of cached books.
+     * @throws SQLException When an error occurs.
+     */
+    public int preloadAmazonBookCache() throws SQLException {
+        final LruCache<String, AmazonKindle.Book> cache = amazonBookCache;
+        if (cache == null) {
+            throw new IllegalStateException("Amazon book cache has not been set.");
+        }
+        forEachRow("SELECT * FROM " + TABLE_AMAZON_BOOKS + ";", this::makeAmazonBookFromResult, book -> cache.putIfAbsent(book.asin, book));
+        return cache.size();
+    }
+
+    public LruCache<String, AmazonKindle.Book> getAmazonBookCache() {
+        return amazonBookCache;
     }
 
     public AmazonKindle.Book getAmazonBook(String asin) throws SQLException {
-        final PreparedStatement select = getConnection().prepareStatement("SELECT *" +
+        final LruCache<String, AmazonKindle.Book> cache = amazonBookCache;
+        if (cache != null) {
+            final AmazonKindle.Book book = cache.get(asin);
+            if (book != null) {
+                return book;
+            }
+        }
+        final PreparedStatement select = prepareCached(getReadConnection(), "SELECT *" +
                 " FROM " + TABLE_AMAZON_BOOKS +
                 " WHERE asin=?;");
         select.setString(1, asin);
         final ResultSet result = select.executeQuery();
         if (!result.next()) {
+            result.close();
             return null;
         }
         final AmazonKindle.Book book = makeAmazonBookFromResult(result);
-        select.close();
+        result.close();
+        if (cache != null) {
+            cache.putIfAbsent(asin, book);
+        }
         return book;
     }
 
     public BookCave.Book getBookCaveBook(String id) throws SQLException {
-        final PreparedStatement select = getConnection().prepareStatement("SELECT *" +
+        final PreparedStatement select = prepareCached(getReadConnection(), "SELECT *" +
                 " FROM " + TABLE_BOOKCAVE_BOOKS +
                 " WHERE id=?;");
         select.setString(1, id);
         final ResultSet result = select.executeQuery();
         if (!result.next()) {
+            result.close();
             return null;
         }
         final BookCave.Book book = makeBookCaveBookFromResult(result);
-        select.close();
+        result.close();
         return book;
     }
 
     public List<BookCave.Book> getBookCaveBooks() throws SQLException {
         final List<BookCave.Book> books = new ArrayList<>();
-        final Statement select = getConnection().createStatement();
-        final ResultSet result = select.executeQuery("SELECT * FROM " + TABLE_BOOKCAVE_BOOKS + ";");
-        while (result.next()) {
-            final BookCave.Book book = makeBookCaveBookFromResult(result);
-            books.add(book);
-        }
-        select.close();
+        forEachBookCaveBook(books::add);
         return Collections.unmodifiableList(books);
     }
 
+    /**
+     * Read every row without holding the whole table in memory.
+     * @param callback  Notified of each row as it is read.
+     * @throws SQLException When an error occurs, including when thrown by `callback`.
+     */
+    public void forEachBookCaveBook(RowCallback<BookCave.Book> callback) throws SQLException {
+        forEachRow("SELECT * FROM " + TABLE_BOOKCAVE_BOOKS + ";", this::makeBookCaveBookFromResult, callback);
+    }
+
+    /**
+     * Read only the columns which are needed to find each book on Amazon, rather than whole rows.
+     * @return  Books which have at least one Amazon link.
+     * @throws SQLException When an error occurs.
+     */
+    public List<BookScrapeInfo> getBookCaveBookScrapeInfos() throws SQLException {
+        final List<BookScrapeInfo> bookScrapeInfos = new ArrayList<>();
+        forEachRow("SELECT id, amazon_kindle_url, amazon_print_url, asin" +
+                " FROM " + TABLE_BOOKCAVE_BOOKS +
+                " WHERE amazon_kindle_url IS NOT NULL" +
+                " OR amazon_print_url IS NOT NULL;", result -> {
+            final String amazonKindleUrl = result.getString("amazon_kindle_url");
+            final String amazonPrintUrl = result.getString("amazon_print_url");
+            final String[] urls;
+            if (amazonKindleUrl == null) {
+                urls = new String[]{amazonPrintUrl};
+            } else if (amazonPrintUrl == null) {
+                urls = new String[]{amazonKindleUrl};
+            } else {
+                // Give multiple options for Amazon URLs.
+                // Sometimes the BookCave Kindle link will have broken, though a Kindle preview still exists.
+                // See `https://mybookcave.com/mybookratings/rated-book/the-warriors-path/`.
+                urls = new String[]{amazonKindleUrl, amazonPrintUrl};
+            }
+            return new BookScrapeInfo(result.getString("id"), urls, result.getString("asin"));
+        }, bookScrapeInfos::add);
+        return bookScrapeInfos;
+    }
+
     public List<BookCave.BookRating> getBookCaveRatings() throws SQLException {
-        final List<BookCave.BookRating> books = new ArrayList<>();
-        final Statement select = getConnection().createStatement();
-        final ResultSet result = select.executeQuery("SELECT * FROM " + TABLE_BOOKCAVE_BOOK_RATINGS + ";");
-        while (result.next()) {
-            final BookCave.BookRating book = makeBookCaveRatingFromResult(result);
-            books.add(book);
-        }
-        select.close();
-        return Collections.unmodifiableList(books);
+        final List<BookCave.BookRating> ratings = new ArrayList<>();
+        forEachBookCaveRating(ratings::add);
+        return Collections.unmodifiableList(ratings);
+    }
+
+    public void forEachBookCaveRating(RowCallback<BookCave.BookRating> callback) throws SQLException {
+        forEachRow("SELECT * FROM " + TABLE_BOOKCAVE_BOOK_RATINGS + ";", this::makeBookCaveRatingFromResult, callback);
     }
 
-    public int updateBookCaveBookAsin(String bookId, String asin) throws SQLException {
-        final PreparedStatement update = getConnection().prepareStatement("UPDATE " + TABLE_BOOKCAVE_BOOKS +
+    public synchronized int updateBookCaveBookAsin(String bookId, String asin) throws SQLException {
+        final PreparedStatement update = prepareCached(getWriteConnection(), "UPDATE " + TABLE_BOOKCAVE_BOOKS +
                 " SET" +
                 " asin=?" +
                 " WHERE id=?;");
         update.setString(1, asin);
         update.setString(2, bookId);
-        final int result = update.executeUpdate();
-        update.close();
-        return result;
+        return update.executeUpdate();
     }
 
-    public int updateCommonSenseMediaBookAsin(String bookId, String asin) throws SQLException {
-        final PreparedStatement update = getConnection().prepareStatement("UPDATE " + TABLE_COMMONSENSEMEDIA_BOOKS +
+    public synchronized int updateCommonSenseMediaBookAsin(String bookId, String asin) throws SQLException {
+        final PreparedStatement update = prepareCached(getWriteConnection(), "UPDATE " + TABLE_COMMONSENSEMEDIA_BOOKS +
                 " SET" +
                 " asin=?" +
                 " WHERE id=?;");
         update.setString(1, asin);
         update.setString(2, bookId);
-        final int result = update.executeUpdate();
-        update.close();
-        return result;
+        return update.executeUpdate();
     }
 
     public List<CommonSenseMedia.Book> getCommonSenseMediaBooks() throws SQLException {
         final List<CommonSenseMedia.Book> books = new ArrayList<>();
-        final Statement select = getConnection().createStatement();
-        final ResultSet result = select.executeQuery("SELECT * FROM " + TABLE_COMMONSENSEMEDIA_BOOKS + ";");
-        while (result.next()) {
-            final CommonSenseMedia.Book book = makeCommonSenseMediaBookFromResult(result);
-            books.add(book);
-        }
-        select.close();
+        forEachCommonSenseMediaBook(books::add);
         return Collections.unmodifiableList(books);
     }
 
+    public void forEachCommonSenseMediaBook(RowCallback<CommonSenseMedia.Book> callback) throws SQLException {
+        forEachRow("SELECT * FROM " + TABLE_COMMONSENSEMEDIA_BOOKS + ";", this::makeCommonSenseMediaBookFromResult, callback);
+    }
+
+    public List<BookScrapeInfo> getCommonSenseMediaBookScrapeInfos() throws SQLException {
+        final List<BookScrapeInfo> bookScrapeInfos = new ArrayList<>();
+        forEachRow("SELECT id, amazon_url, asin" +
+                " FROM " + TABLE_COMMONSENSEMEDIA_BOOKS +
+                " WHERE amazon_url IS NOT NULL;", result -> {
+            final String[] urls = {result.getString("amazon_url")};
+            return new BookScrapeInfo(result.getString("id"), urls, result.getString("asin"));
+        }, bookScrapeInfos::add);
+        return bookScrapeInfos;
+    }
+
     public List<CommonSenseMedia.BookCategory> getCommonSsenseMediaBookCategories() throws SQLException {
         final List<CommonSenseMedia.BookCategory> bookCategories = new ArrayList<>();
-        final Statement select = getConnection().createStatement();
-        final ResultSet result = select.executeQuery("SELECT * FROM " + TABLE_COMMONSENSEMEDIA_BOOK_CATEGORIES + ";");
+        forEachCommonSenseMediaBookCategory(bookCategories::add);
+        return Collections.unmodifiableList(bookCategories);
+    }
+
+    public void forEachCommonSenseMediaBookCategory(RowCallback<CommonSenseMedia.BookCategory> callback) throws SQLException {
+        forEachRow("SELECT * FROM " + TABLE_COMMONSENSEMEDIA_BOOK_CATEGORIES + ";", this::makeCommonSenseMediaBookCategoryFromResult, callback);
+    }
+
+    /**
+     * A full-text index over the text of one kind of book, whose documents are identified by the keys of the books.
+     */
+    public enum TextIndex {
+        // Extracted paragraphs of Kindle books, identified by ASIN.
+        AMAZON_BOOKS(TABLE_AMAZON_BOOK_TEXT, TABLE_AMAZON_BOOK_TEXT_FILES, "id", "asin"),
+        // Summaries and descriptions.
+        BOOKCAVE_BOOKS(TABLE_BOOKCAVE_BOOK_TEXT, TABLE_BOOKCAVE_BOOKS, "rowid", "id"),
+        // `know`, `story`, `good` and `talk` sections of reviews.
+        COMMONSENSEMEDIA_BOOKS(TABLE_COMMONSENSEMEDIA_BOOK_TEXT, TABLE_COMMONSENSEMEDIA_BOOKS, "rowid", "id");
+
+        private final String table;
+        private final String keyTable;
+        private final String rowIdColumn;
+        private final String keyColumn;
+
+        TextIndex(String table, String keyTable, String rowIdColumn, String keyColumn) {
+            this.table = table;
+            this.keyTable = keyTable;
+            this.rowIdColumn = rowIdColumn;
+            this.keyColumn = keyColumn;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        private String getTermsTable() {
+            return table + "Terms";
+        }
+    }
+
+    /**
+     * Index the extracted text of a Kindle book, unless it has already been indexed.
+     * The text of BookCave and Common Sense Media books is indexed whenever a book is written, by triggers,
+     * but the text of Kindle books is only written to files, so it is indexed here instead.
+     * @param asin  ASIN.
+     * @param text  Contents of the paragraphs file.
+     * @return      `true` if the text was indexed, or `false` if it already had been.
+     * @throws SQLException When an error occurs.
+     */
+    public synchronized boolean indexAmazonBookText(String asin, String text) throws SQLException {
+        final boolean[] isIndexed = {false};
+        runInTransaction(() -> {
+            final PreparedStatement insertFile = prepareCached(getWriteConnection(), "INSERT OR IGNORE" +
+                    " INTO " + TABLE_AMAZON_BOOK_TEXT_FILES + "(" +
+                    "asin" +
+                    ",indexed" +
+                    ") VALUES(?,?);");
+            insertFile.setString(1, asin);
+            insertFile.setLong(2, System.currentTimeMillis());
+            if (insertFile.executeUpdate() == 0) {
+                return;
+            }
+            final PreparedStatement insertText = prepareCached(getWriteConnection(), "INSERT" +
+                    " INTO " + TABLE_AMAZON_BOOK_TEXT + "(" +
+                    "rowid" +
+                    ",paragraphs" +
+                    ") SELECT id, ?" +
+                    " FROM " + TABLE_AMAZON_BOOK_TEXT_FILES +
+                    " WHERE asin=?;");
+            insertText.setString(1, text);
+            insertText.setString(2, asin);
+            insertText.executeUpdate();
+            isIndexed[0] = true;
+        });
+        return isIndexed[0];
+    }
+
+    /**
+     * @param index Full-text index.
+     * @param term  A single word, which is matched the way the index tokenizes text: ignoring case and diacritics.
+     * @return      The number of documents which contain `term`, and its number of occurrences; both `0` if it never occurs.
+     * @throws SQLException When an error occurs.
+     */
+    public TermFrequency getTermFrequency(TextIndex index, String term) throws SQLException {
+        final PreparedStatement select = prepareCached(getReadConnection(), "SELECT doc, cnt" +
+                " FROM " + index.getTermsTable() +
+                " WHERE term=?;");
+        final String token = toToken(term);
+        select.setString(1, token);
+        final ResultSet result = select.executeQuery();
+        final TermFrequency frequency;
+        if (result.next()) {
+            frequency = new TermFrequency(token, result.getLong("doc"), result.getLong("cnt"));
+        } else {
+            frequency = new TermFrequency(token, 0L, 0L);
+        }
+        result.close();
+        return frequency;
+    }
+
+    /**
+     * @return `term` as the `unicode61` tokenizer (with its default `remove_diacritics`) stores it:
+     * in lower case, without diacritics (e.g., `Caf&eacute;` -> `cafe`).
+     */
+    static String toToken(String term) {
+        return Normalizer.normalize(term.toLowerCase(Locale.ROOT), Normalizer.Form.NFD).replaceAll("\\p{M}+", "");
+    }
+
+    /**
+     * @param index Full-text index.
+     * @param limit Maximum number of terms.
+     * @return      The terms which occur in the most documents, in descending order.
+     * @throws SQLException When an error occurs.
+     */
+    public List<TermFrequency> getMostFrequentTerms(TextIndex index, int limit) throws SQLException {
+        final PreparedStatement select = prepareCached(getReadConnection(), "SELECT term, doc, cnt" +
+                " FROM " + index.getTermsTable() +
+                " ORDER BY doc DESC, cnt DESC" +
+                " LIMIT ?;");
+        select.setInt(1, limit);
+        final ResultSet result = select.executeQuery();
+        final List<TermFrequency> frequencies = new ArrayList<>();
+        while (result.next()) {
+            frequencies.add(new TermFrequency(result.getString("term"), result.getLong("doc"), result.getLong("cnt")));
+        }
+        result.close();
+        return frequencies;
+    }
+
+    /**
+     * @return The number of documents in `index`, e.g., to turn document frequencies into inverse document frequencies.
+     */
+    public long getDocumentCount(TextIndex index) throws SQLException {
+        final Statement select = getReadConnection().createStatement();
+        final ResultSet result = select.executeQuery("SELECT COUNT(*) FROM " + index.table + ";");
+        final long count = result.next() ? result.getLong(1) : 0L;
+        select.close();
+        return count;
+    }
+
+    /**
+     * @param index Full-text index.
+     * @param query An FTS5 query, e.g., `zombie OR infected`, `"haunted house"`, or `summary:ghost`.
+     * @return      Keys (IDs or ASINs) of the books which match `query`, most relevant first.
+     * @throws SQLException When an error occurs, including when `query` is malformed.
+     */
+    public List<String> getMatchingKeys(TextIndex index, String query) throws SQLException {
+        final PreparedStatement select = prepareCached(getReadConnection(), "SELECT k." + index.keyColumn +
+                " FROM " + index.table +
+                " JOIN " + index.keyTable + " k ON k." + index.rowIdColumn + "=" + index.table + ".rowid" +
+                " WHERE " + index.table + " MATCH ?" +
+                " ORDER BY " + index.table + ".rank;");
+        select.setString(1, query);
+        final ResultSet result = select.executeQuery();
+        final List<String> keys = new ArrayList<>();
         while (result.next()) {
-            final CommonSenseMedia.BookCategory bookCategory = makeCommonSenseMediaBookCategoryFromResult(result);
-            bookCategories.add(bookCategory);
+            keys.add(result.getString(1));
+        }
+        result.close();
+        return keys;
+    }
+
+    /**
+     * Run every statement in `transaction` as a single transaction on the write connection,
+     * which is much faster than committing (and syncing) each statement on its own.
+     * No other thread may write through this helper until the transaction has committed or rolled back.
+     * @param transaction   Statements to run.
+     * @throws SQLException When any statement fails, after the whole transaction has been rolled back.
+     */
+    public synchronized void runInTransaction(Transaction transaction) throws SQLException {
+        getWriteConnection().setAutoCommit(false);
+        try {
+            transaction.run();
+            getWriteConnection().commit();
+        } catch (SQLException | RuntimeException e) {
+            getWriteConnection().rollback();
+            // Strings which were added to the dictionary during the transaction no longer have IDs.
+            strings.forgetIds();
+            throw e;
+        } finally {
+            getWriteConnection().setAutoCommit(true);
+        }
+    }
+
+    public interface Transaction {
+        void run() throws SQLException;
+    }
+
+    /**
+     * Receives the rows of a query one at a time, while the query is still open.
+     */
+    public interface RowCallback<T> {
+        void onRow(T record) throws SQLException;
+    }
+
+    private interface RowMapper<T> {
+        T map(ResultSet result) throws SQLException;
+    }
+
+    /**
+     * @param fetchSize Number of rows which the driver is asked to read ahead when streaming a query.
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    private <T> void forEachRow(String sql, RowMapper<T> mapper, RowCallback<T> callback) throws SQLException {
+        final Statement select = getReadConnection().createStatement();
+        try {
+            select.setFetchSize(fetchSize);
+            final ResultSet result = select.executeQuery(sql);
+            while (result.next()) {
+                callback.onRow(mapper.map(result));
+            }
+        } finally {
+            select.close();  // Also closes the result set.
+        }
+    }
+
+    private interface Binder<T> {
+        void bind(PreparedStatement s, T record) throws SQLException;
+    }
+
+    /**
+     * Once a statement has executed a batch, sqlite-jdbc fails to execute it on its own (its parameter array stays the
+     * size of the batch), so a cached statement which is ever batched must always be executed through here,
+     * even for a single record.
+     */
+    private static <T> int[] executeBatch(PreparedStatement insert, List<T> records, Binder<T> binder) throws SQLException {
+        if (records.isEmpty()) {
+            return new int[0];
+        }
+        try {
+            for (T record : records) {
+                binder.bind(insert, record);
+                insert.addBatch();
+            }
+            return insert.executeBatch();
+        } finally {
+            // The statement is cached, so never leave a partial batch on it.
+            insert.clearBatch();
+        }
+    }
+
+    /**
+     * Unlike `INSERT OR REPLACE`, which deletes a conflicting row and inserts a new one (updating every index),
+     * this updates the row in place and leaves columns which are not listed (e.g., `asin`) alone.
+     * @param key       Primary key of the table.
+     * @param columns   Columns to update.
+     * @return          An upsert clause to follow the `VALUES` of an `INSERT` statement.
+     */
+    private static String onConflictUpdate(String key, String... columns) {
+        final StringBuilder clause = new StringBuilder(" ON CONFLICT(" + key + ") DO UPDATE SET ");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                clause.append(',');
+            }
+            clause.append(columns[i]).append("=excluded.").append(columns[i]);
+        }
+        return clause.toString();
+    }
+
+    /**
+     * Rebuild `table` with the schema of `createTable`, in which a column `[name]_id` replaces each of `textColumns`,
+     * and fill it with the IDs of the old values in {@link #TABLE_STRINGS}.
+     * Every row keeps its `rowid` and its other values, so the full-text indexes which refer to it stay valid, and its
+     * indexes and triggers, which would be dropped along with the old table, are created again.
+     * SQLite can not drop a column (the old text columns are `NOT NULL`), so the table is copied rather than altered.
+     */
+    private static void rebuildWithStringIds(Connection connection, String table, SchemaMigrations.Migration createTable, String... textColumns) throws SQLException {
+        final List<String> indexesAndTriggers = new ArrayList<>();
+        final PreparedStatement select = connection.prepareStatement("SELECT sql" +
+                " FROM sqlite_master" +
+                " WHERE type IN ('index', 'trigger') AND tbl_name=? AND sql IS NOT NULL;");
+        select.setString(1, table);
+        final ResultSet schema = select.executeQuery();
+        while (schema.next()) {
+            indexesAndTriggers.add(schema.getString(1));
         }
+        schema.close();
         select.close();
-        return Collections.unmodifiableList(bookCategories);
+        final Statement statement = connection.createStatement();
+        for (String column : textColumns) {
+            statement.execute("INSERT OR IGNORE INTO " + TABLE_STRINGS + "(value)" +
+                    " SELECT " + column + " FROM " + table +
+                    " WHERE " + column + " IS NOT NULL;");
+        }
+        statement.execute("ALTER TABLE " + table + " RENAME TO " + table + "_old;");
+        createTable.apply(connection);
+        final List<String> columns = new ArrayList<>();
+        final ResultSet result = statement.executeQuery("PRAGMA table_info(" + table + ");");
+        while (result.next()) {
+            columns.add(result.getString("name"));
+        }
+        result.close();
+        final List<String> values = new ArrayList<>();
+        for (String column : columns) {
+            final String textColumn = column.endsWith("_id") ? column.substring(0, column.length() - "_id".length()) : null;
+            if (textColumn != null && Arrays.asList(textColumns).contains(textColumn)) {
+                values.add("(SELECT id FROM " + TABLE_STRINGS + " WHERE value=o." + textColumn + ")");
+            } else {
+                values.add("o." + column);
+            }
+        }
+        statement.execute("INSERT INTO " + table + "(rowid, " + String.join(", ", columns) + ")" +
+                " SELECT o.rowid, " + String.join(", ", values) +
+                " FROM " + table + "_old o;");
+        statement.execute("DROP TABLE " + table + "_old;");
+        for (String sql : indexesAndTriggers) {
+            statement.execute(sql);
+        }
+        statement.close();
+    }
+
+    /**
+     * Create a full-text index over `columns` of `contentTable`, which reads their values from `contentTable` rather than
+     * keeping its own copy, and is kept up to date by triggers.
+     * The index refers to rows by `rowid`, so `contentTable` must never be written with `INSERT OR REPLACE`
+     * (which changes the `rowid` without firing delete triggers) or vacuumed; use `'rebuild'` afterward if it is.
+     */
+    private static void createExternalTextIndex(Connection connection, String table, String contentTable, String... columns) throws SQLException {
+        final String columnList = String.join(", ", columns);
+        final String newValues = "new." + String.join(", new.", columns);
+        final String oldValues = "old." + String.join(", old.", columns);
+        final String deleteOld = "INSERT INTO " + table + "(" + table + ", rowid, " + columnList + ") VALUES('delete', old.rowid, " + oldValues + ");";
+        final String insertNew = "INSERT INTO " + table + "(rowid, " + columnList + ") VALUES(new.rowid, " + newValues + ");";
+        final Statement create = connection.createStatement();
+        create.execute("CREATE VIRTUAL TABLE IF NOT EXISTS " + table + " USING fts5(" +
+                columnList +
+                ", content='" + contentTable + "'" +
+                ", content_rowid='rowid'" +
+                ");");
+        create.execute("CREATE VIRTUAL TABLE IF NOT EXISTS " + table + "Terms USING fts5vocab(" + table + ", 'row');");
+        create.execute("CREATE TRIGGER IF NOT EXISTS " + table + "_insert AFTER INSERT ON " + contentTable + " BEGIN " +
+                insertNew +
+                " END;");
+        create.execute("CREATE TRIGGER IF NOT EXISTS " + table + "_delete AFTER DELETE ON " + contentTable + " BEGIN " +
+                deleteOld +
+                " END;");
+        // Only when the indexed columns are written, so touching a book's `last_updated` time leaves the index alone.
+        create.execute("CREATE TRIGGER IF NOT EXISTS " + table + "_update AFTER UPDATE OF " + columnList + " ON " + contentTable + " BEGIN " +
+                deleteOld + " " + insertNew +
+                " END;");
+        // Index the rows which were written before the index existed.
+        create.execute("INSERT INTO " + table + "(" + table + ") VALUES('rebuild');");
+        create.close();
+    }
+
+    /**
+     * Bumps the `last_updated` time of a row, but only if its content hash is unchanged.
+     */
+    private PreparedStatement prepareTouch(String table, String key) throws SQLException {
+        return prepareCached(getWriteConnection(), "UPDATE " + table +
+                " SET" +
+                " last_updated=?" +
+                " WHERE " + key + "=?" +
+                " AND content_hash=?;");
+    }
+
+    private static void setTouch(PreparedStatement s, String key, long lastUpdated, long contentHash) throws SQLException {
+        s.setLong(1, lastUpdated);
+        s.setString(2, key);
+        s.setLong(3, contentHash);
+    }
+
+    /**
+     * Touch every record whose content is unchanged in one batch, then upsert the rest in another.
+     * @return  The result of either statement for each record, in order.
+     */
+    private static <T> int[] executeUpsertBatch(PreparedStatement touch, Binder<T> touchBinder, PreparedStatement upsert, Binder<T> upsertBinder, List<T> records) throws SQLException {
+        final int[] results = executeBatch(touch, records, touchBinder);
+        final List<T> changed = new ArrayList<>();
+        final List<Integer> changedIndices = new ArrayList<>();
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] != 1) {
+                changed.add(records.get(i));
+                changedIndices.add(i);
+            }
+        }
+        final int[] changedResults = executeBatch(upsert, changed, upsertBinder);
+        for (int i = 0; i < changedResults.length; i++) {
+            results[changedIndices.get(i)] = changedResults[i];
+        }
+        return results;
+    }
+
+    private static long getContentHash(AmazonKindle.Book book) {
+        return new ContentHash()
+                .add(book.title)
+                .add(book.isKindleUnlimited)
+                .add(book.isFreeTimeUnlimited)
+                .add(book.price)
+                .get();
+    }
+
+    private static long getContentHash(BookCave.Book book) {
+        return new ContentHash()
+                .add(book.title)
+                .add(book.authors)
+                .add(book.summary)
+                .add(book.description)
+                .add(book.communityRatingsCount)
+                .add(book.communityAverageRating)
+                .add(book.pages)
+                .add(book.genres)
+                .add(book.amazonKindleUrl)
+                .add(book.amazonPrintUrl)
+                .add(book.audibleUrl)
+                .add(book.appleBooksUrl)
+                .add(book.barnesAndNobleUrl)
+                .add(book.barnesAndNobleAudiobookUrl)
+                .add(book.barnesAndNoblePrintUrl)
+                .add(book.googlePlayUrl)
+                .add(book.koboUrl)
+                .add(book.smashwordsUrl)
+                .get();
+    }
+
+    private static long getContentHash(CommonSenseMedia.Book book) {
+        return new ContentHash()
+                .add(book.title)
+                .add(book.authors)
+                .add(book.illustrators)
+                .add(book.age)
+                .add(book.stars)
+                .add(book.kicker)
+                .add(book.amazonUrl)
+                .add(book.appleBooksUrl)
+                .add(book.googlePlayUrl)
+                .add(book.genre)
+                .add(book.topics)
+                .add(book.type)
+                .add(book.know)
+                .add(book.story)
+                .add(book.good)
+                .add(book.talk)
+                .add(book.publishers)
+                .add(book.publicationDate)
+                .add(book.publishersRecommendedAges)
+                .add(book.pages)
+                .get();
+    }
+
+    private static void setId(PreparedStatement s, String id) throws SQLException {
+        s.setString(1, id);
+    }
+
+    /**
+     * @param orUpdate Whether to update a book which has been saved before, rather than fail.
+     */
+    private PreparedStatement prepareInsertBookCaveBook(boolean orUpdate) throws SQLException {
+        return prepareCached(getWriteConnection(), "INSERT" +
+                " INTO " + TABLE_BOOKCAVE_BOOKS + "(" +
+                "id" +
+                ",title" +
+                ",authors" +
+                ",summary" +
+                ",description" +
+                ",community_ratings_count" +
+                ",community_average_rating" +
+                ",pages" +
+                ",genres_id" +
+                ",amazon_kindle_url" +
+                ",amazon_print_url" +
+                ",audible_url" +
+                ",apple_books_url" +
+                ",barnes_and_noble_url" +
+                ",barnes_and_noble_audiobook_url" +
+                ",barnes_and_noble_print_url" +
+                ",google_play_url" +
+                ",kobo_url" +
+                ",smashwords_url" +
+                ",last_updated" +
+                ",content_hash" +
+                ")  VALUES(?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)" +
+                (orUpdate ? onConflictUpdate("id",
+                        "title", "authors", "summary", "description", "community_ratings_count", "community_average_rating",
+                        "pages", "genres_id", "amazon_kindle_url", "amazon_print_url", "audible_url", "apple_books_url",
+                        "barnes_and_noble_url", "barnes_and_noble_audiobook_url", "barnes_and_noble_print_url",
+                        "google_play_url", "kobo_url", "smashwords_url", "last_updated", "content_hash") : "") + ";");
+    }
+
+    private void setBookCaveBook(PreparedStatement s, BookCave.Book book) throws SQLException {
+        s.setString(1, book.id);
+        s.setString(2, book.title);
+        s.setString(3, book.authors);
+        s.setString(4, book.summary);
+        setStringOrNull(s, 5, book.description);
+        s.setInt(6, book.communityRatingsCount);
+        setStringOrNull(s, 7, book.communityAverageRating);
+        setIntOrNull(s, 8, book.pages, -1);
+        setStringId(s, 9, book.genres);
+        setStringOrNull(s, 10, book.amazonKindleUrl);
+        setStringOrNull(s, 11, book.amazonPrintUrl);
+        setStringOrNull(s, 12, book.audibleUrl);
+        setStringOrNull(s, 13, book.appleBooksUrl);
+        setStringOrNull(s, 14, book.barnesAndNobleUrl);
+        setStringOrNull(s, 15, book.barnesAndNobleAudiobookUrl);
+        setStringOrNull(s, 16, book.barnesAndNoblePrintUrl);
+        setStringOrNull(s, 17, book.googlePlayUrl);
+        setStringOrNull(s, 18, book.koboUrl);
+        setStringOrNull(s, 19, book.smashwordsUrl);
+        s.setLong(20, book.lastUpdated);
+        s.setLong(21, getContentHash(book));
+    }
+
+    private PreparedStatement prepareInsertBookCaveBookRating() throws SQLException {
+        return prepareCached(getWriteConnection(), "INSERT" +
+                " INTO " + TABLE_BOOKCAVE_BOOK_RATINGS + "(" +
+                "book_id" +
+                ",rating_id" +
+                ",count" +
+                ") VALUES(?,?,?);");
+    }
+
+    private void setBookCaveBookRating(PreparedStatement s, BookCave.BookRating rating) throws SQLException {
+        s.setString(1, rating.bookId);
+        setStringId(s, 2, rating.rating);
+        s.setInt(3, rating.count);
+    }
+
+    private PreparedStatement prepareInsertBookCaveBookRatingLevel() throws SQLException {
+        return prepareCached(getWriteConnection(), "INSERT" +
+                " INTO " + TABLE_BOOKCAVE_BOOK_RATING_LEVELS + "(" +
+                "book_id" +
+                ",rating_id" +
+                ",title_id" +
+                ",count" +
+                ") VALUES(?,?,?,?);");
+    }
+
+    private void setBookCaveBookRatingLevel(PreparedStatement s, BookCave.BookRatingLevel level) throws SQLException {
+        s.setString(1, level.bookId);
+        setStringId(s, 2, level.rating);
+        setStringId(s, 3, level.title);
+        s.setInt(4, level.count);
+    }
+
+    /**
+     * @return The ID of `value` in {@link #TABLE_STRINGS}, which is added to the dictionary if needed.
+     */
+    long getStringId(String value) throws SQLException {
+        return strings.getId(this, value);
+    }
+
+    /**
+     * Bind the dictionary ID of `value`, adding it to the dictionary if needed.
+     */
+    private void setStringId(PreparedStatement s, int parameterIndex, String value) throws SQLException {
+        if (value != null) {
+            s.setLong(parameterIndex, getStringId(value));
+        } else {
+            s.setNull(parameterIndex, Types.INTEGER);
+        }
+    }
+
+    /**
+     * @param orUpdate Whether to update a book which has been saved before, rather than fail.
+     */
+    private PreparedStatement prepareInsertCommonSenseMediaBook(boolean orUpdate) throws SQLException {
+        return prepareCached(getWriteConnection(), "INSERT" +
+                " INTO " + TABLE_COMMONSENSEMEDIA_BOOKS + "(" +
+                "id" +
+                ",title" +
+                ",authors" +
+                ",illustrators" +
+                ",age" +
+                ",stars" +
+                ",kicker" +
+                ",amazon_url" +
+                ",apple_books_url" +
+                ",google_play_url" +
+                ",genre_id" +
+                ",topics" +
+                ",type_id" +
+                ",know" +
+                ",story" +
+                ",good" +
+                ",talk" +
+                ",publishers" +
+                ",publication_date" +
+                ",publishers_recommended_ages" +
+                ",pages" +
+                ",last_updated" +
+                ",content_hash" +
+                ") VALUES(?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)" +
+                (orUpdate ? onConflictUpdate("id",
+                        "title", "authors", "illustrators", "age", "stars", "kicker", "amazon_url", "apple_books_url",
+                        "google_play_url", "genre_id", "topics", "type_id", "know", "story", "good", "talk", "publishers",
+                        "publication_date", "publishers_recommended_ages", "pages", "last_updated", "content_hash") : "") + ";");
+    }
+
+    private void setCommonSenseMediaBook(PreparedStatement s, CommonSenseMedia.Book book) throws SQLException {
+        s.setString(1, book.id);
+        s.setString(2, book.title);
+        s.setString(3, book.authors);
+        setStringOrNull(s, 4, book.illustrators);
+        s.setString(5, book.age);
+        s.setInt(6, book.stars);
+        s.setString(7, book.kicker);
+        setStringOrNull(s, 8, book.amazonUrl);
+        setStringOrNull(s, 9, book.appleBooksUrl);
+        setStringOrNull(s, 10, book.googlePlayUrl);
+        setStringId(s, 11, book.genre);
+        setStringOrNull(s, 12, book.topics);
+        setStringId(s, 13, book.type);
+        setStringOrNull(s, 14, book.know);
+        setStringOrNull(s, 15, book.story);
+        setStringOrNull(s, 16, book.good);
+        setStringOrNull(s, 17, book.talk);
+        setStringOrNull(s, 18, book.publishers);
+        setStringOrNull(s, 19, book.publicationDate);
+        setStringOrNull(s, 20, book.publishersRecommendedAges);
+        setIntOrNull(s, 21, book.pages, -1);
+        s.setLong(22, book.lastUpdated);
+        s.setLong(23, getContentHash(book));
+    }
+
+    private PreparedStatement prepareInsertCommonSenseMediaBookCategory(boolean orReplace) throws SQLException {
+        return prepareCached(getWriteConnection(), "INSERT" + (orReplace ? " OR REPLACE" : "") +
+                " INTO " + TABLE_COMMONSENSEMEDIA_BOOK_CATEGORIES + "(" +
+                "book_id" +
+                ",category_id" +
+                ",level" +
+                ",explanation" +
+                ") VALUES(?,?,?,?);");
+    }
+
+    private static void setCommonSenseMediaBookCategory(PreparedStatement s, CommonSenseMedia.BookCategory bookCategory) throws SQLException {
+        s.setString(1, bookCategory.bookId);
+        s.setString(2, bookCategory.categoryId);
+        s.setInt(3, bookCategory.level);
+        setStringOrNull(s, 4, bookCategory.explanation);
     }
 
     private void createTablesIfNeeded() {
         final String[] tables = {
+                TABLE_STRINGS,
                 TABLE_AMAZON_BOOKS,
                 TABLE_BOOKCAVE_BOOKS,
                 TABLE_BOOKCAVE_BOOK_RATINGS,
@@ -331,8 +1113,14 @@ public class DatabaseHelper extends AbstractDatabaseHelper {
     }
 
     private void createTableIfNeeded(String name) throws SQLException {
-        if (TABLE_AMAZON_BOOKS.equalsIgnoreCase(name)) {
-            final Statement create = getConnection().createStatement();
+        if (TABLE_STRINGS.equalsIgnoreCase(name)) {
+            final Statement create = getWriteConnection().createStatement();
+            create.execute("CREATE TABLE IF NOT EXISTS " + TABLE_STRINGS + " (" +
+                    "id INTEGER PRIMARY KEY" +
+                    ", value TEXT NOT NULL UNIQUE" + // Moderate
+                    ");");
+        } else if (TABLE_AMAZON_BOOKS.equalsIgnoreCase(name)) {
+            final Statement create = getWriteConnection().createStatement();
             create.execute("CREATE TABLE IF NOT EXISTS " + TABLE_AMAZON_BOOKS + " (" +
                     "asin TEXT PRIMARY KEY" +
                     ", title TEXT DEFAULT NULL" +
@@ -340,78 +1128,18 @@ public class DatabaseHelper extends AbstractDatabaseHelper {
                     ", is_freetime_unlimited BOOLEAN DEFAULT 0" +
                     ", price TEXT DEFAULT NULL" +
                     ", last_updated INTEGER DEFAULT NULL" +
+                    ", content_hash INTEGER DEFAULT NULL" +
                     ");");
         } else if (TABLE_BOOKCAVE_BOOKS.equalsIgnoreCase(name)) {
-            final Statement create = getConnection().createStatement();
-            create.execute("CREATE TABLE IF NOT EXISTS " + TABLE_BOOKCAVE_BOOKS + " (" +
-                    "id TEXT PRIMARY KEY" + // the-haunting-of-gillespie-house
-                    ", title TEXT NOT NULL" + // The Haunting of Gillespie House
-                    ", authors TEXT NOT NULL" + // Darcy Coates
-                    ", summary TEXT NOT NULL" + // Elle is thrilled to spend a month minding the beautiful Gillespie property...
-                    ", description TEXT DEFAULT NULL" + // Elle is thrilled to spend a month minding the beautiful Gillespie property...
-                    ", community_ratings_count INTEGER NOT NULL" + // 1
-                    ", community_average_rating TEXT DEFAULT NULL" + // Moderate
-                    ", pages INTEGER DEFAULT NULL" + // 200
-                    ", genres TEXT DEFAULT NULL" + // Fiction/Horror
-                    ", amazon_kindle_url TEXT DEFAULT NULL" + // https://...
-                    ", amazon_print_url TEXT DEFAULT NULL" + // https://...
-                    ", audible_url TEXT DEFAULT NULL" + // https://...
-                    ", apple_books_url TEXT DEFAULT NULL" + // https://...
-                    ", barnes_and_noble_url TEXT DEFAULT NULL" + // https://...
-                    ", barnes_and_noble_audiobook_url TEXT DEFAULT NULL" + // https://...
-                    ", barnes_and_noble_print_url TEXT DEFAULT NULL" + // https://...
-                    ", google_play_url TEXT DEFAULT NULL" + // https://...
-                    ", kobo_url TEXT DEFAULT NULL" + // https://...
-                    ", smashwords_url TEXT DEFAULT NULL" + // https://...
-                    ", last_updated INTEGER NOT NULL" + // System.currentTimeMillis() -> long
-                    ", asin TEXT DEFAULT NULL" +
-                    ");");
+            createBookCaveBooksTable(getWriteConnection());
         } else if (TABLE_BOOKCAVE_BOOK_RATINGS.equalsIgnoreCase(name)) {
-            final Statement create = getConnection().createStatement();
-            create.execute("CREATE TABLE IF NOT EXISTS " + TABLE_BOOKCAVE_BOOK_RATINGS + " (" +
-                    "book_id TEXT NOT NULL" +
-                    ", rating TEXT NOT NULL" +
-                    ", count INTEGER NOT NULL" +
-                    ", PRIMARY KEY (book_id, rating)" +
-                    ");");
+            createBookCaveBookRatingsTable(getWriteConnection());
         } else if (TABLE_BOOKCAVE_BOOK_RATING_LEVELS.equalsIgnoreCase(name)) {
-            final Statement create = getConnection().createStatement();
-            create.execute("CREATE TABLE IF NOT EXISTS " + TABLE_BOOKCAVE_BOOK_RATING_LEVELS + " (" +
-                    "book_id TEXT NOT NULL" +
-                    ", rating TEXT NOT NULL" +
-                    ", title TEXT NOT NULL" +
-                    ", count INTEGER NOT NULL" +
-                    ", PRIMARY KEY (book_id, rating, title)" +
-                    ");");
+            createBookCaveBookRatingLevelsTable(getWriteConnection());
         } else if (TABLE_COMMONSENSEMEDIA_BOOKS.equalsIgnoreCase(name)) {
-            final Statement statement = getConnection().createStatement();
-            statement.execute("CREATE TABLE IF NOT EXISTS " + TABLE_COMMONSENSEMEDIA_BOOKS + " (" +
-                    "id TEXT PRIMARY KEY" + // the-unwanted-stories-of-the-syrian-refugees
-                    ", title TEXT NOT NULL" + // The Unwanted: Stories of the Syrian Refugees
-                    ", authors TEXT NOT NULL" + // Don Brown
-                    ", illustrators TEXT DEFAULT NULL" + // Don Brown
-                    ", age TEXT NOT NULL" + // 13+
-                    ", stars INTEGER NOT NULL" + // 5
-                    ", kicker TEXT NOT NULL" + // Compassionate graphic novel account of refugees' struggle.
-                    ", amazon_url TEXT DEFAULT NULL" +
-                    ", apple_books_url TEXT DEFAULT NULL" +
-                    ", google_play_url TEXT DEFAULT NULL" +
-                    ", genre TEXT NOT NULL" + // graphic novel
-                    ", topics TEXT DEFAULT NULL" + // history,misfits and underdogs,pirates
-                    ", type TEXT NOT NULL" + // non-fiction
-                    ", know TEXT DEFAULT NULL" + // Parents need to know that The Unwanted is a nonfiction graphic novel written and illustrated by...
-                    ", story TEXT DEFAULT NULL" + // Beginning in 2011, THE UNWANTED shows how the simple act of spray-painting...
-                    ", good TEXT DEFAULT NULL" + // The issues surrounding the ongoing Syrian refugee crisis are numerous and complex,...
-                    ", talk TEXT DEFAULT NULL" + // Families can talk about the conditions that force people to leave their homes...
-                    ", publishers TEXT DEFAULT NULL" + // HMH Books for Young Readers
-                    ", publication_date TEXT DEFAULT NULL" + // September 18, 2018 -> 2018-09-18
-                    ", publishers_recommended_ages TEXT DEFAULT NULL" + // NULL or '13 - 18'
-                    ", pages INTEGER DEFAULT NULL" + // 112
-                    ", last_updated INTEGER NOT NULL" + // System.currentTimeMillis() -> long
-                    ", asin TEXT DEFAULT NULL" +
-                    ");");
+            createCommonSenseMediaBooksTable(getWriteConnection());
         } else if (TABLE_COMMONSENSEMEDIA_BOOK_CATEGORIES.equalsIgnoreCase(name)) {
-            final Statement statement = getConnection().createStatement();
+            final Statement statement = getWriteConnection().createStatement();
             statement.execute("CREATE TABLE IF NOT EXISTS " + TABLE_COMMONSENSEMEDIA_BOOK_CATEGORIES + " (" +
                     "book_id TEXT NOT NULL" + // the-unwanted-stories-of-the-syrian-refugees
                     ", category_id TEXT NOT NULL" +
@@ -424,6 +1152,100 @@ public class DatabaseHelper extends AbstractDatabaseHelper {
         }
     }
 
+    /**
+     * @return The dictionary string whose ID is in `columnLabel`, or `null`.
+     */
+    private String getStringById(ResultSet result, String columnLabel) throws SQLException {
+        final long id = result.getLong(columnLabel);
+        if (result.wasNull()) {
+            return null;
+        }
+        return strings.getValue(this, id);
+    }
+
+    private static void createBookCaveBooksTable(Connection connection) throws SQLException {
+        final Statement create = connection.createStatement();
+        create.execute("CREATE TABLE IF NOT EXISTS " + TABLE_BOOKCAVE_BOOKS + " (" +
+                "id TEXT PRIMARY KEY" + // the-haunting-of-gillespie-house
+                ", title TEXT NOT NULL" + // The Haunting of Gillespie House
+                ", authors TEXT NOT NULL" + // Darcy Coates
+                ", summary TEXT NOT NULL" + // Elle is thrilled to spend a month minding the beautiful Gillespie property...
+                ", description TEXT DEFAULT NULL" + // Elle is thrilled to spend a month minding the beautiful Gillespie property...
+                ", community_ratings_count INTEGER NOT NULL" + // 1
+                ", community_average_rating TEXT DEFAULT NULL" + // Moderate
+                ", pages INTEGER DEFAULT NULL" + // 200
+                ", genres_id INTEGER DEFAULT NULL" + // Strings.id of `Fiction/Horror`
+                ", amazon_kindle_url TEXT DEFAULT NULL" + // https://...
+                ", amazon_print_url TEXT DEFAULT NULL" + // https://...
+                ", audible_url TEXT DEFAULT NULL" + // https://...
+                ", apple_books_url TEXT DEFAULT NULL" + // https://...
+                ", barnes_and_noble_url TEXT DEFAULT NULL" + // https://...
+                ", barnes_and_noble_audiobook_url TEXT DEFAULT NULL" + // https://...
+                ", barnes_and_noble_print_url TEXT DEFAULT NULL" + // https://...
+                ", google_play_url TEXT DEFAULT NULL" + // https://...
+                ", kobo_url TEXT DEFAULT NULL" + // https://...
+                ", smashwords_url TEXT DEFAULT NULL" + // https://...
+                ", last_updated INTEGER NOT NULL" + // System.currentTimeMillis() -> long
+                ", asin TEXT DEFAULT NULL" +
+                ", content_hash INTEGER DEFAULT NULL" +
+                ");");
+        create.close();
+    }
+
+    private static void createBookCaveBookRatingsTable(Connection connection) throws SQLException {
+        final Statement create = connection.createStatement();
+        create.execute("CREATE TABLE IF NOT EXISTS " + TABLE_BOOKCAVE_BOOK_RATINGS + " (" +
+                "book_id TEXT NOT NULL" +
+                ", rating_id INTEGER NOT NULL" + // Strings.id of `Moderate`
+                ", count INTEGER NOT NULL" +
+                ", PRIMARY KEY (book_id, rating_id)" +
+                ");");
+        create.close();
+    }
+
+    private static void createBookCaveBookRatingLevelsTable(Connection connection) throws SQLException {
+        final Statement create = connection.createStatement();
+        create.execute("CREATE TABLE IF NOT EXISTS " + TABLE_BOOKCAVE_BOOK_RATING_LEVELS + " (" +
+                "book_id TEXT NOT NULL" +
+                ", rating_id INTEGER NOT NULL" + // Strings.id of `Moderate`
+                ", title_id INTEGER NOT NULL" + // Strings.id of `Mild Language`
+                ", count INTEGER NOT NULL" +
+                ", PRIMARY KEY (book_id, rating_id, title_id)" +
+                ");");
+        create.close();
+    }
+
+    private static void createCommonSenseMediaBooksTable(Connection connection) throws SQLException {
+        final Statement statement = connection.createStatement();
+        statement.execute("CREATE TABLE IF NOT EXISTS " + TABLE_COMMONSENSEMEDIA_BOOKS + " (" +
+                "id TEXT PRIMARY KEY" + // the-unwanted-stories-of-the-syrian-refugees
+                ", title TEXT NOT NULL" + // The Unwanted: Stories of the Syrian Refugees
+                ", authors TEXT NOT NULL" + // Don Brown
+                ", illustrators TEXT DEFAULT NULL" + // Don Brown
+                ", age TEXT NOT NULL" + // 13+
+                ", stars INTEGER NOT NULL" + // 5
+                ", kicker TEXT NOT NULL" + // Compassionate graphic novel account of refugees' struggle.
+                ", amazon_url TEXT DEFAULT NULL" +
+                ", apple_books_url TEXT DEFAULT NULL" +
+                ", google_play_url TEXT DEFAULT NULL" +
+                ", genre_id INTEGER NOT NULL" + // Strings.id of `graphic novel`
+                ", topics TEXT DEFAULT NULL" + // history,misfits and underdogs,pirates
+                ", type_id INTEGER NOT NULL" + // Strings.id of `non-fiction`
+                ", know TEXT DEFAULT NULL" + // Parents need to know that The Unwanted is a nonfiction graphic novel written and illustrated by...
+                ", story TEXT DEFAULT NULL" + // Beginning in 2011, THE UNWANTED shows how the simple act of spray-painting...
+                ", good TEXT DEFAULT NULL" + // The issues surrounding the ongoing Syrian refugee crisis are numerous and complex,...
+                ", talk TEXT DEFAULT NULL" + // Families can talk about the conditions that force people to leave their homes...
+                ", publishers TEXT DEFAULT NULL" + // HMH Books for Young Readers
+                ", publication_date TEXT DEFAULT NULL" + // September 18, 2018 -> 2018-09-18
+                ", publishers_recommended_ages TEXT DEFAULT NULL" + // NULL or '13 - 18'
+                ", pages INTEGER DEFAULT NULL" + // 112
+                ", last_updated INTEGER NOT NULL" + // System.currentTimeMillis() -> long
+                ", asin TEXT DEFAULT NULL" +
+                ", content_hash INTEGER DEFAULT NULL" +
+                ");");
+        statement.close();
+    }
+
     private AmazonKindle.Book makeAmazonBookFromResult(ResultSet result) throws SQLException {
         final AmazonKindle.Book book = new AmazonKindle.Book();
         book.asin = result.getString("asin");
@@ -443,9 +1265,9 @@ public class DatabaseHelper extends AbstractDatabaseHelper {
         book.summary = result.getString("summary");
         book.description = result.getString("description");
         book.communityRatingsCount = result.getInt("community_ratings_count");
-        book.communityAverageRating = result.getString("community_average_rating");
+        book.communityAverageRating = strings.intern(result.getString("community_average_rating"));
         book.pages = getIntOrNull(result, "pages", -1);
-        book.genres = result.getString("genres");
+        book.genres = getStringById(result, "genres_id");
         book.amazonKindleUrl = result.getString("amazon_kindle_url");
         book.amazonPrintUrl = result.getString("amazon_print_url");
         book.audibleUrl = result.getString("audible_url");
@@ -473,9 +1295,9 @@ public class DatabaseHelper extends AbstractDatabaseHelper {
         book.amazonUrl = result.getString("amazon_url");
         book.appleBooksUrl = result.getString("apple_books_url");
         book.googlePlayUrl = result.getString("google_play_url");
-        book.genre = result.getString("genre");
+        book.genre = getStringById(result, "genre_id");
         book.topics = result.getString("topics");
-        book.type = result.getString("type");
+        book.type = getStringById(result, "type_id");
         book.know = result.getString("know");
         book.story = result.getString("story");
         book.good = result.getString("good");
@@ -501,7 +1323,7 @@ public class DatabaseHelper extends AbstractDatabaseHelper {
     private BookCave.BookRating makeBookCaveRatingFromResult(ResultSet result) throws SQLException {
         final BookCave.BookRating bookRating = new BookCave.BookRating();
         bookRating.bookId = result.getString("book_id");
-        bookRating.rating = result.getString("rating");
+        bookRating.rating = getStringById(result, "rating_id");
         bookRating.count = result.getInt("count");
         return bookRating;
     }
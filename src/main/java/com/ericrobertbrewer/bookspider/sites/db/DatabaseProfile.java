@@ -0,0 +1,140 @@
+package com.ericrobertbrewer.bookspider.sites.db;
+
+import org.sqlite.SQLiteConfig;
+
+/**
+ * Describes how the connections of an {@link AbstractDatabaseHelper} are opened: how the database is journaled,
+ * how often it is synced to disk, and how much of it is cached in memory.
+ */
+public class DatabaseProfile {
+
+    /**
+     * SQLite's own defaults: a rollback journal, which is synced on every commit.
+     * Readers and the writer block each other.
+     */
+    public static DatabaseProfile defaults() {
+        return new DatabaseProfile();
+    }
+
+    /**
+     * Write-ahead logging, which lets any number of readers (in this or other processes) read while one writer writes.
+     * Commits are only synced at checkpoints, so a power loss may lose the last few transactions, but never corrupts
+     * the database.
+     */
+    public static DatabaseProfile wal() {
+        return new DatabaseProfile()
+                .setJournalMode(SQLiteConfig.JournalMode.WAL)
+                .setSynchronous(SQLiteConfig.SynchronousMode.NORMAL)
+                .setCacheSizeKibibytes(64 * 1024)
+                .setMmapSizeBytes(256L * 1024L * 1024L);
+    }
+
+    /**
+     * For jobs which scan whole tables of a database that may be written at the same time (e.g., by a scraper).
+     * Like {@link #wal()}, with more of the database cached and memory-mapped.
+     */
+    public static DatabaseProfile analytics() {
+        return wal()
+                .setCacheSizeKibibytes(256 * 1024)
+                .setMmapSizeBytes(1024L * 1024L * 1024L);
+    }
+
+    private SQLiteConfig.JournalMode journalMode = SQLiteConfig.JournalMode.DELETE;
+    private SQLiteConfig.SynchronousMode synchronous = SQLiteConfig.SynchronousMode.FULL;
+    private int cacheSizeKibibytes = 2000;
+    private long mmapSizeBytes = 0L;
+    private int walAutoCheckpointPages = 1000;
+    private int busyTimeoutMillis = 30000;
+    private long metricsLogIntervalMillis = 10L * 60L * 1000L;
+
+    public SQLiteConfig.JournalMode getJournalMode() {
+        return journalMode;
+    }
+
+    /**
+     * @param journalMode Applied by the write connection. The mode is stored in the database file,
+     *                    so it also applies to every other connection, including those of other processes.
+     */
+    public DatabaseProfile setJournalMode(SQLiteConfig.JournalMode journalMode) {
+        this.journalMode = journalMode;
+        return this;
+    }
+
+    public boolean isWal() {
+        return journalMode == SQLiteConfig.JournalMode.WAL;
+    }
+
+    public SQLiteConfig.SynchronousMode getSynchronous() {
+        return synchronous;
+    }
+
+    public DatabaseProfile setSynchronous(SQLiteConfig.SynchronousMode synchronous) {
+        this.synchronous = synchronous;
+        return this;
+    }
+
+    public int getCacheSizeKibibytes() {
+        return cacheSizeKibibytes;
+    }
+
+    /**
+     * @param cacheSizeKibibytes Page cache of each connection.
+     */
+    public DatabaseProfile setCacheSizeKibibytes(int cacheSizeKibibytes) {
+        this.cacheSizeKibibytes = cacheSizeKibibytes;
+        return this;
+    }
+
+    public long getMmapSizeBytes() {
+        return mmapSizeBytes;
+    }
+
+    /**
+     * @param mmapSizeBytes How much of the database file each connection reads through memory-mapped I/O,
+     *                      instead of copying pages into its cache. `0` disables memory mapping.
+     */
+    public DatabaseProfile setMmapSizeBytes(long mmapSizeBytes) {
+        this.mmapSizeBytes = mmapSizeBytes;
+        return this;
+    }
+
+    public int getWalAutoCheckpointPages() {
+        return walAutoCheckpointPages;
+    }
+
+    /**
+     * @param walAutoCheckpointPages Size of the write-ahead log, in pages, after which a commit of the write connection
+     *                               copies the log back into the database. `0` disables automatic checkpoints;
+     *                               then the log grows until {@link AbstractDatabaseHelper#checkpoint(boolean)} is called.
+     */
+    public DatabaseProfile setWalAutoCheckpointPages(int walAutoCheckpointPages) {
+        this.walAutoCheckpointPages = walAutoCheckpointPages;
+        return this;
+    }
+
+    public int getBusyTimeoutMillis() {
+        return busyTimeoutMillis;
+    }
+
+    /**
+     * @param busyTimeoutMillis How long a connection waits for another connection (or process) to release its lock
+     *                          before failing with `SQLITE_BUSY`.
+     */
+    public DatabaseProfile setBusyTimeoutMillis(int busyTimeoutMillis) {
+        this.busyTimeoutMillis = busyTimeoutMillis;
+        return this;
+    }
+
+    public long getMetricsLogIntervalMillis() {
+        return metricsLogIntervalMillis;
+    }
+
+    /**
+     * @param metricsLogIntervalMillis How often a summary of {@link AbstractDatabaseHelper#getStatementMetrics()}
+     *                                 is logged, and once more when the helper is closed. `0` disables the summary.
+     */
+    public DatabaseProfile setMetricsLogIntervalMillis(long metricsLogIntervalMillis) {
+        this.metricsLogIntervalMillis = metricsLogIntervalMillis;
+        return this;
+    }
+}
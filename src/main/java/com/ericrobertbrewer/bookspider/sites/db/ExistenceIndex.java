@@ -0,0 +1,50 @@
+package com.ericrobertbrewer.bookspider.sites.db;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An in-memory set of the keys which exist in one column of a table, loaded in a single query.
+ * Checking it replaces one `SELECT` per item (e.g., {@link AbstractDatabaseHelper#recordExists(String, String, String)})
+ * when nearly every item has already been saved, such as when a scraper restarts.
+ * <p>
+ * The index is not notified of writes to the database; whoever saves a record should also {@link #add(String)} its key.
+ * It is thread-safe.
+ */
+public class ExistenceIndex {
+
+    /**
+     * @param databaseHelper Should have already been connected.
+     * @param table          Table.
+     * @param key            Column, usually the primary key.
+     * @return An index of every value of `key` in `table`.
+     * @throws SQLException When an error occurs.
+     */
+    public static ExistenceIndex load(AbstractDatabaseHelper databaseHelper, String table, String key) throws SQLException {
+        final ExistenceIndex index = new ExistenceIndex();
+        final Statement select = databaseHelper.getReadConnection().createStatement();
+        final ResultSet result = select.executeQuery("SELECT " + key + " FROM " + table + ";");
+        while (result.next()) {
+            index.keys.add(result.getString(1));
+        }
+        select.close();
+        return index;
+    }
+
+    private final Set<String> keys = ConcurrentHashMap.newKeySet();
+
+    public boolean contains(String key) {
+        return keys.contains(key);
+    }
+
+    public void add(String key) {
+        keys.add(key);
+    }
+
+    public int size() {
+        return keys.size();
+    }
+}
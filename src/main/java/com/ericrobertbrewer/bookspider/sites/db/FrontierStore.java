@@ -0,0 +1,294 @@
+package com.ericrobertbrewer.bookspider.sites.db;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A persistent frontier of item IDs (e.g., books) which records how far each item has been processed,
+ * so that a restarted scraper resumes with only the unfinished items.
+ * <p>
+ * Each scraper keeps its own store in its content folder.
+ * Items move from {@link State#PENDING} to {@link State#IN_FLIGHT} when a worker claims them,
+ * then to either {@link State#DONE} or {@link State#FAILED}. Failed items may be claimed again after a delay.
+ */
+public class FrontierStore extends AbstractDatabaseHelper {
+
+    public enum State {
+        PENDING,
+        IN_FLIGHT,
+        DONE,
+        FAILED
+    }
+
+    public static final String FILE_NAME = "frontier.db";
+    public static final String TABLE_FRONTIER = "Frontier";
+
+    // File from which frontiers were read before this store existed.
+    private static final String LEGACY_FILE_NAME = "frontier.txt";
+
+    public FrontierStore(Logger logger) {
+        super(logger);
+    }
+
+    /**
+     * Connect to the store in the given folder, creating it if needed.
+     * Items which were left in-flight by a previous run (which presumably crashed) are made pending again.
+     * A legacy `frontier.txt` file is imported the first time.
+     *
+     * @param contentFolder Content folder of the scraper.
+     */
+    public void connectToFrontier(File contentFolder) {
+        // Every claimed book is written, so avoid syncing a rollback journal each time.
+        connect(new File(contentFolder, FILE_NAME).getPath(), DatabaseProfile.wal());
+        try {
+            createTableIfNeeded();
+            final int resetCount = resetInFlight();
+            if (resetCount > 0) {
+                getLogger().log(Level.INFO, "Reset " + resetCount + " in-flight frontier item(s) from a previous run.");
+            }
+            final File legacyFile = new File(contentFolder, LEGACY_FILE_NAME);
+            if (legacyFile.exists() && getCount() == 0) {
+                final List<String> ids = new ArrayList<>();
+                for (String line : Files.readAllLines(legacyFile.toPath())) {
+                    final String id = line.trim();
+                    if (!id.isEmpty()) {
+                        ids.add(id);
+                    }
+                }
+                final List<String> added = addAll(ids);
+                getLogger().log(Level.INFO, "Imported " + added.size() + " frontier item(s) from `" + legacyFile.getPath() + "`.");
+            }
+        } catch (SQLException e) {
+            getLogger().log(Level.SEVERE, "Unable to prepare frontier store.", e);
+        } catch (IOException e) {
+            getLogger().log(Level.WARNING, "Unable to read legacy frontier file.", e);
+        }
+    }
+
+    /**
+     * Add items which are not yet in the store, in a single transaction.
+     *
+     * @param ids Item IDs, possibly including IDs which have been added before.
+     * @return The IDs which were new to the store, in their given order. Only these should be queued for work.
+     * @throws SQLException When an error occurs.
+     */
+    public synchronized List<String> addAll(Collection<String> ids) throws SQLException {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final List<String> added = new ArrayList<>();
+        getWriteConnection().setAutoCommit(false);
+        try {
+            final PreparedStatement insert = prepareCached(getWriteConnection(), "INSERT OR IGNORE" +
+                    " INTO " + TABLE_FRONTIER + "(" +
+                    "id" +
+                    ",state" +
+                    ",updated" +
+                    ") VALUES(?,?,?);");
+            final long now = System.currentTimeMillis();
+            for (String id : ids) {
+                insert.setString(1, id);
+                insert.setString(2, State.PENDING.name());
+                insert.setLong(3, now);
+                if (insert.executeUpdate() == 1) {
+                    added.add(id);
+                }
+            }
+            getWriteConnection().commit();
+        } catch (SQLException e) {
+            getWriteConnection().rollback();
+            throw e;
+        } finally {
+            getWriteConnection().setAutoCommit(true);
+        }
+        return added;
+    }
+
+    /**
+     * @param now Current time, in milliseconds since the epoch.
+     * @return IDs of every pending item, and of every failed item whose retry time has passed, in the order they were added.
+     * @throws SQLException When an error occurs.
+     */
+    public synchronized List<String> getClaimable(long now) throws SQLException {
+        final PreparedStatement select = prepareCached(getWriteConnection(), "SELECT id" +
+                " FROM " + TABLE_FRONTIER +
+                " WHERE state=?" +
+                " OR (state=? AND retry_after<=?)" +
+                " ORDER BY rowid;");
+        select.setString(1, State.PENDING.name());
+        select.setString(2, State.FAILED.name());
+        select.setLong(3, now);
+        final ResultSet result = select.executeQuery();
+        final List<String> ids = new ArrayList<>();
+        while (result.next()) {
+            ids.add(result.getString("id"));
+        }
+        result.close();
+        return ids;
+    }
+
+    /**
+     * Atomically mark an item as in-flight, unless it has already been claimed or finished.
+     *
+     * @param id Item ID.
+     * @return `true` if the caller now owns the item, and must later mark it as done or failed.
+     * @throws SQLException When an error occurs.
+     */
+    public synchronized boolean claim(String id) throws SQLException {
+        final PreparedStatement update = prepareCached(getWriteConnection(), "UPDATE " + TABLE_FRONTIER +
+                " SET" +
+                " state=?" +
+                ",updated=?" +
+                " WHERE id=?" +
+                " AND state IN (?,?);");
+        update.setString(1, State.IN_FLIGHT.name());
+        update.setLong(2, System.currentTimeMillis());
+        update.setString(3, id);
+        update.setString(4, State.PENDING.name());
+        update.setString(5, State.FAILED.name());
+        return update.executeUpdate() == 1;
+    }
+
+    public synchronized void markDone(String id) throws SQLException {
+        final PreparedStatement update = prepareCached(getWriteConnection(), "UPDATE " + TABLE_FRONTIER +
+                " SET" +
+                " state=?" +
+                ",updated=?" +
+                ",retry_after=NULL" +
+                " WHERE id=?;");
+        update.setString(1, State.DONE.name());
+        update.setLong(2, System.currentTimeMillis());
+        update.setString(3, id);
+        update.executeUpdate();
+    }
+
+    /**
+     * @param id          Item ID.
+     * @param retryAfter  Time before which the item should not be claimed again, in milliseconds since the epoch.
+     * @throws SQLException When an error occurs.
+     */
+    public synchronized void markFailed(String id, long retryAfter) throws SQLException {
+        final PreparedStatement update = prepareCached(getWriteConnection(), "UPDATE " + TABLE_FRONTIER +
+                " SET" +
+                " state=?" +
+                ",updated=?" +
+                ",retry_after=?" +
+                ",attempts=attempts+1" +
+                " WHERE id=?;");
+        update.setString(1, State.FAILED.name());
+        update.setLong(2, System.currentTimeMillis());
+        update.setLong(3, retryAfter);
+        update.setString(4, id);
+        update.executeUpdate();
+    }
+
+    /**
+     * Make every finished item pending again, e.g., to force every item to be scraped again.
+     *
+     * @return The number of items which were reset.
+     * @throws SQLException When an error occurs.
+     */
+    public synchronized int resetDone() throws SQLException {
+        return setState(State.DONE, State.PENDING);
+    }
+
+    /**
+     * Make the given items pending again, e.g., to refresh items whose data has become stale.
+     * Items which are not yet in the store are added. Items which are in-flight or failed are left alone.
+     *
+     * @param ids Item IDs.
+     * @throws SQLException When an error occurs.
+     */
+    public synchronized void requeue(Collection<String> ids) throws SQLException {
+        if (ids.isEmpty()) {
+            return;
+        }
+        addAll(ids);
+        getWriteConnection().setAutoCommit(false);
+        try {
+            final PreparedStatement update = prepareCached(getWriteConnection(), "UPDATE " + TABLE_FRONTIER +
+                    " SET" +
+                    " state=?" +
+                    ",updated=?" +
+                    " WHERE id=?" +
+                    " AND state=?;");
+            final long now = System.currentTimeMillis();
+            for (String id : ids) {
+                update.setString(1, State.PENDING.name());
+                update.setLong(2, now);
+                update.setString(3, id);
+                update.setString(4, State.DONE.name());
+                update.executeUpdate();
+            }
+            getWriteConnection().commit();
+        } catch (SQLException e) {
+            getWriteConnection().rollback();
+            throw e;
+        } finally {
+            getWriteConnection().setAutoCommit(true);
+        }
+    }
+
+    public synchronized Map<State, Integer> getCountsByState() throws SQLException {
+        final Map<State, Integer> counts = new EnumMap<>(State.class);
+        final Statement select = getWriteConnection().createStatement();
+        final ResultSet result = select.executeQuery("SELECT state, COUNT(*) AS count" +
+                " FROM " + TABLE_FRONTIER +
+                " GROUP BY state;");
+        while (result.next()) {
+            counts.put(State.valueOf(result.getString("state")), result.getInt("count"));
+        }
+        select.close();
+        return counts;
+    }
+
+    private int resetInFlight() throws SQLException {
+        return setState(State.IN_FLIGHT, State.PENDING);
+    }
+
+    private int setState(State from, State to) throws SQLException {
+        final PreparedStatement update = prepareCached(getWriteConnection(), "UPDATE " + TABLE_FRONTIER +
+                " SET" +
+                " state=?" +
+                ",updated=?" +
+                " WHERE state=?;");
+        update.setString(1, to.name());
+        update.setLong(2, System.currentTimeMillis());
+        update.setString(3, from.name());
+        return update.executeUpdate();
+    }
+
+    private int getCount() throws SQLException {
+        final Statement select = getWriteConnection().createStatement();
+        final ResultSet result = select.executeQuery("SELECT COUNT(*) FROM " + TABLE_FRONTIER + ";");
+        final int count = result.next() ? result.getInt(1) : 0;
+        select.close();
+        return count;
+    }
+
+    private void createTableIfNeeded() throws SQLException {
+        final Statement create = getWriteConnection().createStatement();
+        create.execute("CREATE TABLE IF NOT EXISTS " + TABLE_FRONTIER + " (" +
+                "id TEXT PRIMARY KEY" + // the-haunting-of-gillespie-house
+                ", state TEXT NOT NULL" + // PENDING
+                ", attempts INTEGER NOT NULL DEFAULT 0" + // Number of times the item has failed.
+                ", retry_after INTEGER DEFAULT NULL" + // System.currentTimeMillis() -> long
+                ", updated INTEGER NOT NULL" + // System.currentTimeMillis() -> long
+                ");");
+        create.execute("CREATE INDEX IF NOT EXISTS " + TABLE_FRONTIER + "_state ON " + TABLE_FRONTIER + " (state);");
+        create.close();
+    }
+}
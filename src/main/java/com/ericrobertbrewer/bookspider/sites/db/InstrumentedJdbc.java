@@ -0,0 +1,210 @@
+package com.ericrobertbrewer.bookspider.sites.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+
+/**
+ * Wraps a connection so that every statement which it creates records its executions in {@link StatementMetrics}.
+ * Every other call is passed straight through to the wrapped object.
+ */
+class InstrumentedJdbc {
+
+    static Connection wrap(Connection connection, StatementMetrics metrics) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new ConnectionHandler(connection, metrics));
+    }
+
+    /**
+     * Handles the methods of {@link Object} by the identity of the proxy, so that proxies may be used as map keys.
+     */
+    private abstract static class Handler implements InvocationHandler {
+
+        final Object target;
+
+        Handler(Object target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return "Instrumented " + target;
+                }
+            }
+            return handle(method, args);
+        }
+
+        abstract Object handle(Method method, Object[] args) throws Throwable;
+
+        Object delegate(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private static class ConnectionHandler extends Handler {
+
+        private final StatementMetrics metrics;
+
+        ConnectionHandler(Connection connection, StatementMetrics metrics) {
+            super(connection);
+            this.metrics = metrics;
+        }
+
+        @Override
+        Object handle(Method method, Object[] args) throws Throwable {
+            final String name = method.getName();
+            if ("commit".equals(name) || "rollback".equals(name)) {
+                // Transactions are synced to disk when they commit, which can take longer than any of their statements.
+                final String type = name.toUpperCase(Locale.US);
+                final long start = System.nanoTime();
+                try {
+                    delegate(method, args);
+                } catch (SQLException e) {
+                    metrics.record(type, System.nanoTime() - start, 0L, e);
+                    throw e;
+                }
+                metrics.record(type, System.nanoTime() - start, 0L, null);
+                return null;
+            }
+            final Object result = delegate(method, args);
+            if ("createStatement".equals(name)) {
+                return Proxy.newProxyInstance(Statement.class.getClassLoader(),
+                        new Class<?>[]{Statement.class},
+                        new StatementHandler(result, null, metrics));
+            } else if ("prepareStatement".equals(name)) {
+                return Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                        new Class<?>[]{PreparedStatement.class},
+                        new StatementHandler(result, StatementMetrics.getStatementType((String) args[0]), metrics));
+            }
+            return result;
+        }
+    }
+
+    private static class StatementHandler extends Handler {
+
+        // Type of a prepared statement, or `null` for a statement whose SQL is given to each `execute` method.
+        private final String preparedType;
+        private final StatementMetrics metrics;
+
+        StatementHandler(Object statement, String preparedType, StatementMetrics metrics) {
+            super(statement);
+            this.preparedType = preparedType;
+            this.metrics = metrics;
+        }
+
+        @Override
+        Object handle(Method method, Object[] args) throws Throwable {
+            final String name = method.getName();
+            if (!name.startsWith("execute")) {
+                return delegate(method, args);
+            }
+            final String type;
+            if (args != null && args.length > 0 && args[0] instanceof String) {
+                type = StatementMetrics.getStatementType((String) args[0]);
+            } else if (preparedType != null) {
+                type = preparedType;
+            } else {
+                // E.g., the batch of a plain statement.
+                type = "(batch)";
+            }
+            final long start = System.nanoTime();
+            final Object result;
+            try {
+                result = delegate(method, args);
+            } catch (SQLException e) {
+                metrics.record(type, System.nanoTime() - start, 0L, e);
+                throw e;
+            }
+            final long nanos = System.nanoTime() - start;
+            if (result instanceof ResultSet) {
+                // Recorded once the rows have been read.
+                return Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                        new Class<?>[]{ResultSet.class},
+                        new ResultSetHandler(result, type, nanos, metrics));
+            }
+            long rows = 0L;
+            if (result instanceof Integer || result instanceof Long) {
+                rows = Math.max(0L, ((Number) result).longValue());
+            } else if (result instanceof int[]) {
+                for (int count : (int[]) result) {
+                    rows += Math.max(0, count);
+                }
+            } else if (result instanceof long[]) {
+                for (long count : (long[]) result) {
+                    rows += Math.max(0L, count);
+                }
+            }
+            metrics.record(type, nanos, rows, null);
+            return result;
+        }
+    }
+
+    private static class ResultSetHandler extends Handler {
+
+        private final String type;
+        private final StatementMetrics metrics;
+        private long nanos;
+        private long rows = 0L;
+        private boolean isRecorded = false;
+
+        ResultSetHandler(Object resultSet, String type, long nanos, StatementMetrics metrics) {
+            super(resultSet);
+            this.type = type;
+            this.nanos = nanos;
+            this.metrics = metrics;
+        }
+
+        @Override
+        Object handle(Method method, Object[] args) throws Throwable {
+            final String name = method.getName();
+            if ("next".equals(name)) {
+                final long start = System.nanoTime();
+                final boolean hasNext;
+                try {
+                    hasNext = (Boolean) delegate(method, args);
+                } catch (SQLException e) {
+                    nanos += System.nanoTime() - start;
+                    record(e);
+                    throw e;
+                }
+                nanos += System.nanoTime() - start;
+                if (hasNext) {
+                    rows++;
+                } else {
+                    record(null);
+                }
+                return hasNext;
+            } else if ("close".equals(name)) {
+                record(null);
+            }
+            return delegate(method, args);
+        }
+
+        private void record(SQLException error) {
+            if (isRecorded) {
+                return;
+            }
+            isRecorded = true;
+            metrics.record(type, nanos, rows, error);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.ericrobertbrewer.bookspider.sites.db;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A thread-safe map of at most `maxSize` entries, which evicts its least recently used entry to make room for a new one.
+ *
+ * @param <K> Type of key.
+ * @param <V> Type of value.
+ */
+public class LruCache<K, V> {
+
+    private final Map<K, V> map;
+    private long hitCount = 0L;
+    private long missCount = 0L;
+
+    public LruCache(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be positive: `" + maxSize + "`.");
+        }
+        // Iterate in access order, so that the eldest entry is the least recently used.
+        map = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * @return The value of `key`, or `null` if it is not cached.
+     */
+    public synchronized V get(K key) {
+        final V value = map.get(key);
+        if (value != null) {
+            hitCount++;
+        } else {
+            missCount++;
+        }
+        return value;
+    }
+
+    public synchronized void put(K key, V value) {
+        map.put(key, value);
+    }
+
+    /**
+     * Cache `value` unless `key` is already cached, e.g., by a writer which raced this caller.
+     */
+    public synchronized void putIfAbsent(K key, V value) {
+        map.putIfAbsent(key, value);
+    }
+
+    public synchronized void remove(K key) {
+        map.remove(key);
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+}
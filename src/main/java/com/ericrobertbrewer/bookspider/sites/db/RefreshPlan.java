@@ -0,0 +1,84 @@
+package com.ericrobertbrewer.bookspider.sites.db;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The records of a table which are due to be scraped again, stalest first.
+ * <p>
+ * Records are ordered by their `last_updated` column, which is indexed, so the stalest `budget` records are read
+ * without sorting the whole table. Running a scraper with a small budget every day keeps a table current
+ * without ever scraping every record at once.
+ */
+public class RefreshPlan {
+
+    /**
+     * @return A plan in which no records are due.
+     */
+    public static RefreshPlan none() {
+        return new RefreshPlan(Collections.emptyList());
+    }
+
+    /**
+     * @param databaseHelper Should have already been connected.
+     * @param table          Table, which must have a `last_updated` column in milliseconds since the epoch.
+     * @param key            Column which identifies each record, usually the primary key.
+     * @param maxAgeMillis   Records which were last updated at least this long ago are due.
+     * @param budget         Maximum number of records to refresh.
+     * @param now            Current time, in milliseconds since the epoch.
+     * @return A plan of up to `budget` due records.
+     * @throws SQLException When an error occurs.
+     */
+    public static RefreshPlan select(AbstractDatabaseHelper databaseHelper, String table, String key, long maxAgeMillis, int budget, long now) throws SQLException {
+        if (budget <= 0) {
+            return none();
+        }
+        final PreparedStatement select = databaseHelper.getReadConnection().prepareStatement("SELECT " + key +
+                " FROM " + table +
+                " WHERE last_updated<=?" +
+                " ORDER BY last_updated" +
+                " LIMIT ?;");
+        select.setLong(1, now - maxAgeMillis);
+        select.setInt(2, budget);
+        final ResultSet result = select.executeQuery();
+        final List<String> ids = new ArrayList<>();
+        while (result.next()) {
+            ids.add(result.getString(1));
+        }
+        select.close();
+        return new RefreshPlan(ids);
+    }
+
+    private final List<String> ids;
+    private final Set<String> idSet;
+
+    private RefreshPlan(List<String> ids) {
+        this.ids = Collections.unmodifiableList(ids);
+        idSet = new HashSet<>(ids);
+    }
+
+    /**
+     * @return IDs of the due records, stalest first.
+     */
+    public List<String> getIds() {
+        return ids;
+    }
+
+    public boolean contains(String id) {
+        return idSet.contains(id);
+    }
+
+    public boolean isEmpty() {
+        return ids.isEmpty();
+    }
+
+    public int size() {
+        return ids.size();
+    }
+}
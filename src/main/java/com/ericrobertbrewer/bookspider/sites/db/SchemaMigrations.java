@@ -0,0 +1,117 @@
+package com.ericrobertbrewer.bookspider.sites.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An ordered list of schema changes, each of which is applied to a database exactly once.
+ * The version of a migration is its position in the list, starting at `1`.
+ * Applied versions are recorded in the table {@link #TABLE_SCHEMA_VERSIONS} of the database itself.
+ * <p>
+ * Migrations should be idempotent (e.g., `CREATE INDEX IF NOT EXISTS`), since two processes may connect to the same
+ * database at once. Never reorder or remove a migration which has been released; add a new one instead.
+ */
+public class SchemaMigrations {
+
+    public static final String TABLE_SCHEMA_VERSIONS = "SchemaVersions";
+
+    public interface Migration {
+        void apply(Connection connection) throws SQLException;
+    }
+
+    private final List<String> descriptions = new ArrayList<>();
+    private final List<Migration> migrations = new ArrayList<>();
+
+    /**
+     * @param description Recorded along with the version once the migration has been applied.
+     * @param migration   Schema change. Run within a transaction.
+     * @return This, for chaining.
+     */
+    public SchemaMigrations add(String description, Migration migration) {
+        descriptions.add(description);
+        migrations.add(migration);
+        return this;
+    }
+
+    /**
+     * Bring the database up to date, applying every migration which has not been applied, in order.
+     *
+     * @param connection Write connection, in auto-commit mode.
+     * @param logger     Logger.
+     * @return The version of the schema.
+     * @throws SQLException When a migration fails. That migration and every later one are not applied.
+     */
+    public int migrate(Connection connection, Logger logger) throws SQLException {
+        createTableIfNeeded(connection);
+        int version = getVersion(connection);
+        while (version < migrations.size()) {
+            final int nextVersion = version + 1;
+            connection.setAutoCommit(false);
+            try {
+                migrations.get(version).apply(connection);
+                final PreparedStatement insert = connection.prepareStatement("INSERT OR IGNORE" +
+                        " INTO " + TABLE_SCHEMA_VERSIONS + "(" +
+                        "version" +
+                        ",description" +
+                        ",applied" +
+                        ") VALUES(?,?,?);");
+                insert.setInt(1, nextVersion);
+                insert.setString(2, descriptions.get(version));
+                insert.setLong(3, System.currentTimeMillis());
+                insert.executeUpdate();
+                insert.close();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+            logger.log(Level.INFO, "Migrated database schema to version " + nextVersion + ": " + descriptions.get(version) + ".");
+            version = nextVersion;
+        }
+        return version;
+    }
+
+    /**
+     * @return Whether `table` has a column named `column`.
+     */
+    public static boolean hasColumn(Connection connection, String table, String column) throws SQLException {
+        final Statement pragma = connection.createStatement();
+        final ResultSet result = pragma.executeQuery("PRAGMA table_info(" + table + ");");
+        boolean hasColumn = false;
+        while (result.next()) {
+            if (column.equalsIgnoreCase(result.getString("name"))) {
+                hasColumn = true;
+                break;
+            }
+        }
+        pragma.close();
+        return hasColumn;
+    }
+
+    private static int getVersion(Connection connection) throws SQLException {
+        final Statement select = connection.createStatement();
+        final ResultSet result = select.executeQuery("SELECT MAX(version) FROM " + TABLE_SCHEMA_VERSIONS + ";");
+        final int version = result.next() ? result.getInt(1) : 0;
+        select.close();
+        return version;
+    }
+
+    private static void createTableIfNeeded(Connection connection) throws SQLException {
+        final Statement create = connection.createStatement();
+        create.execute("CREATE TABLE IF NOT EXISTS " + TABLE_SCHEMA_VERSIONS + " (" +
+                "version INTEGER PRIMARY KEY" + // 1
+                ", description TEXT NOT NULL" + // Index ASINs
+                ", applied INTEGER NOT NULL" + // System.currentTimeMillis() -> long
+                ");");
+        create.close();
+    }
+}
@@ -0,0 +1,209 @@
+package com.ericrobertbrewer.bookspider.sites.db;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Counts, latencies and rows of every statement executed through the connections of an {@link AbstractDatabaseHelper},
+ * grouped by statement type (e.g., `INSERT INTO BookCaveBooks`, or the text of a query).
+ * <p>
+ * The latency of a query includes the time spent stepping through its rows, since SQLite does most of its work then.
+ * Time spent waiting for another connection's lock (up to the busy timeout of the {@link DatabaseProfile}) is part of
+ * the latency; statements which gave up waiting are counted as busy.
+ */
+public class StatementMetrics {
+
+    // Upper bounds of the latency buckets, in microseconds. The last bucket is unbounded.
+    private static final long[] BUCKET_BOUNDS_MICROS = {100L, 1000L, 10000L, 100000L, 1000000L};
+
+    // Primary result codes of SQLite, which mean that a lock could not be acquired.
+    private static final int SQLITE_BUSY = 5;
+    private static final int SQLITE_LOCKED = 6;
+
+    private static final int MAX_TYPE_LENGTH = 120;
+
+    public static class Stats {
+
+        private long count = 0L;
+        private long errorCount = 0L;
+        private long busyCount = 0L;
+        private long rows = 0L;
+        private long totalNanos = 0L;
+        private long maxNanos = 0L;
+        private final long[] bucketCounts = new long[BUCKET_BOUNDS_MICROS.length + 1];
+
+        private Stats() {
+        }
+
+        private Stats(Stats other) {
+            count = other.count;
+            errorCount = other.errorCount;
+            busyCount = other.busyCount;
+            rows = other.rows;
+            totalNanos = other.totalNanos;
+            maxNanos = other.maxNanos;
+            System.arraycopy(other.bucketCounts, 0, bucketCounts, 0, bucketCounts.length);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getErrorCount() {
+            return errorCount;
+        }
+
+        /**
+         * @return Number of executions which failed with `SQLITE_BUSY` or `SQLITE_LOCKED`, which are also errors.
+         */
+        public long getBusyCount() {
+            return busyCount;
+        }
+
+        /**
+         * @return Rows read by queries, or changed by updates.
+         */
+        public long getRows() {
+            return rows;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /**
+         * @return Number of executions in each latency bucket, bounded by {@link #getBucketBoundsMicros()}.
+         */
+        public long[] getBucketCounts() {
+            return bucketCounts.clone();
+        }
+
+        /**
+         * @param fraction E.g., `0.99`.
+         * @return Upper bound of the bucket in which the given fraction of executions has completed, in microseconds,
+         * or {@link Long#MAX_VALUE} for the unbounded bucket.
+         */
+        public long getPercentileBoundMicros(double fraction) {
+            final long target = (long) Math.ceil(count * fraction);
+            long seen = 0L;
+            for (int i = 0; i < BUCKET_BOUNDS_MICROS.length; i++) {
+                seen += bucketCounts[i];
+                if (seen >= target) {
+                    return BUCKET_BOUNDS_MICROS[i];
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        private synchronized void record(long nanos, long rows, SQLException error) {
+            count++;
+            if (error != null) {
+                errorCount++;
+                final int code = error.getErrorCode() & 0xff;
+                if (code == SQLITE_BUSY || code == SQLITE_LOCKED) {
+                    busyCount++;
+                }
+            }
+            this.rows += rows;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            final long micros = nanos / 1000L;
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS_MICROS.length && micros >= BUCKET_BOUNDS_MICROS[bucket]) {
+                bucket++;
+            }
+            bucketCounts[bucket]++;
+        }
+
+        private synchronized Stats copy() {
+            return new Stats(this);
+        }
+    }
+
+    public static long[] getBucketBoundsMicros() {
+        return BUCKET_BOUNDS_MICROS.clone();
+    }
+
+    /**
+     * @param sql SQL.
+     * @return A short description of the statement, by which its executions are grouped.
+     * Inserts are described by their table, since their column lists are long; other statements by their text.
+     */
+    static String getStatementType(String sql) {
+        String type = sql.trim().replaceAll("\\s+", " ");
+        if (type.endsWith(";")) {
+            type = type.substring(0, type.length() - 1);
+        }
+        if (type.regionMatches(true, 0, "INSERT", 0, 6)) {
+            final int paren = type.indexOf('(');
+            final String head = paren != -1 ? type.substring(0, paren).trim() : type;
+            return type.toUpperCase(Locale.US).contains(" ON CONFLICT") ? head + " ON CONFLICT" : head;
+        }
+        if (type.length() > MAX_TYPE_LENGTH) {
+            return type.substring(0, MAX_TYPE_LENGTH - 3) + "...";
+        }
+        return type;
+    }
+
+    private final Map<String, Stats> statsByType = new ConcurrentHashMap<>();
+
+    void record(String type, long nanos, long rows, SQLException error) {
+        statsByType.computeIfAbsent(type, t -> new Stats()).record(nanos, rows, error);
+    }
+
+    /**
+     * @return A copy of the stats of each statement type.
+     */
+    public Map<String, Stats> getStats() {
+        final Map<String, Stats> copies = new TreeMap<>();
+        for (Map.Entry<String, Stats> entry : statsByType.entrySet()) {
+            copies.put(entry.getKey(), entry.getValue().copy());
+        }
+        return copies;
+    }
+
+    public boolean isEmpty() {
+        return statsByType.isEmpty();
+    }
+
+    /**
+     * @return One line for each statement type, in descending order of total time.
+     */
+    public String summarize() {
+        final List<Map.Entry<String, Stats>> entries = new ArrayList<>(getStats().entrySet());
+        entries.sort(Collections.reverseOrder(Map.Entry.comparingByValue((a, b) -> Long.compare(a.totalNanos, b.totalNanos))));
+        final StringBuilder summary = new StringBuilder();
+        for (Map.Entry<String, Stats> entry : entries) {
+            final Stats stats = entry.getValue();
+            summary.append(String.format(Locale.US, "%n  count=%d rows=%d total=%.1fms mean=%.3fms p50<=%s p99<=%s max=%.1fms errors=%d busy=%d : %s",
+                    stats.count,
+                    stats.rows,
+                    stats.totalNanos / 1e6,
+                    stats.count > 0L ? stats.totalNanos / 1e6 / stats.count : 0.0,
+                    formatBoundMicros(stats.getPercentileBoundMicros(0.5)),
+                    formatBoundMicros(stats.getPercentileBoundMicros(0.99)),
+                    stats.maxNanos / 1e6,
+                    stats.errorCount,
+                    stats.busyCount,
+                    entry.getKey()));
+        }
+        return summary.toString();
+    }
+
+    private static String formatBoundMicros(long micros) {
+        if (micros == Long.MAX_VALUE) {
+            return "inf";
+        }
+        return micros < 1000L ? (micros / 1000.0) + "ms" : (micros / 1000L) + "ms";
+    }
+}
@@ -0,0 +1,112 @@
+package com.ericrobertbrewer.bookspider.sites.db;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stores each distinct string of a small vocabulary (e.g., the rating `Moderate`, or the rating level `Mild Language`)
+ * once in a dictionary table, so that other tables may refer to it by an integer ID.
+ * <p>
+ * IDs are cached as they are looked up, and every value which is decoded or {@link #intern(String) interned} is the same
+ * instance as every equal value, so reading many rows allocates one string per distinct value rather than one per row.
+ * It is thread-safe.
+ */
+class StringDictionary {
+
+    private final String table;
+    private final Map<String, Long> idsByValue = new ConcurrentHashMap<>();
+    private final Map<Long, String> valuesById = new ConcurrentHashMap<>();
+    private final Map<String, String> internedValues = new ConcurrentHashMap<>();
+
+    /**
+     * @param table Table with the columns `id INTEGER PRIMARY KEY` and `value TEXT NOT NULL UNIQUE`.
+     */
+    StringDictionary(String table) {
+        this.table = table;
+    }
+
+    /**
+     * Written through the write connection of `databaseHelper`.
+     * If that connection is in a transaction which is rolled back, {@link #forgetIds()} must be called.
+     *
+     * @return The ID of `value`, which is added to the dictionary if needed.
+     */
+    long getId(AbstractDatabaseHelper databaseHelper, String value) throws SQLException {
+        final Long cachedId = idsByValue.get(value);
+        if (cachedId != null) {
+            return cachedId;
+        }
+        final PreparedStatement insert = databaseHelper.prepareCached(databaseHelper.getWriteConnection(), "INSERT OR IGNORE" +
+                " INTO " + table + "(" +
+                "value" +
+                ") VALUES(?);");
+        insert.setString(1, value);
+        insert.executeUpdate();
+        // Read the ID back, since the value may have been added before, e.g., by another process.
+        final PreparedStatement select = databaseHelper.prepareCached(databaseHelper.getWriteConnection(), "SELECT id" +
+                " FROM " + table +
+                " WHERE value=?;");
+        select.setString(1, value);
+        final ResultSet result = select.executeQuery();
+        if (!result.next()) {
+            result.close();
+            throw new SQLException("Unable to find the ID of `" + value + "` in " + table + ".");
+        }
+        final long id = result.getLong(1);
+        result.close();
+        cache(id, value);
+        return id;
+    }
+
+    /**
+     * @return The value of `id`, or `null` if it is not in the dictionary.
+     */
+    String getValue(AbstractDatabaseHelper databaseHelper, long id) throws SQLException {
+        final String cachedValue = valuesById.get(id);
+        if (cachedValue != null) {
+            return cachedValue;
+        }
+        final PreparedStatement select = databaseHelper.prepareCached(databaseHelper.getReadConnection(), "SELECT value" +
+                " FROM " + table +
+                " WHERE id=?;");
+        select.setLong(1, id);
+        final ResultSet result = select.executeQuery();
+        final String value = result.next() ? result.getString(1) : null;
+        result.close();
+        if (value == null) {
+            return null;
+        }
+        return cache(id, value);
+    }
+
+    /**
+     * For repeated strings which are not stored in the dictionary.
+     *
+     * @return The one instance which is equal to `value`, or `null`.
+     */
+    String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        final String internedValue = internedValues.putIfAbsent(value, value);
+        return internedValue != null ? internedValue : value;
+    }
+
+    /**
+     * Forget every cached ID, e.g., after a transaction which may have added some to the dictionary has rolled back.
+     */
+    void forgetIds() {
+        idsByValue.clear();
+        valuesById.clear();
+    }
+
+    private String cache(long id, String value) {
+        final String internedValue = intern(value);
+        idsByValue.put(internedValue, id);
+        valuesById.put(id, internedValue);
+        return internedValue;
+    }
+}
@@ -0,0 +1,24 @@
+package com.ericrobertbrewer.bookspider.sites.db;
+
+/**
+ * How often a term occurs in a full-text index of {@link DatabaseHelper}.
+ */
+public class TermFrequency {
+
+    public final String term;
+    // Number of documents (e.g., books) which contain the term at least once.
+    public final long documentCount;
+    // Number of times that the term occurs, across all documents.
+    public final long occurrenceCount;
+
+    TermFrequency(String term, long documentCount, long occurrenceCount) {
+        this.term = term;
+        this.documentCount = documentCount;
+        this.occurrenceCount = occurrenceCount;
+    }
+
+    @Override
+    public String toString() {
+        return term + " (documents=" + documentCount + ", occurrences=" + occurrenceCount + ")";
+    }
+}
@@ -0,0 +1,186 @@
+package com.ericrobertbrewer.bookspider.sites.db;
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Takes database writes off of scrape threads.
+ * Scrape threads {@link #submit(Object)} whole records (e.g., a book with all of its ratings), which a single writer
+ * thread groups into batches and commits in one transaction, instead of syncing every row on its own.
+ * <p>
+ * A batch is written once it reaches {@link #setMaxBatchSize(int)} records, or once its oldest record has waited
+ * {@link #setMaxDelayMillis(long)}, whichever comes first.
+ *
+ * @param <T> The type of record.
+ */
+public class WriteBehindQueue<T> {
+
+    /**
+     * Writes a batch of records, typically with the batch insert methods of {@link DatabaseHelper}.
+     * Always called on the writer thread, from within a transaction.
+     */
+    public interface Writer<T> {
+        void write(DatabaseHelper databaseHelper, List<T> records) throws SQLException;
+    }
+
+    private static class Pending<T> {
+        final T record;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        final long submitted = System.currentTimeMillis();
+
+        Pending(T record) {
+            this.record = record;
+        }
+    }
+
+    private final DatabaseHelper databaseHelper;
+    private final Writer<T> writer;
+    private final Logger logger;
+    private final Deque<Pending<T>> pending = new ArrayDeque<>();
+    private final Thread thread;
+    private int maxBatchSize = 64;
+    private long maxDelayMillis = 1000L;
+    private boolean isClosed = false;
+
+    /**
+     * @param name           Name of the writer thread.
+     * @param databaseHelper Should have already been connected. Not closed by this queue.
+     * @param writer         Writes each batch.
+     * @param logger         Logger.
+     */
+    public WriteBehindQueue(String name, DatabaseHelper databaseHelper, Writer<T> writer, Logger logger) {
+        this.databaseHelper = databaseHelper;
+        this.writer = writer;
+        this.logger = logger;
+        thread = new Thread(this::run, name);
+        thread.start();
+    }
+
+    public synchronized void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public synchronized void setMaxDelayMillis(long maxDelayMillis) {
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * Queue a record to be written.
+     *
+     * @param record Record.
+     * @return A future which completes once the record has been committed,
+     * or completes exceptionally with the {@link SQLException} which prevented it from being written.
+     */
+    public synchronized CompletableFuture<Void> submit(T record) {
+        if (isClosed) {
+            throw new IllegalStateException("Unable to submit record to closed write-behind queue.");
+        }
+        final Pending<T> item = new Pending<>(record);
+        pending.offer(item);
+        // Wake the writer when its batch is full, or to start timing the first record it would otherwise wait for indefinitely.
+        if (pending.size() == 1 || pending.size() >= maxBatchSize) {
+            notifyAll();
+        }
+        return item.future;
+    }
+
+    /**
+     * Write every record which has been submitted, then stop the writer thread.
+     * Futures of every submitted record have completed when this method returns.
+     *
+     * @throws InterruptedException When interrupted while waiting for the writer thread to finish.
+     */
+    public void close() throws InterruptedException {
+        synchronized (this) {
+            isClosed = true;
+            notifyAll();
+        }
+        thread.join();
+    }
+
+    private void run() {
+        List<Pending<T>> batch;
+        try {
+            while (!(batch = takeBatch()).isEmpty()) {
+                writeBatch(batch);
+            }
+        } catch (InterruptedException e) {
+            logger.log(Level.WARNING, "Write-behind thread `" + thread.getName() + "` was interrupted.", e);
+            failRemaining(e);
+        }
+    }
+
+    /**
+     * Wait until a batch is full, its oldest record is due, or the queue has been closed.
+     *
+     * @return Up to {@link #maxBatchSize} records, or an empty list once the queue has been closed and drained.
+     */
+    private synchronized List<Pending<T>> takeBatch() throws InterruptedException {
+        while (!isClosed) {
+            if (pending.size() >= maxBatchSize) {
+                break;
+            }
+            if (pending.isEmpty()) {
+                wait();
+                continue;
+            }
+            final long waitMillis = pending.peek().submitted + maxDelayMillis - System.currentTimeMillis();
+            if (waitMillis <= 0L) {
+                break;
+            }
+            wait(waitMillis);
+        }
+        if (pending.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final List<Pending<T>> batch = new ArrayList<>();
+        while (!pending.isEmpty() && batch.size() < maxBatchSize) {
+            batch.add(pending.poll());
+        }
+        return batch;
+    }
+
+    private void writeBatch(List<Pending<T>> batch) {
+        final List<T> records = new ArrayList<>();
+        for (Pending<T> item : batch) {
+            records.add(item.record);
+        }
+        try {
+            databaseHelper.runInTransaction(() -> writer.write(databaseHelper, records));
+        } catch (SQLException e) {
+            if (batch.size() == 1) {
+                batch.get(0).future.completeExceptionally(e);
+                return;
+            }
+            // Find the offending record(s), so that the rest of the batch is still written.
+            logger.log(Level.WARNING, "Unable to write batch of " + batch.size() + " records; writing each record on its own.", e);
+            for (Pending<T> item : batch) {
+                writeBatch(Collections.singletonList(item));
+            }
+            return;
+        } catch (Throwable t) {
+            for (Pending<T> item : batch) {
+                item.future.completeExceptionally(t);
+            }
+            return;
+        }
+        for (Pending<T> item : batch) {
+            item.future.complete(null);
+        }
+    }
+
+    private synchronized void failRemaining(Throwable t) {
+        isClosed = true;
+        Pending<T> item;
+        while ((item = pending.poll()) != null) {
+            item.future.completeExceptionally(t);
+        }
+    }
+}
@@ -3,24 +3,43 @@ package com.ericrobertbrewer.bookspider.sites.meta;
 import com.ericrobertbrewer.bookspider.Folders;
 import com.ericrobertbrewer.bookspider.Launcher;
 import com.ericrobertbrewer.bookspider.sites.BookScrapeInfo;
+import com.ericrobertbrewer.bookspider.sites.PageEngine;
+import com.ericrobertbrewer.bookspider.sites.ScrapeScheduler;
 import com.ericrobertbrewer.bookspider.sites.SiteScraper;
+import com.ericrobertbrewer.bookspider.sites.WorkQueue;
 import com.ericrobertbrewer.bookspider.sites.db.DatabaseHelper;
+import com.ericrobertbrewer.bookspider.sites.db.ExistenceIndex;
+import com.ericrobertbrewer.bookspider.sites.db.FrontierStore;
+import com.ericrobertbrewer.bookspider.sites.db.RefreshPlan;
+import com.ericrobertbrewer.bookspider.sites.db.WriteBehindQueue;
 import com.ericrobertbrewer.bookspider.sites.text.AmazonKindle;
 import com.ericrobertbrewer.web.WebUtils;
+import com.ericrobertbrewer.web.driver.DriverProfile;
 import com.ericrobertbrewer.web.driver.DriverUtils;
 import com.ericrobertbrewer.web.driver.WebDriverFactory;
+import com.ericrobertbrewer.web.driver.WebDriverPool;
+import com.ericrobertbrewer.web.fetch.DocumentUtils;
+import com.ericrobertbrewer.web.fetch.ElementNotFoundException;
+import com.ericrobertbrewer.web.fetch.PageFetcher;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import org.jsoup.select.Selector;
 import org.openqa.selenium.*;
 import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.support.ui.ExpectedConditions;
 
 import java.io.*;
-import java.nio.file.Files;
 import java.sql.SQLException;
 import java.util.*;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class BookCave extends SiteScraper {
 
@@ -79,18 +98,35 @@ public class BookCave extends SiteScraper {
         public int count;
     }
 
-    private final AtomicBoolean isExploringFrontier = new AtomicBoolean(false);
-    private final AtomicInteger scrapeThreadsRunning = new AtomicInteger(0);
+    // Maximum times to wait for elements to appear.
+    private static final long PAGE_TIMEOUT_MILLIS = 10000L;
+    private static final long TOOLTIP_TIMEOUT_MILLIS = 2000L;
+
+    // Books which fail to be scraped are not retried until a later run, after this delay.
+    private static final long FAILED_BOOK_RETRY_DELAY_MILLIS = 60L * 60L * 1000L;
+
+    // Books are scraped again by runs with a refresh budget once they are this old, by default.
+    private static final long DEFAULT_REFRESH_MAX_AGE_DAYS = 30L;
+    private static final long DAY_MILLIS = 24L * 60L * 60L * 1000L;
+
+    // Drivers kept for books whose rating levels are missing from the page source, when fetching over HTTP.
+    private static final int HTTP_FALLBACK_DRIVERS = 1;
 
     private BookCave(Logger logger) {
         super(logger);
     }
 
+    @Override
+    public DriverProfile getDriverProfile() {
+        // Only text is read from each page.
+        return DriverProfile.metadata();
+    }
+
     @Override
     public void scrape(WebDriverFactory factory, File contentFolder, String[] args, final Launcher.Callback callback) {
         // Collect arguments.
-        if (args.length > 2) {
-            throw new IllegalArgumentException("Usage: [threads=1] [max-retries=1]");
+        if (args.length > 6) {
+            throw new IllegalArgumentException("Usage: [threads=1] [max-retries=1] [engine=driver|snapshot|http] [frontier-threads=1] [refresh-budget=0] [refresh-max-age-days=" + DEFAULT_REFRESH_MAX_AGE_DAYS + "]");
         }
         final int threads;
         if (args.length > 0) {
@@ -104,209 +140,473 @@ public class BookCave extends SiteScraper {
         } else {
             maxRetries = 1;
         }
-
-        // Create frontier.
-        final Queue<String> frontier = new ConcurrentLinkedQueue<>();
-        final File frontierFile = new File(contentFolder, "frontier.txt");
-        final boolean exists = frontierFile.exists();
-        if (exists) {
-            try {
-                final List<String> bookIds = Files.readAllLines(frontierFile.toPath());
-                for (String bookId : bookIds) {
-                    frontier.offer(bookId.trim());
-                }
-            } catch (IOException e) {
-                getLogger().log(Level.WARNING, "Unable to read existing frontier file.", e);
-            }
+        final PageEngine engine;
+        if (args.length > 2) {
+            engine = PageEngine.fromArg(args[2]);
+        } else {
+            engine = PageEngine.DRIVER;
+        }
+        final int frontierThreads;
+        if (args.length > 3) {
+            frontierThreads = Integer.parseInt(args[3]);
+        } else {
+            frontierThreads = 1;
+        }
+        final int refreshBudget;
+        if (args.length > 4) {
+            refreshBudget = Integer.parseInt(args[4]);
+        } else {
+            refreshBudget = 0;
+        }
+        final long refreshMaxAgeDays;
+        if (args.length > 5) {
+            refreshMaxAgeDays = Long.parseLong(args[5]);
+        } else {
+            refreshMaxAgeDays = DEFAULT_REFRESH_MAX_AGE_DAYS;
         }
 
-        // Create PrintWriter.
-        final PrintStream frontierOut;
+        // Resume the frontier from where the last run left off.
+        final FrontierStore frontierStore = new FrontierStore(getLogger());
+        frontierStore.connectToFrontier(contentFolder);
+        final WorkQueue<String> frontier;
         try {
-            frontierOut = new PrintStream(new FileOutputStream(frontierFile, exists));
-        } catch (FileNotFoundException e) {
-            getLogger().log(Level.SEVERE, "Unable to write to frontier file.", e);
+            frontier = new WorkQueue<>(frontierStore.getClaimable(System.currentTimeMillis()));
+        } catch (SQLException e) {
+            getLogger().log(Level.SEVERE, "Unable to read frontier store.", e);
+            frontierStore.close();
             return;
         }
 
         // Create DatabaseHelper.
         final DatabaseHelper databaseHelper = new DatabaseHelper(getLogger());
         databaseHelper.connectToContentsDatabase();
+        // Find which books have already been saved with one query, rather than one query per book.
+        final ExistenceIndex savedBooks;
+        // Community ratings change over time, so scrape the stalest books again, up to the budget of this run.
+        final RefreshPlan refreshPlan;
+        try {
+            savedBooks = ExistenceIndex.load(databaseHelper, DatabaseHelper.TABLE_BOOKCAVE_BOOKS, "id");
+            refreshPlan = RefreshPlan.select(databaseHelper, DatabaseHelper.TABLE_BOOKCAVE_BOOKS, "id", refreshMaxAgeDays * DAY_MILLIS, refreshBudget, System.currentTimeMillis());
+            frontierStore.requeue(refreshPlan.getIds());
+        } catch (SQLException e) {
+            getLogger().log(Level.SEVERE, "Unable to read saved books.", e);
+            databaseHelper.close();
+            frontierStore.close();
+            return;
+        }
+        if (!refreshPlan.isEmpty()) {
+            getLogger().log(Level.INFO, "Refreshing " + refreshPlan.size() + " book(s) last scraped over " + refreshMaxAgeDays + " day(s) ago.");
+        }
+        for (String bookId : refreshPlan.getIds()) {
+            frontier.offer(bookId);
+        }
+        // Save scraped books in batches on their own thread.
+        final WriteBehindQueue<BookRecords> writeQueue = new WriteBehindQueue<>("write", databaseHelper, (db, recordsList) -> saveBooks(db, recordsList, refreshPlan), getLogger());
+
+        // Launch one driver for each frontier thread and one for each scrape thread.
+        // When pages are fetched over HTTP, scrape threads only need a driver for pages which depend on JavaScript.
+        final int drivers = frontierThreads + (engine != PageEngine.HTTP ? threads : HTTP_FALLBACK_DRIVERS);
+        final WebDriverPool driverPool = new WebDriverPool(factory, drivers, getLogger());
+        driverPool.warmUp();
 
-        // Populate the frontier.
-        final Thread frontierThread = new Thread(() -> {
-            isExploringFrontier.set(true);
-            final WebDriver frontierDriver = factory.newInstance();
+        final ScrapeScheduler scheduler = getScheduler();
+        // Populate the frontier, spreading the pages of rated books across the frontier threads.
+        final FrontierPages frontierPages = new FrontierPages();
+        scheduler.submit("frontier", frontierThreads, () -> {
+            final WebDriver frontierDriver = driverPool.lease();
             try {
-                exploreFrontier(frontierDriver, frontier, frontierOut);
-            } catch (Throwable t) {
-                getLogger().log(Level.SEVERE, "Exiting `exploreFrontier` with cause:", t);
+                exploreFrontier(frontierDriver, frontierPages, frontier, frontierStore);
+            } finally {
+                driverPool.release(frontierDriver);
+            }
+        }).whenComplete((result, t) -> {
+            getLogger().log(Level.INFO, "Collected " + frontierPages.getAddedCount() + " new book IDs, ending on page " + frontierPages.getLastPage() + ".");
+            frontier.close();
+        });
+
+        // Scrape books on separate threads.
+        final PageFetcher fetcher = new PageFetcher();
+        scheduler.submit("scrape", threads, () -> scrapeBooks(engine, fetcher, driverPool, frontier, frontierStore, savedBooks, refreshPlan, writeQueue, maxRetries));
+
+        // Release resources once the frontier has been explored and every book has been scraped.
+        scheduler.whenComplete(() -> {
+            driverPool.close();
+            try {
+                // Wait for the last books to be saved before their frontier states are.
+                writeQueue.close();
+            } catch (InterruptedException e) {
+                getLogger().log(Level.WARNING, "Interrupted while saving the last books.", e);
+            }
+            frontierStore.close();
+            databaseHelper.close();
+            callback.onComplete();
+        });
+    }
+
+    /**
+     * Hands out the pages of rated books to the frontier threads.
+     * The first page is explored alone, since the number of pages is read from its pagination block.
+     */
+    private static class FrontierPages {
+
+        // Stop handing out pages after this many in a row are empty or fail, while the last page is still unknown.
+        private static final int MAX_CONSECUTIVE_MISSES = 5;
+
+        private final AtomicBoolean isFirstPageClaimed = new AtomicBoolean(false);
+        private final CountDownLatch firstPageLatch = new CountDownLatch(1);
+        private final AtomicInteger nextPage = new AtomicInteger(2);
+        // Unknown (`-1`) until a page has been explored.
+        private final AtomicInteger lastPage = new AtomicInteger(-1);
+        private final AtomicInteger addedCount = new AtomicInteger(0);
+        private final AtomicInteger consecutiveMisses = new AtomicInteger(0);
+
+        /**
+         * @return `true` only for the first caller, which must then explore page 1 and call {@link #onFirstPageExplored()}.
+         */
+        boolean claimFirstPage() {
+            return isFirstPageClaimed.compareAndSet(false, true);
+        }
+
+        void onFirstPageExplored() {
+            firstPageLatch.countDown();
+        }
+
+        /**
+         * @return The next page to explore after page 1, or `-1` when every page has been handed out.
+         * While the last page is unknown, pages are handed out until one of them turns out to be the last,
+         * or until several in a row have been empty or failed.
+         * @throws InterruptedException When interrupted while waiting for page 1 to be explored.
+         */
+        int next() throws InterruptedException {
+            firstPageLatch.await();
+            while (true) {
+                final int page = nextPage.get();
+                final int last = lastPage.get();
+                if (last == -1 ? consecutiveMisses.get() >= MAX_CONSECUTIVE_MISSES : page > last) {
+                    return -1;
+                }
+                // Only use up the page number once it has been handed out.
+                if (nextPage.compareAndSet(page, page + 1)) {
+                    return page;
+                }
             }
-            frontierDriver.quit();
-            isExploringFrontier.set(false);
-            if (scrapeThreadsRunning.get() == 0) {
-                databaseHelper.close();
-                callback.onComplete();
+        }
+
+        /**
+         * @param isEmpty Whether no books were listed on the page.
+         */
+        void onPageExplored(boolean isEmpty) {
+            if (isEmpty) {
+                consecutiveMisses.incrementAndGet();
+            } else {
+                consecutiveMisses.set(0);
+            }
+        }
+
+        void onPageFailed() {
+            consecutiveMisses.incrementAndGet();
+        }
+
+        /**
+         * @param page The last page as listed on any explored page, or `-1` if it could not be read.
+         */
+        void setLastPage(int page) {
+            if (page != -1) {
+                // Pages only link to pages which exist, so the greatest number seen is the most accurate.
+                lastPage.accumulateAndGet(page, Math::max);
             }
-        }, "frontier");
-        frontierThread.start();
+        }
+
+        int getLastPage() {
+            return lastPage.get();
+        }
 
-        // Create separate threads to scrape books.
-        scrapeBooksThreaded(threads, factory, frontier, databaseHelper, maxRetries, callback);
+        void onAdded(int count) {
+            addedCount.addAndGet(count);
+        }
+
+        int getAddedCount() {
+            return addedCount.get();
+        }
     }
 
     /**
-     * Performed by the frontier thread.
+     * Performed by each frontier thread.
      *
-     * @param driver      Driver.
-     * @param frontier    Queue of book IDs to scrape.
-     * @param frontierOut Writer to file which contains unique book IDs.
+     * @param driver        Driver.
+     * @param frontierPages Pages which have yet to be explored.
+     * @param frontier      Queue of book IDs to scrape.
+     * @param frontierStore Store of every book ID which has been added to the frontier.
+     * @throws InterruptedException When interrupted while waiting for the first page to be explored.
      */
-    private void exploreFrontier(WebDriver driver, Queue<String> frontier, PrintStream frontierOut) {
-        // Keep a running set of book IDs to avoid writing duplicates.
-        final Set<String> frontierSet = new HashSet<>(frontier);
-        // Simply scrape each page.
-        int page = 1;
-        boolean hasReachedEnd = false;
-        while (!hasReachedEnd) {
-            int retries = 3;
-            while (retries > 0) {
-                try {
-                    hasReachedEnd = exploreFrontierPage(driver, frontier, frontierSet, frontierOut, page);
-                    break;
-                } catch (NoSuchElementException e) {
-                    getLogger().log(Level.WARNING, "Unable to find web element while exploring frontier at page " + page + ".", e);
-                } catch (TimeoutException e) {
-                    getLogger().log(Level.WARNING, "Received timeout while exploring frontier at page " + page + ".", e);
-                    // Give the site 10 seconds to recover.
-                    DriverUtils.sleep(10000L);
-                }
-                retries--;
+    private void exploreFrontier(WebDriver driver, FrontierPages frontierPages, WorkQueue<String> frontier, FrontierStore frontierStore) throws InterruptedException {
+        if (frontierPages.claimFirstPage()) {
+            try {
+                exploreFrontierPageWithRetries(driver, frontierPages, frontier, frontierStore, 1);
+            } finally {
+                frontierPages.onFirstPageExplored();
+            }
+        }
+        int page;
+        while ((page = frontierPages.next()) != -1) {
+            exploreFrontierPageWithRetries(driver, frontierPages, frontier, frontierStore, page);
+        }
+    }
+
+    private void exploreFrontierPageWithRetries(WebDriver driver, FrontierPages frontierPages, WorkQueue<String> frontier, FrontierStore frontierStore, int page) {
+        int retries = 3;
+        while (retries > 0) {
+            try {
+                frontierPages.setLastPage(exploreFrontierPage(driver, frontierPages, frontier, frontierStore, page));
+                break;
+            } catch (SQLException e) {
+                getLogger().log(Level.SEVERE, "Unable to add book IDs to frontier store from page " + page + ".", e);
+            } catch (NoSuchElementException e) {
+                getLogger().log(Level.WARNING, "Unable to find web element while exploring frontier at page " + page + ".", e);
+            } catch (TimeoutException e) {
+                getLogger().log(Level.WARNING, "Received timeout while exploring frontier at page " + page + ".", e);
+                // Give the site 10 seconds to recover.
+                DriverUtils.sleep(10000L);
             }
-            page++;
+            retries--;
+        }
+        if (retries == 0) {
+            frontierPages.onPageFailed();
         }
-        getLogger().log(Level.INFO, "Collected " + frontierSet.size() + " unique book IDs, ending on page " + page + ".");
     }
 
-    private boolean exploreFrontierPage(WebDriver driver, Queue<String> frontier, Set<String> frontierSet, PrintStream frontierOut, int page) {
+    // Matches the page number in the URL of a page of rated books.
+    private static final Pattern PAGE_URL_PATTERN = Pattern.compile("/page/(\\d+)/?$");
+
+    /**
+     * @return The number of the last page of rated books, as listed in the pagination block of this page.
+     * This is `page` itself when the "next page" link is missing, or `-1` when it can't be read.
+     */
+    private int exploreFrontierPage(WebDriver driver, FrontierPages frontierPages, WorkQueue<String> frontier, FrontierStore frontierStore, int page) throws SQLException {
         driver.navigate().to("https://mybookcave.com/mybookratings/rated-books/page/" + page + "/");
         // Allow page elements to load.
-        DriverUtils.sleep(1000L);
+        DriverUtils.waitForElement(driver, By.className("book-grid"), PAGE_TIMEOUT_MILLIS);
         DriverUtils.scrollDown(driver, 10, 50L);
         // Scrape each item's book ID.
         final WebElement contentMain = driver.findElement(By.id("content"));
         final WebElement bookGridDiv = contentMain.findElement(By.className("book-grid"));
         final List<WebElement> ratedBookDivs = bookGridDiv.findElements(By.className("rated-book"));
+        final List<String> bookIds = new ArrayList<>();
         for (WebElement ratedBookDiv : ratedBookDivs) {
             try {
                 final WebElement bookDetailsA = ratedBookDiv.findElement(By.className("book-details"));
                 final String url = bookDetailsA.getAttribute("href");
-                final String bookId = WebUtils.getLastUrlComponent(url);
-                if (!frontierSet.contains(bookId)) {
-                    frontier.add(bookId);
-                    frontierOut.println(bookId);
-                    frontierSet.add(bookId);
-                }
+                bookIds.add(WebUtils.getLastUrlComponent(url));
             } catch (NoSuchElementException e) {
                 getLogger().log(Level.WARNING, "Could not find book details link on page " + page + ".", e);
             }
         }
-        // Quit when the "next page" link disappears.
+        // Only queue books which have never been seen before.
+        final List<String> addedBookIds = frontierStore.addAll(bookIds);
+        for (String bookId : addedBookIds) {
+            frontier.offer(bookId);
+        }
+        frontierPages.onAdded(addedBookIds.size());
+        frontierPages.onPageExplored(bookIds.isEmpty());
+        // This is the last page when the "next page" link disappears.
         final WebElement paginationBlockDiv = contentMain.findElement(By.className("pagination-block"));
-        try {
-            paginationBlockDiv.findElement(By.className("fa-angle-right"));
-        } catch (NoSuchElementException e) {
-            return true;
+        if (paginationBlockDiv.findElements(By.className("fa-angle-right")).isEmpty()) {
+            return page;
         }
-        return false;
-    }
-
-    private void scrapeBooksThreaded(int threads, WebDriverFactory factory, Queue<String> frontier, DatabaseHelper databaseHelper, int maxRetries, Launcher.Callback callback) {
-        for (int i = 0; i < threads; i++) {
-            final Thread scrapeThread = new Thread(() -> {
-                scrapeThreadsRunning.incrementAndGet();
-                final WebDriver driver = factory.newInstance();
-                try {
-                    scrapeBooks(driver, frontier, databaseHelper, maxRetries);
-                } catch (Throwable t) {
-                    getLogger().log(Level.SEVERE, "Exiting `scrapeBooks` with cause:", t);
-                }
-                driver.quit();
-                scrapeThreadsRunning.decrementAndGet();
-                if (!isExploringFrontier.get() && scrapeThreadsRunning.get() == 0) {
-                    databaseHelper.close();
-                    callback.onComplete();
-                }
-            }, "scrape-" + i);
-            scrapeThread.start();
+        // Otherwise, find the greatest page number linked from this page.
+        int lastPage = -1;
+        for (WebElement pageA : paginationBlockDiv.findElements(By.tagName("a"))) {
+            final String href = pageA.getAttribute("href");
+            if (href == null) {
+                continue;
+            }
+            final Matcher matcher = PAGE_URL_PATTERN.matcher(href);
+            if (matcher.find()) {
+                lastPage = Math.max(lastPage, Integer.parseInt(matcher.group(1)));
+            }
+        }
+        if (lastPage <= page) {
+            getLogger().log(Level.WARNING, "Unable to find the last page number on page " + page + ".");
+            return -1;
         }
+        return lastPage;
     }
 
     /**
      * Performed by the scrape thread.
      *
-     * @param driver         Driver.
+     * @param engine         How each book's page is read.
+     * @param fetcher        Used to fetch pages when `engine` is {@link PageEngine#HTTP}.
+     * @param driverPool     From which a driver is leased to scrape each book, or each book which needs JavaScript.
      * @param frontier       Queue of book IDs to scrape.
-     * @param databaseHelper To contents database. Should have already been connected.
-     *                       This method does not close the connection to the database.
+     * @param frontierStore  In which each book is claimed before it is scraped, then marked as done or failed.
+     * @param savedBooks     IDs of books in the contents database. Each book is added once it has been saved.
+     * @param refreshPlan    Saved books which are stale enough to be scraped again.
+     * @param writeQueue     To which each scraped book is handed to be saved. A book is only marked as done once it has been saved.
+     * @throws InterruptedException When interrupted while waiting for the frontier to populate or for a driver.
      */
-    private void scrapeBooks(WebDriver driver, Queue<String> frontier, DatabaseHelper databaseHelper, int maxRetries) {
+    private void scrapeBooks(PageEngine engine, PageFetcher fetcher, WebDriverPool driverPool, WorkQueue<String> frontier, FrontierStore frontierStore, ExistenceIndex savedBooks, RefreshPlan refreshPlan, WriteBehindQueue<BookRecords> writeQueue, int maxRetries) throws InterruptedException {
         // Start scraping.
         getLogger().log(Level.INFO, "Scraping details...");
-        while (isExploringFrontier.get() || !frontier.isEmpty()) {
-            // Wait for frontier to populate before polling.
-            if (frontier.isEmpty()) {
-                DriverUtils.sleep(5000L);
-                continue;
-            }
-            final String bookId = frontier.poll();
-            // Ignore books which are fresh enough.
+        String bookId;
+        // Wait for the frontier to populate, until it has been completely explored and drained.
+        while ((bookId = frontier.take()) != null) {
             try {
-                if (!shouldUpdateBook(databaseHelper, bookId)) {
+                if (!frontierStore.claim(bookId)) {
+                    continue;
+                }
+                // Skip books which have already been saved, unless they are due to be refreshed.
+                if (!shouldUpdateBook(savedBooks, refreshPlan, bookId)) {
+                    frontierStore.markDone(bookId);
                     continue;
                 }
             } catch (SQLException e) {
-                getLogger().log(Level.SEVERE, "Unable to find book `" + bookId + "` during `shouldUpdateBook()`.", e);
+                getLogger().log(Level.SEVERE, "Unable to claim book `" + bookId + "`.", e);
                 // It's safer to skip this book than to scrape its metadata.
                 continue;
             }
-            // Try scraping the metadata of the book with a fixed number of retries.
+            final BookRecords records;
+            if (engine == PageEngine.HTTP) {
+                records = fetchBookWithRetries(fetcher, driverPool, bookId, maxRetries);
+            } else {
+                records = scrapeBookWithRetries(engine, driverPool, bookId, maxRetries);
+            }
+            if (records == null) {
+                onBookFinished(frontierStore, bookId, false);
+                continue;
+            }
+            final String savedBookId = bookId;
+            writeQueue.submit(records).whenComplete((result, t) -> {
+                if (t == null) {
+                    savedBooks.add(savedBookId);
+                } else {
+                    getLogger().log(Level.SEVERE, "Unable to save book `" + savedBookId + "`.", t);
+                }
+                onBookFinished(frontierStore, savedBookId, t == null);
+            });
+        }
+        getLogger().log(Level.INFO, "Done scraping details.");
+    }
+
+    private void onBookFinished(FrontierStore frontierStore, String bookId, boolean isSaved) {
+        try {
+            if (isSaved) {
+                frontierStore.markDone(bookId);
+            } else {
+                frontierStore.markFailed(bookId, System.currentTimeMillis() + FAILED_BOOK_RETRY_DELAY_MILLIS);
+            }
+        } catch (SQLException e) {
+            getLogger().log(Level.SEVERE, "Unable to update state of book `" + bookId + "` in frontier store.", e);
+        }
+    }
+
+    /**
+     * @param engine Either {@link PageEngine#DRIVER} or {@link PageEngine#SNAPSHOT}.
+     * @return The records of the book, or `null` if it could not be scraped.
+     */
+    private BookRecords scrapeBookWithRetries(PageEngine engine, WebDriverPool driverPool, String bookId, int maxRetries) throws InterruptedException {
+        // Try scraping the metadata of the book with a fixed number of retries.
+        WebDriver driver = driverPool.lease();
+        try {
             int retries = maxRetries;
             while (retries > 0) {
                 try {
-                    scrapeBook(driver, bookId, databaseHelper);
-                    break;
-                } catch (SQLException e) {
-                    getLogger().log(Level.SEVERE, "SQLException thrown while scraping book `" + bookId + "`.", e);
+                    if (engine == PageEngine.SNAPSHOT) {
+                        return snapshotBook(driver, bookId);
+                    }
+                    return scrapeBook(driver, bookId);
                 } catch (NoSuchElementException e) {
                     getLogger().log(Level.WARNING, "Unable to find web element for book `" + bookId + "`.", e);
+                } catch (ElementNotFoundException e) {
+                    getLogger().log(Level.WARNING, "Unable to find element in page source for book `" + bookId + "`.", e);
                 } catch (TimeoutException e) {
                     getLogger().log(Level.WARNING, "Received timeout while scraping book `" + bookId + "`.", e);
                     // Give the site 10 seconds to recover.
                     DriverUtils.sleep(10000L);
+                } catch (WebDriverException e) {
+                    if (DriverUtils.isSessionLost(driver, e)) {
+                        getLogger().log(Level.WARNING, "Web driver session was lost while scraping book `" + bookId + "`; replacing it.", e);
+                        driverPool.invalidate(driver);
+                        driver = null;
+                        driver = driverPool.lease();
+                    } else {
+                        getLogger().log(Level.WARNING, "Web driver failed while scraping book `" + bookId + "`.", e);
+                    }
                 }
                 retries--;
             }
+        } finally {
+            if (driver != null) {
+                driverPool.release(driver);
+            }
         }
-        getLogger().log(Level.INFO, "Done scraping details.");
+        return null;
     }
 
-    private boolean shouldUpdateBook(DatabaseHelper databaseHelper, String id) throws SQLException {
-        // TODO: Check freshness of DB entry. Re-scrape the book details if its data is relatively stale.
-        //noinspection RedundantIfStatement
-        if (databaseHelper.recordExists(DatabaseHelper.TABLE_BOOKCAVE_BOOKS, "id", id)) {
-            return false;
+    /**
+     * @return The records of the book, fetched (or scraped with a driver), or `null` if it could not be fetched.
+     */
+    private BookRecords fetchBookWithRetries(PageFetcher fetcher, WebDriverPool driverPool, String bookId, int maxRetries) throws InterruptedException {
+        // Try fetching the metadata of the book with a fixed number of retries.
+        int retries = maxRetries;
+        while (retries > 0) {
+            try {
+                getLogger().log(Level.INFO, "Fetching book: `" + bookId + "`.");
+                final Document document = fetcher.fetch(getBookUrl(bookId));
+                final BookRecords records = parseBook(document, bookId);
+                if (records.isMissingLevels()) {
+                    // The page probably builds its rating tooltips with JavaScript.
+                    getLogger().log(Level.INFO, "Rating levels for book `" + bookId + "` are not in the page source; scraping it with a driver.");
+                    return scrapeBookWithRetries(PageEngine.SNAPSHOT, driverPool, bookId, retries);
+                }
+                return records;
+            } catch (ElementNotFoundException e) {
+                getLogger().log(Level.WARNING, "Unable to find element in page source for book `" + bookId + "`.", e);
+            } catch (IOException e) {
+                getLogger().log(Level.WARNING, "Unable to fetch book `" + bookId + "`.", e);
+                // Give the site 10 seconds to recover.
+                DriverUtils.sleep(10000L);
+            }
+            retries--;
         }
-        return true;
+        return null;
+    }
+
+    private boolean shouldUpdateBook(ExistenceIndex savedBooks, RefreshPlan refreshPlan, String id) {
+        return !savedBooks.contains(id) || refreshPlan.contains(id);
     }
 
-    private void scrapeBook(WebDriver driver, String bookId, DatabaseHelper databaseHelper) throws SQLException, NoSuchElementException {
+    private static String getBookUrl(String bookId) {
+        return "https://mybookcave.com/mybookratings/rated-book/" + bookId + "/";
+    }
+
+    /**
+     * Every record which is scraped from a single book page.
+     */
+    private static class BookRecords {
+
+        final Book book = new Book();
+        final List<BookRating> ratings = new ArrayList<>();
+        final List<BookRatingLevel> levels = new ArrayList<>();
+        // Indices of the ratings whose levels could not be found in the page source.
+        final List<Integer> ratingsMissingLevels = new ArrayList<>();
+
+        BookRecords(String bookId) {
+            book.id = bookId;
+        }
+
+        boolean isMissingLevels() {
+            return !ratingsMissingLevels.isEmpty();
+        }
+    }
+
+    private BookRecords scrapeBook(WebDriver driver, String bookId) throws NoSuchElementException {
         // Scrape this book.
         getLogger().log(Level.INFO, "Scraping book: `" + bookId + "`.");
-        driver.navigate().to("https://mybookcave.com/mybookratings/rated-book/" + bookId + "/");
-        // Create the book record to be saved in the database.
-        final Book book = new Book();
-        book.id = bookId;
+        driver.navigate().to(getBookUrl(bookId));
+        // Create the book records to be saved in the database.
+        final BookRecords records = new BookRecords(bookId);
+        final Book book = records.book;
         final WebElement siteInnerDiv = driver.findElement(By.id("site-inner"));
         // Extract title, author, summary, pages, genres, purchase links.
         final WebElement introSection = siteInnerDiv.findElement(By.id("single-book-intro"));
@@ -348,34 +648,7 @@ public class BookCave extends SiteScraper {
         final WebElement purchaseLinksDiv = introSection.findElement(By.className("purchase-links"));
         final List<WebElement> purchaseLinkAs = purchaseLinksDiv.findElements(By.tagName("a"));
         for (WebElement purchaseLinkA : purchaseLinkAs) {
-            final String text = purchaseLinkA.getText().trim();
-            final String href = purchaseLinkA.getAttribute("href");
-            if ("Amazon Kindle".equalsIgnoreCase(text)) {
-                book.amazonKindleUrl = href;
-            } else if ("Amazon Print".equalsIgnoreCase(text)) {
-                book.amazonPrintUrl = href;
-            } else if ("Audible".equalsIgnoreCase(text)) {
-                book.audibleUrl = href;
-            } else if ("Apple Books".equalsIgnoreCase(text)) {
-                book.appleBooksUrl = href;
-            } else if ("Barnes & Noble".equalsIgnoreCase(text)) {
-                book.barnesAndNobleUrl = href;
-            } else if ("B&N Audiobook".equalsIgnoreCase(text)) {
-                book.barnesAndNobleAudiobookUrl = href;
-            } else if ("B&N Print".equalsIgnoreCase(text)) {
-                book.barnesAndNoblePrintUrl = href;
-            } else if ("Google Play".equalsIgnoreCase(text)) {
-                book.googlePlayUrl = href;
-            } else if ("Kobo".equalsIgnoreCase(text)) {
-                book.koboUrl = href;
-            } else if ("Smashwords".equalsIgnoreCase(text)) {
-                book.smashwordsUrl = href;
-            } else //noinspection StatementWithEmptyBody
-                if ("No retailer links available".equalsIgnoreCase(text)) {
-                    // Do nothing.
-                } else {
-                    getLogger().log(Level.WARNING, "Unknown purchase link found: `" + text + "`.");
-                }
+            setPurchaseLink(book, purchaseLinkA.getText().trim(), purchaseLinkA.getAttribute("href"));
         }
         // Extract the community rating info.
         final WebElement ratingsBarSection = siteInnerDiv.findElement(By.id("ratings-bar"));
@@ -389,8 +662,6 @@ public class BookCave extends SiteScraper {
         } catch (NumberFormatException e) {
             getLogger().log(Level.WARNING, "Unable to parse book community ratings count text `" + communityRatingsIntegerText + "`.", e);
         }
-        final List<BookRating> ratings = new ArrayList<>();
-        final List<BookRatingLevel> levels = new ArrayList<>();
         // Some books strangely don't have any rating. Therefore, they have no average rating.
         // These books are probably not useful for our purposes.
         // See `https://mybookcave.com/mybookratings/rated-book/demon-ember/`.
@@ -421,78 +692,320 @@ public class BookCave extends SiteScraper {
                 // Extract rating levels.
                 final String className = ratingBarDiv.getAttribute("class");
                 if (className.contains("has-tooltip")) {
-                    // Click the rating text to open the tooltip.
-                    // This is more reliable than clicking the bar, since the bar can be covered by the book cover image.
-                    // See `https://mybookcave.com/mybookratings/rated-book/chronicles-of-ara/`.
-                    ratingNameSpan.click();
-                    DriverUtils.sleep(50L);
-                    try {
-                        // The tooltip `div` element should become visible in the page (usually right at the bottom of the `body` element).
-                        final WebElement tooltipDiv = driver.findElement(By.className("tooltip"));
-                        final List<WebElement> columnDivs = tooltipDiv.findElements(By.className("column"));
-                        for (WebElement columnDiv : columnDivs) {
+                    scrapeRatingLevels(driver, ratingNameSpan, titleH1, rating, records.levels);
+                } else {
+                    getLogger().log(Level.WARNING, "Found a rating bar without a tool tip for book `" + bookId + "`.");
+                }
+                records.ratings.add(rating);
+            }
+        }
+        // Extract the book description.
+        final WebElement sidebarContainerDiv = siteInnerDiv.findElement(By.className("sidebar-container"));
+        final WebElement contentMain = sidebarContainerDiv.findElement(By.id("content"));
+        final WebElement singleBookDetailsSection = contentMain.findElement(By.id("single-book-details"));
+        final WebElement descriptionDiv = singleBookDetailsSection.findElement(By.className("description"));
+        book.description = getDescription(descriptionDiv);
+        // Set the time when this book was last updated.
+        book.lastUpdated = System.currentTimeMillis();
+        return records;
+    }
+
+    /**
+     * Load a book page in the browser, then extract its records from a single snapshot of the page source.
+     * The browser is only queried again to open the tooltips of rating levels which are missing from the source.
+     */
+    private BookRecords snapshotBook(WebDriver driver, String bookId) throws NoSuchElementException {
+        getLogger().log(Level.INFO, "Scraping book: `" + bookId + "`.");
+        driver.navigate().to(getBookUrl(bookId));
+        DriverUtils.waitForElement(driver, By.id("single-book-details"), PAGE_TIMEOUT_MILLIS);
+        final Document document = Jsoup.parse(driver.getPageSource(), driver.getCurrentUrl());
+        final BookRecords records = parseBook(document, bookId);
+        if (records.isMissingLevels()) {
+            final WebElement titleH1 = driver.findElement(By.cssSelector("#single-book-intro .book-details .title"));
+            final List<WebElement> ratingBarDivs = driver.findElements(By.cssSelector("#community-ratings .rating-bars .rating-bar"));
+            for (int index : records.ratingsMissingLevels) {
+                final WebElement ratingNameSpan = ratingBarDivs.get(index).findElement(By.className("rating-name"));
+                scrapeRatingLevels(driver, ratingNameSpan, titleH1, records.ratings.get(index), records.levels);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Open the tooltip of a rating bar in the browser, and collect the rating levels within it.
+     *
+     * @param driver         Driver, already on the book page.
+     * @param ratingNameSpan Name of the rating in its bar, which opens the tooltip when clicked.
+     * @param titleH1        Title of the book, which closes the tooltip when clicked.
+     * @param rating         Rating of the bar.
+     * @param levels         To which the rating levels are added.
+     */
+    private void scrapeRatingLevels(WebDriver driver, WebElement ratingNameSpan, WebElement titleH1, BookRating rating, List<BookRatingLevel> levels) {
+        // Click the rating text to open the tooltip.
+        // This is more reliable than clicking the bar, since the bar can be covered by the book cover image.
+        // See `https://mybookcave.com/mybookratings/rated-book/chronicles-of-ara/`.
+        ratingNameSpan.click();
+        try {
+            // The tooltip `div` element should become visible in the page (usually right at the bottom of the `body` element).
+            final WebElement tooltipDiv = DriverUtils.waitForElement(driver, By.className("tooltip"), TOOLTIP_TIMEOUT_MILLIS);
+            final List<WebElement> columnDivs = tooltipDiv.findElements(By.className("column"));
+            for (WebElement columnDiv : columnDivs) {
+                final BookRatingLevel level = new BookRatingLevel();
+                level.bookId = rating.bookId;
+                level.rating = rating.rating;
+                final WebElement titleDiv = columnDiv.findElement(By.className("level-title"));
+                level.title = getLevelTitle(titleDiv.getText(), rating.bookId);
+                final WebElement countSpan = columnDiv.findElement(By.className("level-count"));
+                level.count = getLevelCount(countSpan.getText());
+                levels.add(level);
+            }
+        } catch (NoSuchElementException | TimeoutException e) {
+            getLogger().log(Level.SEVERE, "Unable to find tooltip element on the page after clicking rating box for book `" + rating.bookId + "` and rating `" + rating.rating + "`.", e);
+        }
+        // Click outside of the tooltip to hide it.
+        // This allows any bars past the first to be clickable.
+        // See `https://mybookcave.com/mybookratings/rated-book/the-art-of-love/`.
+        titleH1.click();
+        try {
+            DriverUtils.waitUntil(driver, ExpectedConditions.invisibilityOfElementLocated(By.className("tooltip")), TOOLTIP_TIMEOUT_MILLIS);
+        } catch (TimeoutException e) {
+            getLogger().log(Level.WARNING, "Tooltip for book `" + rating.bookId + "` and rating `" + rating.rating + "` did not close.");
+        }
+    }
+
+    /**
+     * Extract every record from the source of a book page, without a browser.
+     * Rating levels are only shown in tooltips; when their markup can't be found in the source,
+     * they are listed in {@link BookRecords#ratingsMissingLevels}, and should be scraped with a driver instead.
+     *
+     * @param document Parsed source of the page.
+     * @param bookId   ID of the book.
+     * @return The records.
+     * @throws ElementNotFoundException When an expected element is missing from the page.
+     */
+    private BookRecords parseBook(Document document, String bookId) {
+        final BookRecords records = new BookRecords(bookId);
+        final Book book = records.book;
+        final Element siteInnerDiv = DocumentUtils.findElement(document, "#site-inner");
+        // Extract title, author, summary, pages, genres, purchase links.
+        final Element introSection = DocumentUtils.findElement(siteInnerDiv, "#single-book-intro");
+        final Element detailsDiv = DocumentUtils.findElement(introSection, ".book-details");
+        // Extract title.
+        book.title = DocumentUtils.getText(DocumentUtils.findElement(detailsDiv, ".title"));
+        // Extract author.
+        final Element authorValueDiv = DocumentUtils.findElement(detailsDiv, ".author .value");
+        book.authors = DocumentUtils.getConcatenatedTexts(authorValueDiv, "a", "|");
+        // Extract summary.
+        book.summary = getDescription(DocumentUtils.findElement(detailsDiv, ".summary"));
+        // Extract pages and genres.
+        final Element metadataDiv = DocumentUtils.findElement(detailsDiv, ".metadata");
+        for (Element metaRowDiv : metadataDiv.select(".meta .meta-row")) {
+            final Element metaValueDiv = DocumentUtils.findElement(metaRowDiv, ".meta-value");
+            final String nameText = DocumentUtils.getText(DocumentUtils.findElement(metaRowDiv, ".meta-name"));
+            final String valueText = DocumentUtils.getText(metaValueDiv).replaceAll(",", "").trim();
+            if (nameText.startsWith("Pages")) {
+                try {
+                    book.pages = Integer.parseInt(valueText);
+                } catch (NumberFormatException e) {
+                    getLogger().log(Level.WARNING, "Unable to parse pages in book details: `" + nameText + "`:`" + valueText + "`.", e);
+                }
+            } else if (nameText.startsWith("Genres")) {
+                book.genres = DocumentUtils.getConcatenatedTexts(metaValueDiv, "a", "|", text -> text.replaceAll(" / ", "/"));
+            } else {
+                getLogger().log(Level.WARNING, "Unknown meta data item `" + nameText + "`:`" + valueText + "`.");
+            }
+        }
+        // Extract purchase links.
+        final Element purchaseLinksDiv = DocumentUtils.findElement(introSection, ".purchase-links");
+        for (Element purchaseLinkA : purchaseLinksDiv.select("a")) {
+            setPurchaseLink(book, DocumentUtils.getText(purchaseLinkA), purchaseLinkA.attr("abs:href"));
+        }
+        // Extract the community rating info.
+        final Element communityRatingsDiv = DocumentUtils.findElement(siteInnerDiv, "#ratings-bar #community-ratings");
+        // Extract the number of community ratings given to this book.
+        final String communityRatingsText = DocumentUtils.getText(DocumentUtils.findElement(communityRatingsDiv, "h2"));
+        final String communityRatingsIntegerText = communityRatingsText.substring(communityRatingsText.indexOf("(") + 1, communityRatingsText.lastIndexOf(")"));
+        try {
+            book.communityRatingsCount = Integer.parseInt(communityRatingsIntegerText);
+        } catch (NumberFormatException e) {
+            getLogger().log(Level.WARNING, "Unable to parse book community ratings count text `" + communityRatingsIntegerText + "`.", e);
+        }
+        // Books without any rating have no average rating.
+        if (book.communityRatingsCount > 0) {
+            final Element communityContainerDiv = DocumentUtils.findElement(communityRatingsDiv, ".community-container");
+            // Extract the average community rating.
+            final Element communityAverageImg = DocumentUtils.findElement(communityContainerDiv, ".community-average img");
+            book.communityAverageRating = communityAverageImg.attr("alt").trim();
+            // Extract the community ratings and rating levels.
+            final Element ratingsBarsDiv = DocumentUtils.findElement(communityContainerDiv, ".rating-bars");
+            for (Element ratingBarDiv : ratingsBarsDiv.select(".rating-bar")) {
+                final BookRating rating = new BookRating();
+                rating.bookId = bookId;
+                rating.rating = DocumentUtils.getText(DocumentUtils.findElement(ratingBarDiv, ".rating-name"));
+                final String countIntegerText = DocumentUtils.getText(DocumentUtils.findElement(ratingBarDiv, ".rating-count")).replaceAll("[()]", "").trim();
+                try {
+                    rating.count = Integer.parseInt(countIntegerText);
+                } catch (NumberFormatException e) {
+                    getLogger().log(Level.WARNING, "Unable to parse book rating count text `" + countIntegerText + "`.", e);
+                }
+                if (ratingBarDiv.hasClass("has-tooltip")) {
+                    final Element tooltip = findTooltipSource(document, ratingBarDiv);
+                    if (tooltip != null) {
+                        for (Element columnDiv : tooltip.select(".column")) {
                             final BookRatingLevel level = new BookRatingLevel();
                             level.bookId = bookId;
                             level.rating = rating.rating;
-                            final WebElement titleDiv = columnDiv.findElement(By.className("level-title"));
-                            final String titleText = titleDiv.getText();
-                            final String title = titleText.substring(titleText.indexOf(")") + 1).trim();
-                            if (LEVEL_TITLE_ALIASES.containsKey(title)) {
-                                level.title = LEVEL_TITLE_ALIASES.get(title);
-                            } else {
-                                getLogger().log(Level.SEVERE, "Unknown level title alias for level title `" + title + "` for book `" + bookId + "`. Please add the correct alias for this title. Using given title.");
-                                level.title = title;
-                            }
-                            final WebElement countSpan = columnDiv.findElement(By.className("level-count"));
-                            final String levelCountIntegerText = countSpan.getText().replaceAll("[()]", "").trim();
-                            try {
-                                level.count = Integer.parseInt(levelCountIntegerText);
-                            } catch (NumberFormatException e) {
-                                getLogger().log(Level.WARNING, "Unable to parse book rating level count text `" + levelCountIntegerText + "`.", e);
-                            }
-                            levels.add(level);
+                            level.title = getLevelTitle(DocumentUtils.getText(DocumentUtils.findElement(columnDiv, ".level-title")), bookId);
+                            level.count = getLevelCount(DocumentUtils.getText(DocumentUtils.findElement(columnDiv, ".level-count")));
+                            records.levels.add(level);
                         }
-                    } catch (NoSuchElementException e) {
-                        getLogger().log(Level.SEVERE, "Unable to find tooltip element on the page after clicking rating box for book `" + bookId + "` and rating `" + rating.rating + "`.", e);
+                    } else {
+                        records.ratingsMissingLevels.add(records.ratings.size());
                     }
-                    // Click outside of the tooltip to hide it.
-                    // This allows any bars past the first to be clickable.
-                    // See `https://mybookcave.com/mybookratings/rated-book/the-art-of-love/`.
-                    titleH1.click();
-                    DriverUtils.sleep(50L);
                 } else {
                     getLogger().log(Level.WARNING, "Found a rating bar without a tool tip for book `" + bookId + "`.");
                 }
-                ratings.add(rating);
+                records.ratings.add(rating);
             }
         }
         // Extract the book description.
-        final WebElement sidebarContainerDiv = siteInnerDiv.findElement(By.className("sidebar-container"));
-        final WebElement contentMain = sidebarContainerDiv.findElement(By.id("content"));
-        final WebElement singleBookDetailsSection = contentMain.findElement(By.id("single-book-details"));
-        final WebElement descriptionDiv = singleBookDetailsSection.findElement(By.className("description"));
+        final Element descriptionDiv = DocumentUtils.findElement(siteInnerDiv, ".sidebar-container #content #single-book-details .description");
         book.description = getDescription(descriptionDiv);
         // Set the time when this book was last updated.
         book.lastUpdated = System.currentTimeMillis();
-        // Add the book, book ratings, and book rating levels to the database.
-        final int bookResult = databaseHelper.insert(book);
-        if (bookResult != 1) {
-            getLogger().log(Level.WARNING, "Unusual database response `" + bookResult + "` when inserting book `" + bookId + "`.");
+        return records;
+    }
+
+    // Attributes in which tooltip libraries keep the content of a tooltip, or a selector to it.
+    private static final String[] TOOLTIP_CONTENT_ATTRIBUTES = {"data-tooltip-content", "data-tooltip", "data-content", "title"};
+
+    /**
+     * Find the markup of the tooltip for a rating bar in the page source, if it was rendered by the server.
+     *
+     * @return An element which contains the `column`s of rating levels, or `null` if they can't be found.
+     */
+    private static Element findTooltipSource(Document document, Element ratingBarDiv) {
+        // The tooltip may be nested within the bar.
+        if (ratingBarDiv.selectFirst(".level-title") != null) {
+            return ratingBarDiv;
+        }
+        for (String attribute : TOOLTIP_CONTENT_ATTRIBUTES) {
+            final String value = ratingBarDiv.attr(attribute).trim();
+            if (value.isEmpty()) {
+                continue;
+            }
+            if (value.contains("level-title")) {
+                // The attribute contains the tooltip markup itself.
+                return Jsoup.parseBodyFragment(value).body();
+            }
+            if (value.startsWith("#") || value.startsWith(".")) {
+                // The attribute refers to a (usually hidden) template elsewhere in the page.
+                try {
+                    final Element template = document.selectFirst(value);
+                    if (template != null && template.selectFirst(".level-title") != null) {
+                        return template;
+                    }
+                } catch (Selector.SelectorParseException ignored) {
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Performed by the write thread, within a single transaction.
+     * Each table is written with one batch for every book in `recordsList`.
+     */
+    private void saveBooks(DatabaseHelper databaseHelper, List<BookRecords> recordsList, RefreshPlan refreshPlan) throws SQLException {
+        final List<Book> books = new ArrayList<>();
+        final List<BookRating> ratings = new ArrayList<>();
+        final List<BookRatingLevel> levels = new ArrayList<>();
+        final List<String> refreshedBookIds = new ArrayList<>();
+        for (BookRecords records : recordsList) {
+            books.add(records.book);
+            ratings.addAll(records.ratings);
+            levels.addAll(records.levels);
+            if (refreshPlan.contains(records.book.id)) {
+                refreshedBookIds.add(records.book.id);
+            }
         }
-        for (BookRating rating : ratings) {
-            final int ratingResult = databaseHelper.insert(rating);
-            if (ratingResult != 1) {
-                getLogger().log(Level.WARNING, "Unusual database response `" + ratingResult + "` when inserting book rating `" + bookId + ":" + rating.rating + "`.");
+        // Refreshed books replace their old ratings. Their rows are only rewritten if they have changed.
+        databaseHelper.deleteBookCaveBookRatings(refreshedBookIds);
+        // Add the books, book ratings, and book rating levels to the database.
+        final int[] bookResults;
+        if (refreshedBookIds.isEmpty()) {
+            bookResults = databaseHelper.insertBookCaveBooks(books);
+        } else {
+            bookResults = databaseHelper.upsertBookCaveBooks(books);
+        }
+        for (int i = 0; i < bookResults.length; i++) {
+            if (bookResults[i] != 1) {
+                getLogger().log(Level.WARNING, "Unusual database response `" + bookResults[i] + "` when inserting book `" + books.get(i).id + "`.");
             }
         }
-        for (BookRatingLevel level : levels) {
-            final int levelResult = databaseHelper.insert(level);
-            if (levelResult != 1) {
-                getLogger().log(Level.WARNING, "Unusual database response `" + levelResult + "` when inserting book rating level `" + bookId + ":" + level.rating + ":" + level.title + "`.");
+        final int[] ratingResults = databaseHelper.insertBookCaveBookRatings(ratings);
+        for (int i = 0; i < ratingResults.length; i++) {
+            if (ratingResults[i] != 1) {
+                getLogger().log(Level.WARNING, "Unusual database response `" + ratingResults[i] + "` when inserting book rating `" + ratings.get(i).bookId + ":" + ratings.get(i).rating + "`.");
+            }
+        }
+        final int[] levelResults = databaseHelper.insertBookCaveBookRatingLevels(levels);
+        for (int i = 0; i < levelResults.length; i++) {
+            if (levelResults[i] != 1) {
+                final BookRatingLevel level = levels.get(i);
+                getLogger().log(Level.WARNING, "Unusual database response `" + levelResults[i] + "` when inserting book rating level `" + level.bookId + ":" + level.rating + ":" + level.title + "`.");
             }
         }
     }
 
+    private void setPurchaseLink(Book book, String text, String href) {
+        if ("Amazon Kindle".equalsIgnoreCase(text)) {
+            book.amazonKindleUrl = href;
+        } else if ("Amazon Print".equalsIgnoreCase(text)) {
+            book.amazonPrintUrl = href;
+        } else if ("Audible".equalsIgnoreCase(text)) {
+            book.audibleUrl = href;
+        } else if ("Apple Books".equalsIgnoreCase(text)) {
+            book.appleBooksUrl = href;
+        } else if ("Barnes & Noble".equalsIgnoreCase(text)) {
+            book.barnesAndNobleUrl = href;
+        } else if ("B&N Audiobook".equalsIgnoreCase(text)) {
+            book.barnesAndNobleAudiobookUrl = href;
+        } else if ("B&N Print".equalsIgnoreCase(text)) {
+            book.barnesAndNoblePrintUrl = href;
+        } else if ("Google Play".equalsIgnoreCase(text)) {
+            book.googlePlayUrl = href;
+        } else if ("Kobo".equalsIgnoreCase(text)) {
+            book.koboUrl = href;
+        } else if ("Smashwords".equalsIgnoreCase(text)) {
+            book.smashwordsUrl = href;
+        } else //noinspection StatementWithEmptyBody
+            if ("No retailer links available".equalsIgnoreCase(text)) {
+                // Do nothing.
+            } else {
+                getLogger().log(Level.WARNING, "Unknown purchase link found: `" + text + "`.");
+            }
+    }
+
+    private String getLevelTitle(String titleText, String bookId) {
+        final String title = titleText.substring(titleText.indexOf(")") + 1).trim();
+        if (LEVEL_TITLE_ALIASES.containsKey(title)) {
+            return LEVEL_TITLE_ALIASES.get(title);
+        }
+        getLogger().log(Level.SEVERE, "Unknown level title alias for level title `" + title + "` for book `" + bookId + "`. Please add the correct alias for this title. Using given title.");
+        return title;
+    }
+
+    private int getLevelCount(String countText) {
+        final String levelCountIntegerText = countText.replaceAll("[()]", "").trim();
+        try {
+            return Integer.parseInt(levelCountIntegerText);
+        } catch (NumberFormatException e) {
+            getLogger().log(Level.WARNING, "Unable to parse book rating level count text `" + levelCountIntegerText + "`.", e);
+        }
+        return 0;
+    }
+
     private static String[][] LEVEL_TITLES = {{
             "None",
             "Mild crude humor",
@@ -594,6 +1107,36 @@ public class BookCave extends SiteScraper {
         return description.toString();
     }
 
+    /**
+     * Equivalent to {@link #getDescription(WebElement)}, for a page which has been parsed locally.
+     */
+    private static String getDescription(Element element) {
+        StringBuilder description = new StringBuilder();
+        final Elements children = element.children();
+        if (children.size() == 0 || areAllFormatting(children)) {
+            // The element has no relevant children.
+            return DocumentUtils.getText(element).replaceAll("&nbsp;", " ").trim();
+        } else {
+            // The element has at least one non-formatting-element child.
+            for (Element child : children) {
+                // Ignore the 'Description' header.
+                if ("h3".equalsIgnoreCase(child.tagName())) {
+                    continue;
+                }
+                // Ignore empty paragraphs.
+                final String text = DocumentUtils.getText(child).replaceAll("&nbsp;", " ").trim();
+                if (text.length() == 0) {
+                    continue;
+                }
+                if (description.length() > 0) {
+                    description.append("|");
+                }
+                description.append(getDescription(child));
+            }
+        }
+        return description.toString();
+    }
+
     /**
      * A set of HTML tag names which are NOT to be considered "containers" of relevant text,
      * where a "container" would typically be `div`, `p`, `h1`, etc. elements.
@@ -638,27 +1181,13 @@ public class BookCave extends SiteScraper {
         return true;
     }
 
-    private static List<BookScrapeInfo> getBookScrapeInfos(List<Book> books) {
-        final List<BookScrapeInfo> bookScrapeInfos = new ArrayList<>();
-        for (Book book : books) {
-            // Skip unattainable books.
-            if (book.amazonKindleUrl == null && book.amazonPrintUrl == null) {
-                continue;
-            }
-            final String[] urls;
-            if (book.amazonKindleUrl == null) {
-                urls = new String[]{book.amazonPrintUrl};
-            } else if (book.amazonPrintUrl == null) {
-                urls = new String[]{book.amazonKindleUrl};
-            } else {
-                // Give multiple options for Amazon URLs.
-                // Sometimes the BookCave Kindle link will have broken, though a Kindle preview still exists.
-                // See `https://mybookcave.com/mybookratings/rated-book/the-warriors-path/`.
-                urls = new String[]{book.amazonKindleUrl, book.amazonPrintUrl};
+    private static boolean areAllFormatting(Elements elements) {
+        for (Element element : elements) {
+            if (!FORMATTING_TAGS.contains(element.tagName())) {
+                return false;
             }
-            bookScrapeInfos.add(new BookScrapeInfo(book.id, urls, book.asin));
         }
-        return bookScrapeInfos;
+        return true;
     }
 
     public static class AmazonKindleProvider implements Provider<AmazonKindle>, AmazonKindle.Listener {
@@ -673,13 +1202,12 @@ public class BookCave extends SiteScraper {
         public AmazonKindle newInstance(Logger logger) {
             databaseHelper = new DatabaseHelper(logger);
             databaseHelper.connectToContentsDatabase();
-            final List<Book> allBooks;
+            final List<BookScrapeInfo> bookScrapeInfos;
             try {
-                allBooks = databaseHelper.getBookCaveBooks();
+                bookScrapeInfos = databaseHelper.getBookCaveBookScrapeInfos();
             } catch (SQLException e) {
                 throw new RuntimeException("Unable to retrieve books.", e);
             }
-            final List<BookScrapeInfo> bookScrapeInfos = getBookScrapeInfos(allBooks);
             final AmazonKindle amazonKindle = new AmazonKindle(logger, bookScrapeInfos);
             amazonKindle.setListener(this);
             return amazonKindle;
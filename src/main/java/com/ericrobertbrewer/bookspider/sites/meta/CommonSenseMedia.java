@@ -3,25 +3,36 @@ package com.ericrobertbrewer.bookspider.sites.meta;
 import com.ericrobertbrewer.bookspider.Folders;
 import com.ericrobertbrewer.bookspider.Launcher;
 import com.ericrobertbrewer.bookspider.sites.BookScrapeInfo;
+import com.ericrobertbrewer.bookspider.sites.PageEngine;
+import com.ericrobertbrewer.bookspider.sites.ScrapeScheduler;
 import com.ericrobertbrewer.bookspider.sites.SiteScraper;
+import com.ericrobertbrewer.bookspider.sites.WorkQueue;
 import com.ericrobertbrewer.bookspider.sites.db.DatabaseHelper;
+import com.ericrobertbrewer.bookspider.sites.db.ExistenceIndex;
+import com.ericrobertbrewer.bookspider.sites.db.FrontierStore;
+import com.ericrobertbrewer.bookspider.sites.db.RefreshPlan;
+import com.ericrobertbrewer.bookspider.sites.db.WriteBehindQueue;
 import com.ericrobertbrewer.bookspider.sites.text.AmazonKindle;
 import com.ericrobertbrewer.web.WebUtils;
+import com.ericrobertbrewer.web.driver.DriverProfile;
 import com.ericrobertbrewer.web.driver.DriverUtils;
 import com.ericrobertbrewer.web.driver.WebDriverFactory;
+import com.ericrobertbrewer.web.driver.WebDriverPool;
+import com.ericrobertbrewer.web.fetch.DocumentUtils;
+import com.ericrobertbrewer.web.fetch.ElementNotFoundException;
+import com.ericrobertbrewer.web.fetch.PageFetcher;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
 import org.openqa.selenium.NoSuchElementException;
 import org.openqa.selenium.*;
 
 import java.io.*;
-import java.nio.file.Files;
 import java.sql.SQLException;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -81,18 +92,32 @@ public class CommonSenseMedia extends SiteScraper {
     private static final DateFormat PUBLICATION_DATE_FORMAT_WEB = new SimpleDateFormat("MMMM d, yyyy", Locale.US);
     private static final DateFormat PUBLICATION_DATE_FORMAT_DATABASE = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
 
-    private final AtomicBoolean isExploringFrontier = new AtomicBoolean(false);
-    private final AtomicInteger scrapeThreadsRunning = new AtomicInteger(0);
+    // Maximum times to wait for elements to appear.
+    private static final long PAGE_TIMEOUT_MILLIS = 10000L;
+
+    // Delay before a book which failed every retry may be claimed again.
+    private static final long FAILED_BOOK_RETRY_DELAY_MILLIS = 60L * 60L * 1000L;
+
+    // Books are scraped again by runs with a refresh budget once they are this old, by default.
+    // Reviews are rarely revised, so they are refreshed much less often than BookCave's community ratings.
+    private static final long DEFAULT_REFRESH_MAX_AGE_DAYS = 365L;
+    private static final long DAY_MILLIS = 24L * 60L * 60L * 1000L;
 
     private CommonSenseMedia(Logger logger) {
         super(logger);
     }
 
+    @Override
+    public DriverProfile getDriverProfile() {
+        // Only text is read from each page.
+        return DriverProfile.metadata();
+    }
+
     @Override
     public void scrape(WebDriverFactory factory, File contentFolder, String[] args, final Launcher.Callback callback) {
         // Collect arguments.
-        if (args.length > 3) {
-            throw new IllegalArgumentException("Usage: [threads=1] [max-retries=1] [force=false]");
+        if (args.length > 6) {
+            throw new IllegalArgumentException("Usage: [threads=1] [max-retries=1] [force=false] [engine=driver] [refresh-budget=0] [refresh-max-age-days=" + DEFAULT_REFRESH_MAX_AGE_DAYS + "]");
         }
         final int threads;
         if (args.length > 0) {
@@ -112,72 +137,132 @@ public class CommonSenseMedia extends SiteScraper {
         } else {
             force = false;
         }
-
-        // Create thread-safe frontier data structure.
-        final Queue<String> frontier = new ConcurrentLinkedQueue<>();
-        final File frontierFile = new File(contentFolder, "frontier.txt");
-        final boolean exists = frontierFile.exists();
-        if (exists) {
-            try {
-                final List<String> bookIds = Files.readAllLines(frontierFile.toPath());
-                for (String bookId : bookIds) {
-                    frontier.offer(bookId.trim());
-                }
-            } catch (IOException e) {
-                getLogger().log(Level.WARNING, "Unable to read existing frontier file.", e);
-                return;
-            }
+        final PageEngine engine;
+        if (args.length > 3) {
+            engine = PageEngine.fromArg(args[3]);
+        } else {
+            engine = PageEngine.DRIVER;
         }
-        // Create PrintWriter to write the frontier.
-        final PrintStream frontierOut;
+        final int refreshBudget;
+        if (args.length > 4) {
+            refreshBudget = Integer.parseInt(args[4]);
+        } else {
+            refreshBudget = 0;
+        }
+        final long refreshMaxAgeDays;
+        if (args.length > 5) {
+            refreshMaxAgeDays = Long.parseLong(args[5]);
+        } else {
+            refreshMaxAgeDays = DEFAULT_REFRESH_MAX_AGE_DAYS;
+        }
+
+        // Resume the frontier from where the last run left off.
+        final FrontierStore frontierStore = new FrontierStore(getLogger());
+        frontierStore.connectToFrontier(contentFolder);
+        final WorkQueue<String> frontier;
         try {
-            frontierOut = new PrintStream(new FileOutputStream(frontierFile, exists));
-        } catch (FileNotFoundException e) {
-            getLogger().log(Level.SEVERE, "Unable to write to frontier file.", e);
+            if (force) {
+                // Scrape every book again, including books which were finished by previous runs.
+                frontierStore.resetDone();
+            }
+            frontier = new WorkQueue<>(frontierStore.getClaimable(System.currentTimeMillis()));
+        } catch (SQLException e) {
+            getLogger().log(Level.SEVERE, "Unable to read frontier store.", e);
+            frontierStore.close();
             return;
         }
 
         // Create DatabaseHelper.
         final DatabaseHelper databaseHelper = new DatabaseHelper(getLogger());
         databaseHelper.connectToContentsDatabase();
-
+        // Find which books have already been saved with one query, rather than one query per book.
+        final ExistenceIndex savedBooks;
+        // Scrape the stalest books again, up to the budget of this run. Forced runs scrape every book anyway.
+        final RefreshPlan refreshPlan;
+        try {
+            savedBooks = ExistenceIndex.load(databaseHelper, DatabaseHelper.TABLE_COMMONSENSEMEDIA_BOOKS, "id");
+            if (force) {
+                refreshPlan = RefreshPlan.none();
+            } else {
+                refreshPlan = RefreshPlan.select(databaseHelper, DatabaseHelper.TABLE_COMMONSENSEMEDIA_BOOKS, "id", refreshMaxAgeDays * DAY_MILLIS, refreshBudget, System.currentTimeMillis());
+            }
+            frontierStore.requeue(refreshPlan.getIds());
+        } catch (SQLException e) {
+            getLogger().log(Level.SEVERE, "Unable to read saved books.", e);
+            databaseHelper.close();
+            frontierStore.close();
+            return;
+        }
+        if (!refreshPlan.isEmpty()) {
+            getLogger().log(Level.INFO, "Refreshing " + refreshPlan.size() + " book(s) last scraped over " + refreshMaxAgeDays + " day(s) ago.");
+        }
+        for (String bookId : refreshPlan.getIds()) {
+            frontier.offer(bookId);
+        }
+        // Scrape threads hand their books to a single write thread, which saves them in batches.
+        final WriteBehindQueue<BookRecords> writeQueue = new WriteBehindQueue<>("write", databaseHelper, (db, recordsList) -> saveBooks(db, recordsList, refreshPlan, force), getLogger());
+
+        // Launch one driver for the frontier thread and, unless pages are fetched over HTTP, one for each scrape thread.
+        final int drivers = engine == PageEngine.DRIVER ? threads + 1 : 1;
+        final WebDriverPool driverPool = new WebDriverPool(() -> {
+            final WebDriver driver = factory.newInstance();
+            // Widen the browser window.
+            driver.manage().window().setSize(new Dimension(1280, 978));
+            return driver;
+        }, drivers, getLogger());
+        driverPool.warmUp();
+
+        final ScrapeScheduler scheduler = getScheduler();
         // Populate the frontier.
-        final Thread frontierThread = new Thread(() -> {
-            isExploringFrontier.set(true);
-            final WebDriver frontierDriver = factory.newInstance();
-            exploreFrontier(frontierDriver, frontier, frontierOut);
-            frontierDriver.quit();
-            isExploringFrontier.set(false);
-            if (scrapeThreadsRunning.get() == 0) {
-                databaseHelper.close();
-                callback.onComplete();
+        scheduler.submit("frontier", 1, () -> {
+            final WebDriver frontierDriver = driverPool.lease();
+            try {
+                exploreFrontier(frontierDriver, frontier, frontierStore);
+            } finally {
+                driverPool.release(frontierDriver);
             }
-        }, "frontier");
-        frontierThread.start();
+        }).whenComplete((result, t) -> frontier.close());
 
-        // Create separate threads to scrape books.
-        scrapeBooksThreaded(threads, factory, frontier, databaseHelper, maxRetries, force, callback);
+        // Scrape books on separate threads.
+        final PageFetcher fetcher = new PageFetcher();
+        scheduler.submit("scrape", threads, () -> scrapeBooks(frontier, frontierStore, engine, fetcher, driverPool, savedBooks, refreshPlan, writeQueue, maxRetries, force));
+
+        // Release resources once the frontier has been explored and every book has been scraped.
+        scheduler.whenComplete(() -> {
+            driverPool.close();
+            try {
+                writeQueue.close();
+            } catch (InterruptedException e) {
+                getLogger().log(Level.WARNING, "Interrupted while waiting for books to be saved.", e);
+            }
+            frontierStore.close();
+            databaseHelper.close();
+            callback.onComplete();
+        });
     }
 
     /**
      * Performed by the frontier thread.
      *
-     * @param driver      Driver.
-     * @param frontier    Queue of book IDs to scrape.
-     * @param frontierOut Writer to file which contains unique book IDs.
+     * @param driver        Driver.
+     * @param frontier      Queue of book IDs to scrape.
+     * @param frontierStore Store of every book ID which has been added to the frontier.
      */
-    private void exploreFrontier(WebDriver driver, Queue<String> frontier, PrintStream frontierOut) {
-        // Keep a running set of book IDs to avoid writing duplicates.
-        final Set<String> frontierSet = new HashSet<>(frontier);
+    private void exploreFrontier(WebDriver driver, WorkQueue<String> frontier, FrontierStore frontierStore) {
         // Simply scrape each page.
+        int addedCount = 0;
         int page = 0;
         boolean hasReachedEnd = false;
         while (!hasReachedEnd) {
             int retries = 3;
             while (retries > 0) {
                 try {
-                    hasReachedEnd = exploreFrontierPage(driver, frontier, frontierSet, frontierOut, page);
+                    final List<String> added = new ArrayList<>();
+                    hasReachedEnd = exploreFrontierPage(driver, frontier, frontierStore, added, page);
+                    addedCount += added.size();
                     break;
+                } catch (SQLException e) {
+                    getLogger().log(Level.SEVERE, "Unable to add book IDs to frontier store at page " + page + ".", e);
                 } catch (NoSuchElementException e) {
                     getLogger().log(Level.WARNING, "Unable to find web element while exploring frontier at page " + page + ".", e);
                 } catch (TimeoutException e) {
@@ -189,31 +274,37 @@ public class CommonSenseMedia extends SiteScraper {
             }
             page++;
         }
-        getLogger().log(Level.INFO, "Collected " + frontierSet.size() + " unique book IDs, ending on page " + page + ".");
+        getLogger().log(Level.INFO, "Collected " + addedCount + " new book IDs, ending on page " + page + ".");
     }
 
-    private boolean exploreFrontierPage(WebDriver driver, Queue<String> frontier, Set<String> frontierSet, PrintStream frontierOut, int page) {
+    /**
+     * @param added Filled with the book IDs on this page which were new to the frontier store.
+     * @return `true` if this is the last page.
+     * @throws SQLException When the book IDs cannot be added to the frontier store.
+     */
+    private boolean exploreFrontierPage(WebDriver driver, WorkQueue<String> frontier, FrontierStore frontierStore, List<String> added, int page) throws SQLException {
         driver.navigate().to("https://www.commonsensemedia.org/book-reviews?page=" + page);
-        DriverUtils.sleep(1000L);
+        final WebElement reviewsBrowseDiv = DriverUtils.waitForElement(driver, By.className("view-display-id-ctools_context_reviews_browse"), PAGE_TIMEOUT_MILLIS);
         DriverUtils.scrollDown(driver, 40, 50L);
         // Scrape each item's book ID.
-        final WebElement reviewsBrowseDiv = driver.findElement(By.className("view-display-id-ctools_context_reviews_browse"));
         final WebElement viewContentDiv = reviewsBrowseDiv.findElement(By.className("view-content"));
         final List<WebElement> viewsRows = viewContentDiv.findElements(By.className("views-row"));
+        final List<String> bookIds = new ArrayList<>();
         for (WebElement viewsRow : viewsRows) {
             try {
                 final WebElement csmButtonA = viewsRow.findElement(By.className("csm-button"));
                 final String url = csmButtonA.getAttribute("href");
                 final String bookId = WebUtils.getLastUrlComponent(url);
-                if (!frontierSet.contains(bookId)) {
-                    frontier.add(bookId);
-                    frontierOut.println(bookId);
-                    frontierSet.add(bookId);
-                }
+                bookIds.add(bookId);
             } catch (NoSuchElementException e) {
                 getLogger().log(Level.WARNING, "Could not find 'Continue Reading' button on page " + page + ".", e);
             }
         }
+        // Record the whole page at once; only books which are new to the store are queued.
+        for (String bookId : frontierStore.addAll(bookIds)) {
+            frontier.offer(bookId);
+            added.add(bookId);
+        }
         // Quit when the "last page" link disappears.
         final WebElement pagerUl = reviewsBrowseDiv.findElement(By.className("pager"));
         try {
@@ -224,91 +315,164 @@ public class CommonSenseMedia extends SiteScraper {
         return false;
     }
 
-    private void scrapeBooksThreaded(int threads, WebDriverFactory factory, Queue<String> frontier, DatabaseHelper databaseHelper, int maxRetries, boolean force, Launcher.Callback callback) {
-        for (int i = 0; i < threads; i++) {
-            final Thread scrapeThread = new Thread(() -> {
-                scrapeThreadsRunning.incrementAndGet();
-                final WebDriver driver = factory.newInstance();
-                // Widen the browser window.
-                driver.manage().window().setSize(new Dimension(1280, 978));
-                // Start scraping.
-                scrapeBooks(frontier, driver, databaseHelper, maxRetries, force);
-                // Finish.
-                driver.quit();
-                scrapeThreadsRunning.decrementAndGet();
-                if (!isExploringFrontier.get() && scrapeThreadsRunning.get() == 0) {
-                    databaseHelper.close();
-                    callback.onComplete();
-                }
-            }, "scrape-" + i);
-            scrapeThread.start();
-        }
-    }
-
     /**
      * Performed by the scrape thread.
      *
      * @param frontier       Queue of book IDs to scrape.
-     * @param driver         Driver.
-     * @param databaseHelper To contents database. Should have already been connected.
-     *                       This method does not close the connection to the database.
+     * @param frontierStore  In which each book is claimed before it is scraped, then marked as done or failed.
+     * @param engine         How each book's page is read.
+     * @param fetcher        Used to fetch pages when `engine` is {@link PageEngine#HTTP}.
+     * @param driverPool     From which a driver is leased to scrape each book when `engine` is {@link PageEngine#DRIVER}.
+     * @param savedBooks     IDs of books in the contents database. Each book is added once it has been saved.
+     * @param refreshPlan    Saved books which are stale enough to be scraped again.
+     * @param writeQueue     Saves each scraped book. Books are marked as done in `frontierStore` once they have been saved.
+     * @throws InterruptedException When interrupted while waiting for the frontier to populate or for a driver.
      */
-    private void scrapeBooks(Queue<String> frontier, WebDriver driver, DatabaseHelper databaseHelper, int maxRetries, boolean force) {
+    private void scrapeBooks(WorkQueue<String> frontier, FrontierStore frontierStore, PageEngine engine, PageFetcher fetcher, WebDriverPool driverPool, ExistenceIndex savedBooks, RefreshPlan refreshPlan, WriteBehindQueue<BookRecords> writeQueue, int maxRetries, boolean force) throws InterruptedException {
         // Start scraping.
         getLogger().log(Level.INFO, "Scraping details...");
-        while (isExploringFrontier.get() || !frontier.isEmpty()) {
-            // Wait for frontier to populate before polling.
-            if (frontier.isEmpty()) {
-                DriverUtils.sleep(5000L);
+        String bookId;
+        // Wait for the frontier to populate, until it has been completely explored and drained.
+        while ((bookId = frontier.take()) != null) {
+            try {
+                if (!frontierStore.claim(bookId)) {
+                    continue;
+                }
+                // Ignore books which are fresh enough.
+                if (!force && !shouldUpdateBook(savedBooks, refreshPlan, bookId)) {
+                    frontierStore.markDone(bookId);
+                    continue;
+                }
+            } catch (SQLException e) {
+                getLogger().log(Level.SEVERE, "Unable to claim book `" + bookId + "`.", e);
                 continue;
             }
-            final String bookId = frontier.poll();
-            // Ignore books which are fresh enough.
-            if (!force && !shouldUpdateBook(databaseHelper, bookId)) {
+            getLogger().log(Level.INFO, "Started scraping book `" + bookId + "`.");
+            final BookRecords records;
+            if (engine == PageEngine.HTTP) {
+                records = fetchBookWithRetries(fetcher, bookId, maxRetries);
+            } else {
+                records = scrapeBookWithRetries(driverPool, bookId, maxRetries);
+            }
+            if (records == null) {
+                setBookState(frontierStore, bookId, false);
                 continue;
             }
-            getLogger().log(Level.INFO, "Started scraping book `" + bookId + "`.");
+            writeQueue.submit(records).whenComplete((result, t) -> {
+                if (t == null) {
+                    savedBooks.add(records.book.id);
+                } else {
+                    getLogger().log(Level.SEVERE, "Unable to save book `" + records.book.id + "`.", t);
+                }
+                setBookState(frontierStore, records.book.id, t == null);
+            });
+        }
+        getLogger().log(Level.INFO, "Done scraping details.");
+    }
+
+    private void setBookState(FrontierStore frontierStore, String bookId, boolean isSaved) {
+        try {
+            if (isSaved) {
+                frontierStore.markDone(bookId);
+            } else {
+                frontierStore.markFailed(bookId, System.currentTimeMillis() + FAILED_BOOK_RETRY_DELAY_MILLIS);
+            }
+        } catch (SQLException e) {
+            getLogger().log(Level.SEVERE, "Unable to update state of book `" + bookId + "` in frontier store.", e);
+        }
+    }
+
+    /**
+     * @return The records of the book, or `null` if it could not be scraped.
+     */
+    private BookRecords scrapeBookWithRetries(WebDriverPool driverPool, String bookId, int maxRetries) throws InterruptedException {
+        WebDriver driver = driverPool.lease();
+        try {
             int retries = maxRetries;
             while (retries > 0) {
                 try {
-                    scrapeBook(driver, bookId, databaseHelper, force);
-                    break;
-                } catch (SQLException e) {
-                    getLogger().log(Level.SEVERE, "SQLException thrown while scraping book `" + bookId + "`.", e);
+                    return scrapeBook(driver, bookId);
                 } catch (NoSuchElementException e) {
                     getLogger().log(Level.WARNING, "Unable to find web element for book `" + bookId + "`.", e);
                 } catch (TimeoutException e) {
                     getLogger().log(Level.WARNING, "Received timeout while scraping book `" + bookId + "`.", e);
                     // Give the site 10 seconds to recover.
                     DriverUtils.sleep(10000L);
+                } catch (WebDriverException e) {
+                    if (DriverUtils.isSessionLost(driver, e)) {
+                        getLogger().log(Level.WARNING, "Web driver session was lost while scraping book `" + bookId + "`; replacing it.", e);
+                        driverPool.invalidate(driver);
+                        driver = null;
+                        driver = driverPool.lease();
+                    } else {
+                        getLogger().log(Level.WARNING, "Web driver failed while scraping book `" + bookId + "`.", e);
+                    }
                 } catch (Throwable t) {
                     getLogger().log(Level.WARNING, "Unknown exception while scraping book `" + bookId + "`.", t);
                 }
                 retries--;
             }
+        } finally {
+            if (driver != null) {
+                driverPool.release(driver);
+            }
         }
-        getLogger().log(Level.INFO, "Done scraping details.");
+        return null;
     }
 
-    private boolean shouldUpdateBook(DatabaseHelper databaseHelper, String id) {
-        // TODO: Check freshness of DB entry. Re-scrape the book details if its data is relatively stale.
-        try {
-            return !databaseHelper.recordExists(DatabaseHelper.TABLE_COMMONSENSEMEDIA_BOOKS, "id", id);
-        } catch (SQLException ignored) {
+    /**
+     * @return The records of the book, or `null` if it could not be fetched.
+     */
+    private BookRecords fetchBookWithRetries(PageFetcher fetcher, String bookId, int maxRetries) {
+        int retries = maxRetries;
+        while (retries > 0) {
+            try {
+                final Document document = fetcher.fetch(getBookUrl(bookId));
+                return parseBook(document, bookId);
+            } catch (ElementNotFoundException e) {
+                getLogger().log(Level.WARNING, "Unable to find element in page source for book `" + bookId + "`.", e);
+            } catch (IOException e) {
+                getLogger().log(Level.WARNING, "Unable to fetch book `" + bookId + "`.", e);
+                // Give the site 10 seconds to recover.
+                DriverUtils.sleep(10000L);
+            } catch (Throwable t) {
+                getLogger().log(Level.WARNING, "Unknown exception while fetching book `" + bookId + "`.", t);
+            }
+            retries--;
         }
-        return true;
+        return null;
+    }
+
+    private boolean shouldUpdateBook(ExistenceIndex savedBooks, RefreshPlan refreshPlan, String id) {
+        return !savedBooks.contains(id) || refreshPlan.contains(id);
+    }
+
+    private static String getBookUrl(String bookId) {
+        return "https://www.commonsensemedia.org/book-reviews/" + bookId;
     }
 
-    private void scrapeBook(WebDriver driver, String bookId, DatabaseHelper databaseHelper, boolean force) throws SQLException, NoSuchElementException {
-        driver.navigate().to("https://www.commonsensemedia.org/book-reviews/" + bookId);
-        DriverUtils.sleep(1500L);
+    /**
+     * Every record which is scraped from a single book page.
+     */
+    private static class BookRecords {
 
-        // Create the book record to be saved in the database.
         final Book book = new Book();
-        book.id = bookId;
+        final List<BookCategory> categories = new ArrayList<>();
+
+        BookRecords(String bookId) {
+            book.id = bookId;
+        }
+    }
+
+    private BookRecords scrapeBook(WebDriver driver, String bookId) throws NoSuchElementException {
+        driver.navigate().to(getBookUrl(bookId));
+
+        // Create the book records to be saved in the database.
+        final BookRecords records = new BookRecords(bookId);
+        final Book book = records.book;
 
         // Find the `content` <div>.
-        final WebElement contentDiv = driver.findElement(By.id("content"));
+        final WebElement contentDiv = DriverUtils.waitForElement(driver, By.id("content"), PAGE_TIMEOUT_MILLIS);
 
         // Find the top wrapper (upper section).
         final WebElement topWrapperDiv = contentDiv.findElement(By.className("panel-content-top-wrapper"));
@@ -321,28 +485,12 @@ public class CommonSenseMedia extends SiteScraper {
         // Extract age.
         final WebElement topMainDiv = topDiv.findElement(By.className("panel-content-top-main"));
         final WebElement recommendedAgeDiv = topMainDiv.findElement(By.className("field-name-field-review-recommended-age"));
-        final String ageText = recommendedAgeDiv.getText().trim();
-        if (ageText.startsWith("age ")) {
-            book.age = ageText.substring("age ".length()).trim();
-        } else {
-            book.age = ageText;
-        }
+        book.age = getAge(recommendedAgeDiv.getText());
 
         // Extract stars.
         final WebElement paneNodeFieldStarsRatingDiv = topMainDiv.findElement(By.className("pane-node-field-stars-rating"));
         final WebElement fieldStarsRatingDiv = paneNodeFieldStarsRatingDiv.findElement(By.className("field_stars_rating"));
-        final String starsClasses = fieldStarsRatingDiv.getAttribute("class");
-        final int starsRatingIndex = starsClasses.indexOf("rating-");
-        if (starsRatingIndex != -1) {
-            final String starsRatingString = starsClasses.substring(starsRatingIndex + "rating-".length(), starsRatingIndex + "rating-".length() + 1);
-            try {
-                book.stars = Integer.parseInt(starsRatingString);
-            } catch (NumberFormatException e) {
-                getLogger().log(Level.WARNING, "Unable to convert stars rating string `" + starsRatingString + "` to a number.", e);
-            }
-        } else {
-            getLogger().log(Level.WARNING, "Unable to find `rating-` in stars class attribute: `" + starsClasses + "`.");
-        }
+        setStars(book, fieldStarsRatingDiv.getAttribute("class"));
 
         // Extract kicker.
         final WebElement oneLinerDiv = topMainDiv.findElement(By.className("pane-node-field-one-liner"));
@@ -357,17 +505,7 @@ public class CommonSenseMedia extends SiteScraper {
             final WebElement buyLinksUl = buyLinksWrapperDiv.findElement(By.tagName("ul"));
             final List<WebElement> buyLinksLis = buyLinksUl.findElements(By.tagName("li"));
             for (WebElement buyLinksLi : buyLinksLis) {
-                final String idType = buyLinksLi.getAttribute("id_type").trim();
-                final String url = buyLinksLi.getAttribute("url").trim();
-                if ("asinproduct".equals(idType)) {
-                    book.amazonUrl = url;
-                } else if ("itunes".equals(idType)) {
-                    book.appleBooksUrl = url;
-                } else if ("googleplay".equals(idType)) {
-                    book.googlePlayUrl = url;
-                } else {
-                    getLogger().log(Level.WARNING, "Unknown purchase link for book `" + bookId + "`: id_type=`" + idType + "`, url=`" + url + "`.");
-                }
+                setPurchaseLink(book, buyLinksLi.getAttribute("id_type").trim(), buyLinksLi.getAttribute("url").trim());
             }
         } catch (NoSuchElementException e) {
             getLogger().log(Level.INFO, "Unable to find purchase links for book `" + bookId + "`. They may not exist.");
@@ -378,7 +516,6 @@ public class CommonSenseMedia extends SiteScraper {
         final WebElement contentMidMainDiv = centerWrapperDiv.findElement(By.className("panel-content-mid-main"));
 
         // Extract categories for this book.
-        final List<BookCategory> bookCategories = new ArrayList<>();
         final WebElement contentGridContainerDiv = contentMidMainDiv.findElement(By.className("pane-node-field-collection-content-grid"));
         final WebElement contentGridDiv = contentGridContainerDiv.findElement(By.className("field-name-field-collection-content-grid"));
         final WebElement contentGridItemsDiv = contentGridDiv.findElement(By.className("field-items"));
@@ -390,19 +527,7 @@ public class CommonSenseMedia extends SiteScraper {
                 final WebElement itemLeftDiv = contentGridItemDiv.findElement(By.className("field-collection-item-field-collection-content-grid"));
                 // Extract level.
                 final WebElement categoryRatingDiv = itemLeftDiv.findElement(By.className("field_content_grid_rating"));
-                final String categoryClasses = categoryRatingDiv.getAttribute("class");
-                final String categoryClassBefore = "content-grid-rating content-grid-";
-                final int categoryRatingIndex = categoryClasses.indexOf(categoryClassBefore);
-                if (categoryRatingIndex != -1) {
-                    final String categoryRatingString = categoryClasses.substring(categoryRatingIndex + categoryClassBefore.length(), categoryRatingIndex + categoryClassBefore.length() + 1);
-                    try {
-                        bookCategory.level = Integer.parseInt(categoryRatingString);
-                    } catch (NumberFormatException e) {
-                        getLogger().log(Level.WARNING, "Unable to convert category rating string `" + categoryRatingString + "` to a number.", e);
-                    }
-                } else {
-                    getLogger().log(Level.WARNING, "Unable to find `rating-` in category class attribute: `" + categoryClasses + "`.");
-                }
+                bookCategory.level = getCategoryLevel(categoryRatingDiv.getAttribute("class"));
                 // Extract ID.
                 final WebElement categoryTypeDiv = itemLeftDiv.findElement(By.className("field-name-field-content-grid-type"));
                 bookCategory.categoryId = categoryTypeDiv.getText().trim();
@@ -417,7 +542,7 @@ public class CommonSenseMedia extends SiteScraper {
                         getLogger().log(Level.WARNING, "Unable to find content explanation text for book:category `" + bookId + ":" + bookCategory.categoryId + "` with content rating " + bookCategory.level + ".");
                     }
                 }
-                bookCategories.add(bookCategory);
+                records.categories.add(bookCategory);
             } catch (NoSuchElementException e) {
                 getLogger().log(Level.WARNING, "Unable to find element in content grid `field-item` element.", e);
             }
@@ -443,16 +568,7 @@ public class CommonSenseMedia extends SiteScraper {
             final WebElement talkDiv = contentMidMainDiv.findElement(By.className("pane-node-field-family-topics"));
             final WebElement talkTextDiv = talkDiv.findElement(By.className("field-name-field-family-topics"));
             final WebElement talkTextListUl = talkTextDiv.findElement(By.className("textformatter-list"));
-            final StringBuilder talk = new StringBuilder();
-            final List<WebElement> talkTextLis = talkTextListUl.findElements(By.tagName("li"));
-            for (WebElement talkTextLi : talkTextLis) {
-                final String talkLiText = talkTextLi.getAttribute("textContent").trim();
-                if (talk.length() > 0) {
-                    talk.append("||");
-                }
-                talk.append(talkLiText);
-            }
-            book.talk = talk.toString();
+            book.talk = DriverUtils.getConcatenatedTexts(talkTextListUl, By.tagName("li"), "||");
         } catch (NoSuchElementException e) {
             // May not exist.
             // See `https://www.commonsensemedia.org/book-reviews/an-awesome-book-of-love`.
@@ -464,82 +580,245 @@ public class CommonSenseMedia extends SiteScraper {
         final WebElement detailsUl = detailsDiv.findElement(By.id("review-product-details-list"));
         final List<WebElement> detailsLis = detailsUl.findElements(By.xpath("./*"));
         for (WebElement detailsLi : detailsLis) {
-            final String detailsText = detailsLi.getAttribute("textContent").trim();
-            if (detailsText.startsWith("Author:")) {
-                book.authors = detailsText.substring("Author:".length()).trim();
-            } else if (detailsText.startsWith("Authors:")) {
-                book.authors = DriverUtils.getConcatenatedTexts(detailsLi, By.tagName("a"), "|");
-            } else if (detailsText.startsWith("Illustrator:")) {
-                book.illustrators = detailsText.substring("Illustrator:".length()).trim();
-            } else if (detailsText.startsWith("Illustrators:")) {
-                book.illustrators = DriverUtils.getConcatenatedTexts(detailsLi, By.tagName("a"), "|");
-            } else if (detailsText.startsWith("Genre:")) {
-                book.genre = detailsText.substring("Genre:".length()).toLowerCase().trim();
-            } else if (detailsText.startsWith("Topics:")) {
-                book.topics = DriverUtils.getConcatenatedTexts(detailsLi, By.tagName("a"), "|");
-            } else if (detailsText.startsWith("Book Type:") || detailsText.startsWith("Book type:")) {
-                book.type = detailsText.substring("Book Type:".length()).toLowerCase().trim();
-            } else if (detailsText.startsWith("Publisher:")) {
-                book.publishers = detailsText.substring("Publisher:".length()).trim();
-            } else if (detailsText.startsWith("Publishers:")) {
-                book.publishers = DriverUtils.getConcatenatedTexts(detailsLi, By.tagName("a"), "|");
-            } else if (detailsText.startsWith("Publication Date:") || detailsText.startsWith("Publication date:")) {
-                final String publicationDateString = detailsText.substring("Publication Date:".length()).trim();
-                try {
-                    final Date publicationDate = PUBLICATION_DATE_FORMAT_WEB.parse(publicationDateString);
-                    book.publicationDate = PUBLICATION_DATE_FORMAT_DATABASE.format(publicationDate);
-                } catch (ParseException e) {
-                    getLogger().log(Level.WARNING, "Unable to parse publication date: `" + publicationDateString + "`.", e);
-                }
-            } else if (detailsText.startsWith("Publisher's recommended age(s):")) {
-                book.publishersRecommendedAges = detailsText.substring("Publisher's recommended age(s):".length()).trim();
-            } else if (detailsText.startsWith("Number of pages:")) {
-                final String pagesString = detailsText.substring("Number of pages:".length()).trim();
-                try {
-                    book.pages = Integer.parseInt(pagesString);
-                } catch (NumberFormatException e) {
-                    getLogger().log(Level.WARNING, "Unable to parse number of pages: `" + pagesString + "`.", e);
+            setDetail(book, detailsLi.getAttribute("textContent").trim(), () -> DriverUtils.getConcatenatedTexts(detailsLi, By.tagName("a"), "|"));
+        }
+
+        // Set the time when this book was last updated.
+        book.lastUpdated = System.currentTimeMillis();
+        return records;
+    }
+
+    /**
+     * Extract every record from the source of a book page, without a browser.
+     *
+     * @param document Parsed source of the page.
+     * @param bookId   ID of the book.
+     * @return The records.
+     * @throws ElementNotFoundException When an expected element is missing from the page.
+     */
+    private BookRecords parseBook(Document document, String bookId) {
+        final BookRecords records = new BookRecords(bookId);
+        final Book book = records.book;
+        final Element contentDiv = DocumentUtils.findElement(document, "#content");
+
+        // Extract title, age, stars, and kicker from the upper section.
+        final Element topDiv = DocumentUtils.findElement(contentDiv, ".panel-content-top-wrapper .panel-content-top");
+        book.title = DocumentUtils.getText(DocumentUtils.findElement(topDiv, ".pane-node-title"));
+        final Element topMainDiv = DocumentUtils.findElement(topDiv, ".panel-content-top-main");
+        book.age = getAge(DocumentUtils.getText(DocumentUtils.findElement(topMainDiv, ".field-name-field-review-recommended-age")));
+        setStars(book, DocumentUtils.findElement(topMainDiv, ".pane-node-field-stars-rating .field_stars_rating").attr("class"));
+        book.kicker = DocumentUtils.getText(DocumentUtils.findElement(topMainDiv, ".pane-node-field-one-liner"));
+
+        // Extract purchase links.
+        final Element buyLinksWrapperDiv = DocumentUtils.findElement(topDiv, ".panel-content-top-right #buy-links-list .buy-links .buy-links-wrapper");
+        final Element buyLinksUl = buyLinksWrapperDiv.selectFirst("ul");
+        if (buyLinksUl != null) {
+            for (Element buyLinksLi : buyLinksUl.select("li")) {
+                setPurchaseLink(book, buyLinksLi.attr("id_type").trim(), buyLinksLi.attr("url").trim());
+            }
+        } else {
+            getLogger().log(Level.INFO, "Unable to find purchase links for book `" + bookId + "`. They may not exist.");
+        }
+
+        final Element contentMidMainDiv = DocumentUtils.findElement(contentDiv, ".center-wrapper .panel-content-mid-main");
+
+        // Extract categories for this book.
+        final Element contentGridItemsDiv = DocumentUtils.findElement(contentMidMainDiv, ".pane-node-field-collection-content-grid .field-name-field-collection-content-grid .field-items");
+        for (Element contentGridItemDiv : contentGridItemsDiv.children()) {
+            try {
+                final BookCategory bookCategory = new BookCategory();
+                bookCategory.bookId = bookId;
+                final Element itemLeftDiv = DocumentUtils.findElement(contentGridItemDiv, ".field-collection-item-field-collection-content-grid");
+                bookCategory.level = getCategoryLevel(DocumentUtils.findElement(itemLeftDiv, ".field_content_grid_rating").attr("class"));
+                bookCategory.categoryId = DocumentUtils.getText(DocumentUtils.findElement(itemLeftDiv, ".field-name-field-content-grid-type"));
+                if (bookCategory.level > 0) {
+                    final Element categoryExplanationP = itemLeftDiv.selectFirst(".field-name-field-content-grid-rating-text p");
+                    if (categoryExplanationP != null) {
+                        bookCategory.explanation = categoryExplanationP.wholeText().trim();
+                    } else {
+                        getLogger().log(Level.WARNING, "Unable to find content explanation text for book:category `" + bookId + ":" + bookCategory.categoryId + "` with content rating " + bookCategory.level + ".");
+                    }
                 }
-            } else if (detailsText.startsWith("Available on:")) {
-                // Do nothing.
-            } else if (detailsText.startsWith("Award:") || detailsText.startsWith("Awards:")) {
-                // Not useful.
-            } else {
-                getLogger().log(Level.WARNING, "Unknown book details prefix: `" + detailsText + "`.");
+                records.categories.add(bookCategory);
+            } catch (ElementNotFoundException e) {
+                getLogger().log(Level.WARNING, "Unable to find element in content grid `field-item` element.", e);
             }
         }
 
+        // Extract 'What Parents Need to Know', 'What's the Story?', and 'Is It Any Good?'.
+        book.know = DocumentUtils.findElement(contentMidMainDiv, ".pane-node-field-parents-need-to-know .field-name-field-parents-need-to-know").wholeText().trim();
+        book.story = DocumentUtils.findElement(contentMidMainDiv, ".pane-node-field-what-is-story .field-name-field-what-is-story").wholeText().trim();
+        book.good = DocumentUtils.findElement(contentMidMainDiv, ".pane-node-field-any-good .field-name-field-any-good").wholeText().trim();
+
+        // Extract 'Talk to Your Kids About...'.
+        final Element talkTextListUl = contentMidMainDiv.selectFirst(".pane-node-field-family-topics .field-name-field-family-topics .textformatter-list");
+        if (talkTextListUl != null) {
+            book.talk = DocumentUtils.getConcatenatedTexts(talkTextListUl, "li", "||");
+        } else {
+            getLogger().log(Level.WARNING, "Unable to find 'Talk to your kids about...` section for book `" + bookId + "`. It may not exist.");
+        }
+
+        // Extract authors, illustrators, genre, topics, type, publishers, publishing date, pages.
+        final Element detailsUl = DocumentUtils.findElement(contentMidMainDiv, ".pane-product-details #review-product-details-list");
+        for (Element detailsLi : detailsUl.children()) {
+            setDetail(book, detailsLi.wholeText().trim(), () -> DocumentUtils.getConcatenatedTexts(detailsLi, "a", "|"));
+        }
+
         // Set the time when this book was last updated.
         book.lastUpdated = System.currentTimeMillis();
+        return records;
+    }
 
-        // Add the book and the book categories to the database.
-        final int bookResult = databaseHelper.insert(book, force);
-        if (bookResult == 1) {
-            getLogger().log(Level.INFO, "Successfully scraped book `" + bookId + "`.");
+    private static String getAge(String ageText) {
+        final String trimmedAgeText = ageText.trim();
+        if (trimmedAgeText.startsWith("age ")) {
+            return trimmedAgeText.substring("age ".length()).trim();
+        }
+        return trimmedAgeText;
+    }
+
+    private void setStars(Book book, String starsClasses) {
+        final int starsRatingIndex = starsClasses.indexOf("rating-");
+        if (starsRatingIndex != -1) {
+            final String starsRatingString = starsClasses.substring(starsRatingIndex + "rating-".length(), starsRatingIndex + "rating-".length() + 1);
+            try {
+                book.stars = Integer.parseInt(starsRatingString);
+            } catch (NumberFormatException e) {
+                getLogger().log(Level.WARNING, "Unable to convert stars rating string `" + starsRatingString + "` to a number.", e);
+            }
         } else {
-            getLogger().log(Level.WARNING, "Unusual database response `" + bookResult + "` when inserting book `" + bookId + "`.");
+            getLogger().log(Level.WARNING, "Unable to find `rating-` in stars class attribute: `" + starsClasses + "`.");
         }
-        for (BookCategory bookCategory : bookCategories) {
-            final int categoryResult = databaseHelper.insert(bookCategory, force);
-            if (categoryResult == 1) {
-                getLogger().log(Level.INFO, "Successfully scraped book category `" + bookCategory.categoryId + "` for book `" + bookCategory.bookId + "`.");
-            } else {
-                getLogger().log(Level.WARNING, "Unusual database response `" + categoryResult + "` when inserting book category `" + bookId + ":" + bookCategory.categoryId + "`.");
+    }
+
+    private void setPurchaseLink(Book book, String idType, String url) {
+        if ("asinproduct".equals(idType)) {
+            book.amazonUrl = url;
+        } else if ("itunes".equals(idType)) {
+            book.appleBooksUrl = url;
+        } else if ("googleplay".equals(idType)) {
+            book.googlePlayUrl = url;
+        } else {
+            getLogger().log(Level.WARNING, "Unknown purchase link for book `" + book.id + "`: id_type=`" + idType + "`, url=`" + url + "`.");
+        }
+    }
+
+    private int getCategoryLevel(String categoryClasses) {
+        final String categoryClassBefore = "content-grid-rating content-grid-";
+        final int categoryRatingIndex = categoryClasses.indexOf(categoryClassBefore);
+        if (categoryRatingIndex != -1) {
+            final String categoryRatingString = categoryClasses.substring(categoryRatingIndex + categoryClassBefore.length(), categoryRatingIndex + categoryClassBefore.length() + 1);
+            try {
+                return Integer.parseInt(categoryRatingString);
+            } catch (NumberFormatException e) {
+                getLogger().log(Level.WARNING, "Unable to convert category rating string `" + categoryRatingString + "` to a number.", e);
             }
+        } else {
+            getLogger().log(Level.WARNING, "Unable to find `rating-` in category class attribute: `" + categoryClasses + "`.");
         }
+        return 0;
     }
 
-    private static List<BookScrapeInfo> getBookScrapeInfos(List<Book> books) {
-        final List<BookScrapeInfo> bookScrapeInfos = new ArrayList<>();
-        for (Book book : books) {
-            // Skip unattainable books.
-            if (book.amazonUrl == null) {
-                continue;
+    /**
+     * @param book        Book.
+     * @param detailsText Text content of one item in the product details list.
+     * @param linkTexts   Supplies the texts of the links in the item, joined by `|`.
+     */
+    private void setDetail(Book book, String detailsText, Supplier<String> linkTexts) {
+        if (detailsText.startsWith("Author:")) {
+            book.authors = detailsText.substring("Author:".length()).trim();
+        } else if (detailsText.startsWith("Authors:")) {
+            book.authors = linkTexts.get();
+        } else if (detailsText.startsWith("Illustrator:")) {
+            book.illustrators = detailsText.substring("Illustrator:".length()).trim();
+        } else if (detailsText.startsWith("Illustrators:")) {
+            book.illustrators = linkTexts.get();
+        } else if (detailsText.startsWith("Genre:")) {
+            book.genre = detailsText.substring("Genre:".length()).toLowerCase().trim();
+        } else if (detailsText.startsWith("Topics:")) {
+            book.topics = linkTexts.get();
+        } else if (detailsText.startsWith("Book Type:") || detailsText.startsWith("Book type:")) {
+            book.type = detailsText.substring("Book Type:".length()).toLowerCase().trim();
+        } else if (detailsText.startsWith("Publisher:")) {
+            book.publishers = detailsText.substring("Publisher:".length()).trim();
+        } else if (detailsText.startsWith("Publishers:")) {
+            book.publishers = linkTexts.get();
+        } else if (detailsText.startsWith("Publication Date:") || detailsText.startsWith("Publication date:")) {
+            final String publicationDateString = detailsText.substring("Publication Date:".length()).trim();
+            try {
+                book.publicationDate = formatPublicationDate(publicationDateString);
+            } catch (ParseException e) {
+                getLogger().log(Level.WARNING, "Unable to parse publication date: `" + publicationDateString + "`.", e);
+            }
+        } else if (detailsText.startsWith("Publisher's recommended age(s):")) {
+            book.publishersRecommendedAges = detailsText.substring("Publisher's recommended age(s):".length()).trim();
+        } else if (detailsText.startsWith("Number of pages:")) {
+            final String pagesString = detailsText.substring("Number of pages:".length()).trim();
+            try {
+                book.pages = Integer.parseInt(pagesString);
+            } catch (NumberFormatException e) {
+                getLogger().log(Level.WARNING, "Unable to parse number of pages: `" + pagesString + "`.", e);
+            }
+        } else if (detailsText.startsWith("Available on:")) {
+            // Do nothing.
+        } else if (detailsText.startsWith("Award:") || detailsText.startsWith("Awards:")) {
+            // Not useful.
+        } else {
+            getLogger().log(Level.WARNING, "Unknown book details prefix: `" + detailsText + "`.");
+        }
+    }
+
+    /**
+     * Convert a publication date from the web to the database format.
+     * Synchronized, since {@link DateFormat} is not thread-safe and books are scraped concurrently.
+     */
+    private static synchronized String formatPublicationDate(String publicationDateString) throws ParseException {
+        final Date publicationDate = PUBLICATION_DATE_FORMAT_WEB.parse(publicationDateString);
+        return PUBLICATION_DATE_FORMAT_DATABASE.format(publicationDate);
+    }
+
+    /**
+     * Performed by the write thread. Every book and every book category is inserted in one batch each.
+     */
+    private void saveBooks(DatabaseHelper databaseHelper, List<BookRecords> recordsList, RefreshPlan refreshPlan, boolean force) throws SQLException {
+        final List<Book> books = new ArrayList<>();
+        final List<BookCategory> categories = new ArrayList<>();
+        final List<String> refreshedBookIds = new ArrayList<>();
+        for (BookRecords records : recordsList) {
+            books.add(records.book);
+            categories.addAll(records.categories);
+            if (refreshPlan.contains(records.book.id)) {
+                refreshedBookIds.add(records.book.id);
+            }
+        }
+        // Refreshed books replace their old records.
+        databaseHelper.deleteCommonSenseMediaBookCategories(refreshedBookIds);
+        final boolean orReplace = force || !refreshedBookIds.isEmpty();
+        // Add the books and the book categories to the database.
+        final int[] bookResults;
+        if (orReplace) {
+            // Only rewrite books which have changed since they were saved.
+            bookResults = databaseHelper.upsertCommonSenseMediaBooks(books);
+        } else {
+            bookResults = databaseHelper.insertCommonSenseMediaBooks(books);
+        }
+        for (int i = 0; i < bookResults.length; i++) {
+            final String bookId = books.get(i).id;
+            if (bookResults[i] == 1) {
+                getLogger().log(Level.INFO, "Successfully scraped book `" + bookId + "`.");
+            } else {
+                getLogger().log(Level.WARNING, "Unusual database response `" + bookResults[i] + "` when inserting book `" + bookId + "`.");
+            }
+        }
+        final int[] categoryResults = databaseHelper.insertCommonSenseMediaBookCategories(categories, orReplace);
+        for (int i = 0; i < categoryResults.length; i++) {
+            final BookCategory bookCategory = categories.get(i);
+            if (categoryResults[i] == 1) {
+                getLogger().log(Level.INFO, "Successfully scraped book category `" + bookCategory.categoryId + "` for book `" + bookCategory.bookId + "`.");
+            } else {
+                getLogger().log(Level.WARNING, "Unusual database response `" + categoryResults[i] + "` when inserting book category `" + bookCategory.bookId + ":" + bookCategory.categoryId + "`.");
             }
-            final String[] urls = {book.amazonUrl};
-            bookScrapeInfos.add(new BookScrapeInfo(book.id, urls, book.asin));
         }
-        return bookScrapeInfos;
     }
 
     public static class AmazonKindleProvider implements Provider<AmazonKindle>, AmazonKindle.Listener {
@@ -554,13 +833,12 @@ public class CommonSenseMedia extends SiteScraper {
         public AmazonKindle newInstance(Logger logger) {
             databaseHelper = new DatabaseHelper(logger);
             databaseHelper.connectToContentsDatabase();
-            final List<Book> allBooks;
+            final List<BookScrapeInfo> bookScrapeInfos;
             try {
-                allBooks = databaseHelper.getCommonSenseMediaBooks();
+                bookScrapeInfos = databaseHelper.getCommonSenseMediaBookScrapeInfos();
             } catch (SQLException e) {
                 throw new RuntimeException("Unable to retrieve books.", e);
             }
-            final List<BookScrapeInfo> bookScrapeInfos = getBookScrapeInfos(allBooks);
             final AmazonKindle amazonKindle = new AmazonKindle(logger, bookScrapeInfos);
             amazonKindle.setListener(this);
             return amazonKindle;
@@ -3,13 +3,18 @@ package com.ericrobertbrewer.bookspider.sites.text;
 import com.ericrobertbrewer.bookspider.Folders;
 import com.ericrobertbrewer.bookspider.Launcher;
 import com.ericrobertbrewer.bookspider.sites.BookScrapeInfo;
+import com.ericrobertbrewer.bookspider.sites.ScrapeScheduler;
 import com.ericrobertbrewer.bookspider.sites.SiteScraper;
+import com.ericrobertbrewer.bookspider.sites.WorkQueue;
 import com.ericrobertbrewer.bookspider.sites.db.DatabaseHelper;
+import com.ericrobertbrewer.bookspider.sites.db.ExistenceIndex;
+import com.ericrobertbrewer.bookspider.sites.db.LruCache;
 import com.ericrobertbrewer.web.WebUtils;
 import com.ericrobertbrewer.web.dl.FileDownloadInfo;
 import com.ericrobertbrewer.web.dl.FileDownloader;
 import com.ericrobertbrewer.web.driver.DriverUtils;
 import com.ericrobertbrewer.web.driver.WebDriverFactory;
+import com.ericrobertbrewer.web.driver.WebDriverPool;
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
@@ -21,10 +26,12 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -85,16 +92,51 @@ public class AmazonKindle extends SiteScraper {
                 usage = "Maximum number of retries to download a single book before skipping",
                 aliases = {"-r"})
         int maxRetries = 1;
+
+        @Option(name = "-extraction",
+                usage = "How text is extracted from each page of the Kindle reader. Can be 'snapshot' (default), 'incremental', or 'traverse'",
+                aliases = {"-x"})
+        ExtractionMode extractionMode = ExtractionMode.SNAPSHOT;
+    }
+
+    /**
+     * How the visible content of each page of the Kindle reader is extracted.
+     */
+    public enum ExtractionMode {
+        /**
+         * Run one injected script per page, which walks the DOM within the browser and returns all visible content at once.
+         */
+        SNAPSHOT,
+        /**
+         * Like {@link #SNAPSHOT}, but a `MutationObserver` records which nodes are added or changed after each page turn,
+         * so that only those nodes (rather than the whole reader) are walked.
+         */
+        INCREMENTAL,
+        /**
+         * Walk the DOM element-by-element through the driver.
+         * This costs several round trips per element, but relies only on the driver's notion of visibility and text.
+         */
+        TRAVERSE
     }
 
     private static final String MODE_PREVIEW = "preview";
     private static final String MODE_BOOK = "book";
     private static final String MODE_BOTH = "both";
 
+    // Maximum times to wait for pages and elements.
+    private static final long PAGE_TIMEOUT_MILLIS = 15000L;
+    private static final long ELEMENT_TIMEOUT_MILLIS = 7500L;
+    // A page is considered settled once it has made no network requests for this long.
+    private static final long NETWORK_IDLE_MILLIS = 300L;
+    private static final long SETTLE_TIMEOUT_MILLIS = 3000L;
+
+    // Every Amazon book is cached up to this many, which is far more than have been scraped.
+    private static final int AMAZON_BOOK_CACHE_SIZE = 200000;
+
     final List<BookScrapeInfo> bookScrapeInfos;
     private final DatabaseHelper databaseHelper;
-    private final AtomicInteger scrapeThreadsRunning = new AtomicInteger(0);
-    private Dimension defaultDimension = null;
+    private volatile Dimension defaultDimension = null;
+    private ExtractionMode extractionMode = ExtractionMode.SNAPSHOT;
     private Dimension singleColumnDimension = new Dimension(719, 978);
 
     private Listener listener;
@@ -130,6 +172,8 @@ public class AmazonKindle extends SiteScraper {
             throw new IllegalArgumentException("Unrecognized argument for `mode`: " + options.mode + ".");
         }
 
+        extractionMode = options.extractionMode;
+
         final File paragraphsFolder = getParagraphsFolder(contentFolder);
         final File previewFolder = getPreviewFolder(contentFolder);
 
@@ -138,6 +182,21 @@ public class AmazonKindle extends SiteScraper {
         final File activePreviewFolder = getPreviewFolder(activeContentFolder);
         final File activeImagesFolder = getImagesFolder(activeContentFolder);
 
+        // Look up Amazon books in memory, rather than with one query per book.
+        databaseHelper.setAmazonBookCache(AMAZON_BOOK_CACHE_SIZE);
+        try {
+            final int count = databaseHelper.preloadAmazonBookCache();
+            getLogger().log(Level.INFO, "Cached " + count + " Amazon book(s).");
+        } catch (SQLException e) {
+            getLogger().log(Level.WARNING, "Unable to preload Amazon books; they will be cached as they are looked up.", e);
+        }
+
+        // Index the text of books which was extracted before the full-text index existed.
+        if (!MODE_PREVIEW.equalsIgnoreCase(options.mode)) {
+            indexBookTexts(paragraphsFolder);
+            indexBookTexts(activeParagraphsFolder);
+        }
+
         // Process the books in a random order.
         Collections.shuffle(bookScrapeInfos);
 
@@ -177,6 +236,46 @@ public class AmazonKindle extends SiteScraper {
         return new File(contentFolder, "paragraphs");
     }
 
+    private void indexBookTexts(File paragraphsFolder) {
+        final File[] files = paragraphsFolder.listFiles((dir, name) -> name.endsWith(".txt"));
+        if (files == null) {
+            return;
+        }
+        final ExistenceIndex indexedAsins;
+        try {
+            indexedAsins = ExistenceIndex.load(databaseHelper, DatabaseHelper.TABLE_AMAZON_BOOK_TEXT_FILES, "asin");
+        } catch (SQLException e) {
+            getLogger().log(Level.WARNING, "Unable to read which books have had their text indexed.", e);
+            return;
+        }
+        int count = 0;
+        for (File file : files) {
+            final String asin = file.getName().substring(0, file.getName().length() - ".txt".length());
+            if (!indexedAsins.contains(asin) && indexBookText(asin, file)) {
+                count++;
+            }
+        }
+        if (count > 0) {
+            getLogger().log(Level.INFO, "Indexed text of " + count + " book(s) in `" + paragraphsFolder.getPath() + "`.");
+        }
+    }
+
+    /**
+     * Add the text of a book to the full-text index of the database.
+     * The paragraphs file is still the copy of record, so failing to index it is not fatal.
+     * @return `true` if the text was newly indexed.
+     */
+    private boolean indexBookText(String asin, File paragraphsFile) {
+        try {
+            // Paragraphs files are written by `PrintStream` in the default charset.
+            final String text = new String(Files.readAllBytes(paragraphsFile.toPath()), Charset.defaultCharset());
+            return databaseHelper.indexAmazonBookText(asin, text);
+        } catch (IOException | SQLException e) {
+            getLogger().log(Level.WARNING, "Unable to index text for book asin=`" + asin + "`.", e);
+            return false;
+        }
+    }
+
     File getPreviewFolder(File contentFolder) {
         return new File(contentFolder, "preview");
     }
@@ -201,18 +300,25 @@ public class AmazonKindle extends SiteScraper {
                                      int maxRetries,
                                      Launcher.Callback callback) {
         // Create images queue.
-        final Queue<FileDownloadInfo> imagesQueue = new ConcurrentLinkedQueue<>();
+        final WorkQueue<FileDownloadInfo> imagesQueue = new WorkQueue<>();
+
+        // Launch every driver up front.
+        // Drivers are not recycled, since each one holds its own signed-in Amazon session.
+        final WebDriverPool driverPool = new WebDriverPool(factory, threads, getLogger());
+        driverPool.setMaxPageLoads(0);
+        driverPool.setMaxHeapBytes(0L);
+        driverPool.warmUp();
 
         // Start scrape threads.
-        for (int i = 0; i < threads; i++) {
-            final WebDriver driver = factory.newInstance();
-            if (defaultDimension == null) {
-                defaultDimension = driver.manage().window().getSize();
-            }
-            final int n = i;
-            final Thread scrapeThread = new Thread(() -> {
-                scrapeThreadsRunning.incrementAndGet();
-                // Start scraping.
+        final ScrapeScheduler scheduler = getScheduler();
+        final CompletableFuture<Void> scrapeStage = scheduler.submit("scrape", threads, () -> {
+            final WebDriver driver = driverPool.lease();
+            synchronized (this) {
+                if (defaultDimension == null) {
+                    defaultDimension = driver.manage().window().getSize();
+                }
+            }
+            try {
                 scrapeBooks(queue,
                         driver,
                         mode,
@@ -227,42 +333,36 @@ public class AmazonKindle extends SiteScraper {
                         firstName,
                         rememberMe,
                         maxRetries);
-                driver.quit();
-                getLogger().log(Level.INFO, "Quitting scrape thread " + n + ".");
-                // Finish.
-                if (scrapeThreadsRunning.decrementAndGet() == 0) {
-                    if (databaseHelper.isConnected()) {
-                        databaseHelper.close();
-                    }
-                }
-            }, "scrape-" + n);
-            scrapeThread.start();
-        }
+            } finally {
+                driverPool.release(driver);
+            }
+        });
+        // No more images will be queued once every scrape thread has finished.
+        scrapeStage.whenComplete((result, t) -> imagesQueue.close());
 
         // Start the image download thread.
         if (MODE_PREVIEW.equalsIgnoreCase(mode) || MODE_BOTH.equalsIgnoreCase(mode)) {
-            // Wait until all of the scrape threads have started.
-            while (scrapeThreadsRunning.get() < threads) {
-                DriverUtils.sleep(3000L);
-            }
-
             getLogger().log(Level.INFO, "Downloading images...");
             final FileDownloader fileDownloader = new FileDownloader(getLogger());
-            fileDownloader.downloadFilesThreaded(imagesQueue, false, new FileDownloader.Callback() {
-                @Override
-                public boolean doStayAlive() {
-                    return scrapeThreadsRunning.get() > 0;
-                }
-
-                @Override
-                public void onComplete() {
-                    getLogger().log(Level.INFO, "Finished downloading images.");
-                    if (!doStayAlive()) {
-                        callback.onComplete();
-                    }
+            scheduler.submit("download", 1, () -> {
+                FileDownloadInfo fileInfo;
+                while ((fileInfo = imagesQueue.take()) != null) {
+                    fileDownloader.download(fileInfo, false);
                 }
+                getLogger().log(Level.INFO, "Finished downloading images.");
             });
         }
+
+        // Finish.
+        scheduler.whenComplete(() -> {
+            driverPool.close();
+            final LruCache<String, Book> cache = databaseHelper.getAmazonBookCache();
+            getLogger().log(Level.INFO, "Amazon book cache: " + cache.getHitCount() + " hit(s), " + cache.getMissCount() + " miss(es).");
+            if (databaseHelper.isConnected()) {
+                databaseHelper.close();
+            }
+            callback.onComplete();
+        });
     }
 
     void scrapeBooks(Queue<BookScrapeInfo> queue,
@@ -273,15 +373,15 @@ public class AmazonKindle extends SiteScraper {
                      File previewFolder,
                      File activePreviewFolder,
                      File activeImagesFolder,
-                     Queue<FileDownloadInfo> imagesQueue,
+                     WorkQueue<FileDownloadInfo> imagesQueue,
                      String email,
                      String password,
                      String firstName,
                      boolean rememberMe,
                      int maxRetries) {
-        while (!queue.isEmpty()) {
-            // Pull the next book off of the queue.
-            final BookScrapeInfo bookScrapeInfo = queue.poll();
+        BookScrapeInfo bookScrapeInfo;
+        // Pull the next book off of the queue.
+        while ((bookScrapeInfo = queue.poll()) != null) {
 
             // Check if this book can be skipped.
             if (!shouldScrapeBook(bookScrapeInfo,
@@ -406,7 +506,7 @@ public class AmazonKindle extends SiteScraper {
                             File activeParagraphsFolder,
                             File activePreviewFolder,
                             File activeImagesFolder,
-                            Queue<FileDownloadInfo> imagesQueue,
+                            WorkQueue<FileDownloadInfo> imagesQueue,
                             String email,
                             String password,
                             String firstName,
@@ -414,7 +514,7 @@ public class AmazonKindle extends SiteScraper {
                             int maxRetries) throws IOException {
         // Navigate to the Amazon store page.
         driver.navigate().to(url);
-        DriverUtils.sleep(1500L);
+        waitForPageToSettle(driver);
 
         // Ensure that the page is valid.
         try {
@@ -547,7 +647,7 @@ public class AmazonKindle extends SiteScraper {
             book.isFreeTimeUnlimited = isFreeTimeUnlimited;
             book.price = price;
             book.lastUpdated = System.currentTimeMillis();
-            final int result = databaseHelper.insertOrReplace(book);
+            final int result = databaseHelper.upsert(book);
             if (result != 1) {
                 databaseHelper.getLogger().log(Level.WARNING, "Unexpected result `" + result + "` after updating Amazon book asin=`" + asin + "`.");
             }
@@ -639,6 +739,7 @@ public class AmazonKindle extends SiteScraper {
                 // Persist content once it has been totally collected.
                 getLogger().log(Level.INFO, "Writing text for book `" + bookId + "`, asin=`" + asin + "`.");
                 content.writeBook(activeParagraphsFile);
+                indexBookText(asin, activeParagraphsFile);
                 getLogger().log(Level.INFO, "Saving images for book `" + bookId + "`, asin=`" + asin + "`.");
                 content.saveImages(activeImagesBookFolder, bookId, asin);
                 getLogger().log(Level.INFO, "Successfully collected and saved content for book `" + bookId + "`, asin=`" + asin + "`.");
@@ -705,18 +806,20 @@ public class AmazonKindle extends SiteScraper {
         final WebElement centerSectionDiv = aPageDiv.findElement(By.id("authportal-center-section"));
         final WebElement mainSectionDiv = centerSectionDiv.findElement(By.id("authportal-main-section"));
         // Enter email, if necessary.
-        final WebElement emailInput;
-        try {
-            emailInput = DriverUtils.findElementWithRetries(mainSectionDiv, By.id("ap_email"), 5, 2500L);
+        // Either the email or the password text box will appear.
+        DriverUtils.waitUntil(mainSectionDiv, div -> !div.findElements(By.id("ap_email")).isEmpty() ||
+                !div.findElements(By.id("ap_password")).isEmpty(), ELEMENT_TIMEOUT_MILLIS);
+        final List<WebElement> emailInputs = mainSectionDiv.findElements(By.id("ap_email"));
+        if (!emailInputs.isEmpty()) {
+            final WebElement emailInput = emailInputs.get(0);
             emailInput.click();
             emailInput.sendKeys(email);
-        } catch (NoSuchElementException ignored) {
-            // Since we checked the "Keep me signed in" box, our email has already been entered.
         }
+        // Otherwise, since we checked the "Keep me signed in" box, our email has already been entered.
         try {
             final WebElement continueInput = driver.findElement(By.id("continue"));
             continueInput.click();
-            DriverUtils.sleep(2500L);
+            DriverUtils.waitForElement(driver, By.id("ap_password"), ELEMENT_TIMEOUT_MILLIS);
         } catch (NoSuchElementException ignored) {
             // When signing in for the second time, only the password text box will appear.
         }
@@ -732,13 +835,14 @@ public class AmazonKindle extends SiteScraper {
         // Submit.
         final WebElement signInSubmitInput = driver.findElement(By.id("signInSubmit"));
         signInSubmitInput.click();
-        DriverUtils.sleep(2500L);
+        DriverUtils.waitForStaleness(signInSubmitInput, PAGE_TIMEOUT_MILLIS);
+        DriverUtils.waitForDocumentReady(driver, PAGE_TIMEOUT_MILLIS);
         // Receive a OTP (one-time password) email.
         try {
             final WebElement continueInput = driver.findElement(By.id("continue"));
             continueInput.click();
             // Put a debugging breakpoint on the line below to manually enter the OTP.
-            DriverUtils.sleep(2500L);
+            DriverUtils.waitForStaleness(continueInput, PAGE_TIMEOUT_MILLIS);
         } catch (NoSuchElementException ignored) {
             // When signing in for the second time, only the password text box will appear.
         }
@@ -1006,8 +1110,9 @@ public class AmazonKindle extends SiteScraper {
         } else {
             borrowButton = dpContainerDiv.findElement(By.id("borrow-button"));
         }
+        DriverUtils.trackNetworkRequests(driver);
         borrowButton.click();
-        DriverUtils.sleep(2000L);
+        waitForPageToSettle(driver);
         final String url = driver.getCurrentUrl();
         if (url.startsWith(SIGN_IN_URL_START)) {
             signIn(driver, email, password, rememberMe);
@@ -1018,10 +1123,20 @@ public class AmazonKindle extends SiteScraper {
 
     private void ensureBorrowSucceeded(WebDriver driver) {
         // Check if the borrowing was successful.
+        waitForReadNowButton(driver, 5000L);
+    }
+
+    /**
+     * Wait for either the 'Read Now' or the 'Go to Kindle Library' button, which appear once access to a book has been granted.
+     *
+     * @throws NoSuchElementException When neither button appears within `timeoutMillis`.
+     */
+    private void waitForReadNowButton(WebDriver driver, long timeoutMillis) {
         try {
-            DriverUtils.findElementWithRetries(driver, By.id("dbs-readnow-bookstore-rw"), 2, 2500L);
-        } catch (NoSuchElementException e) {
-            DriverUtils.findElementWithRetries(driver, By.id("dbs-goto-bookstore-rw"), 2, 2500L);
+            DriverUtils.waitUntil(driver, d -> !d.findElements(By.id("dbs-readnow-bookstore-rw")).isEmpty() ||
+                    !d.findElements(By.id("dbs-goto-bookstore-rw")).isEmpty(), timeoutMillis);
+        } catch (TimeoutException e) {
+            throw new NoSuchElementException("Unable to find 'Read Now' or 'Go to Kindle Library' button.", e);
         }
     }
 
@@ -1075,11 +1190,7 @@ public class AmazonKindle extends SiteScraper {
         final WebElement checkoutButtonIdSpan = buyOneClickForm.findElement(By.id("checkoutButtonId"));
         checkoutButtonIdSpan.click();
         // Check if the purchase was successful.
-        try {
-            DriverUtils.findElementWithRetries(driver, By.id("dbs-readnow-bookstore-rw"), 3, 2500L);
-        } catch (NoSuchElementException e) {
-            DriverUtils.findElementWithRetries(driver, By.id("dbs-goto-bookstore-rw"), 3, 2500L);
-        }
+        waitForReadNowButton(driver, ELEMENT_TIMEOUT_MILLIS);
     }
 
     private void scrapeBookPreview(WebDriver driver,
@@ -1087,7 +1198,7 @@ public class AmazonKindle extends SiteScraper {
                                    String asin,
                                    File activePreviewFolder,
                                    File activeImagesBookFolder,
-                                   Queue<FileDownloadInfo> imagesQueue,
+                                   WorkQueue<FileDownloadInfo> imagesQueue,
                                    WebElement aPageDiv,
                                    WebElement dpContainerDiv) {
         // Check if the file already exists.
@@ -1098,7 +1209,7 @@ public class AmazonKindle extends SiteScraper {
         }
 
         // Allow elements to load.
-        DriverUtils.sleep(2000L);
+        waitForPageToSettle(driver);
 
         // Find the 'Look Inside' image.
         final WebElement lookInsideLogoImg = findLookInsideLogoImg(dpContainerDiv);
@@ -1124,7 +1235,11 @@ public class AmazonKindle extends SiteScraper {
                 imgBlockFrontImg.click();
             }
         }
-        DriverUtils.sleep(1500L);
+        try {
+            DriverUtils.waitForElement(aPageDiv, By.id("sitbLightbox"), ELEMENT_TIMEOUT_MILLIS);
+        } catch (TimeoutException ignored) {
+            // Handled below.
+        }
 
         // Work in the newly opened preview pane on the same page.
         final WebElement readerPlaceholderDiv = aPageDiv.findElement(By.id("sitbReaderPlaceholder"));
@@ -1145,8 +1260,9 @@ public class AmazonKindle extends SiteScraper {
         try {
             final WebElement readerModeTabKindleDiv = readerModeDiv.findElement(By.id("readerModeTabKindle"));
             try {
+                DriverUtils.trackNetworkRequests(driver);
                 readerModeTabKindleDiv.click();
-                DriverUtils.sleep(500L);
+                waitForPageToSettle(driver);
             } catch (ElementNotVisibleException e) {
                 // The 'Kindle Book' `div` may not be clickable.
                 getLogger().log(Level.INFO, "Unable to click 'Kindle Book' tab element for book `" + bookId + "`, asin=`" + asin + "`. Continuing.");
@@ -1159,15 +1275,12 @@ public class AmazonKindle extends SiteScraper {
         final WebElement readerZoomToolbarDiv = headerDiv.findElement(By.id("sitbReaderZoomToolbar"));
         final WebElement readerTitlebarZoomOutButton = readerZoomToolbarDiv.findElement(By.id("sitbReaderTitlebarZoomOut"));
         try {
+            DriverUtils.waitUntil(readerTitlebarZoomOutButton, WebElement::isDisplayed, 2000L);
+            DriverUtils.trackNetworkRequests(driver);
             readerTitlebarZoomOutButton.click();
-        } catch (ElementNotVisibleException e) {
-            DriverUtils.sleep(2000L);
-            try {
-                readerTitlebarZoomOutButton.click();
-            } catch (ElementNotVisibleException ignored) {
-            }
+        } catch (TimeoutException | ElementNotVisibleException ignored) {
         }
-        DriverUtils.sleep(1500L);
+        waitForPageToSettle(driver);
 
         // Find the preview reader element.
         final WebElement readerMiddleDiv = lightboxDiv.findElement(By.id("sitbReaderMiddle"));
@@ -1324,7 +1437,7 @@ public class AmazonKindle extends SiteScraper {
             out.close();
         }
 
-        private void downloadImages(File activeImagesBookFolder, Queue<FileDownloadInfo> imagesQueue, String bookId, String asin) {
+        private void downloadImages(File activeImagesBookFolder, WorkQueue<FileDownloadInfo> imagesQueue, String bookId, String asin) {
             if (imageUrls.size() > 0) {
                 if (!activeImagesBookFolder.exists() && !activeImagesBookFolder.mkdirs()) {
                     getLogger().log(Level.SEVERE, "Unable to create images book folder for book `" + bookId + "`, asin=`" + asin + "` while downloading images of preview. Skipping.");
@@ -1399,6 +1512,20 @@ public class AmazonKindle extends SiteScraper {
         driver.manage().window().setSize(isSingleColumn ? singleColumnDimension : defaultDimension);
     }
 
+    /**
+     * Wait for content which is loaded after the page itself, e.g., by a click.
+     * Never fails, since some pages never stop making requests (ads, metrics).
+     *
+     * @param driver The web driver, which may be switched to a frame.
+     */
+    private void waitForPageToSettle(WebDriver driver) {
+        try {
+            DriverUtils.waitForNetworkIdle(driver, NETWORK_IDLE_MILLIS, SETTLE_TIMEOUT_MILLIS);
+        } catch (TimeoutException e) {
+            getLogger().log(Level.FINE, "Page `" + driver.getCurrentUrl() + "` did not settle within " + SETTLE_TIMEOUT_MILLIS + " ms. Continuing.");
+        }
+    }
+
     private BookContent getBookContent(WebDriver driver,
                                        String bookId,
                                        String asin,
@@ -1409,7 +1536,7 @@ public class AmazonKindle extends SiteScraper {
         final BookContent content = new BookContent(this);
         // Catch exceptions the first few times...
         int retries = maxRetries;
-        final long baseWaitMillis = 10000L;
+        final long baseTimeoutMillis = 10000L;
         while (retries > 1) {
             try {
                 content.collect(driver,
@@ -1419,7 +1546,7 @@ public class AmazonKindle extends SiteScraper {
                         password,
                         rememberMe,
                         true,
-                        baseWaitMillis + (maxRetries - retries) * 5000L);
+                        baseTimeoutMillis + (maxRetries - retries) * 5000L);
                 if (!content.isEmpty()) {
                     return content;
                 }
@@ -1441,14 +1568,14 @@ public class AmazonKindle extends SiteScraper {
                 password,
                 rememberMe,
                 true,
-                baseWaitMillis + (maxRetries - 1) * 5000L);
+                baseTimeoutMillis + (maxRetries - 1) * 5000L);
         return content;
     }
 
     boolean returnKindleUnlimitedBook(WebDriver driver, String title, String email, String password, boolean rememberMe) {
         // Navigate to the 'Content and Devices' account page, showing only borrowed books.
         driver.navigate().to("https://www.amazon.com/hz/mycd/myx#/home/content/booksBorrows/dateDsc/");
-        DriverUtils.sleep(1000L);
+        DriverUtils.waitForDocumentReady(driver, PAGE_TIMEOUT_MILLIS);
         final WebElement aPageDiv = driver.findElement(By.id("a-page"));
         final WebElement ngAppDiv;
         try {
@@ -1464,8 +1591,8 @@ public class AmazonKindle extends SiteScraper {
             return false;
         }
         // Return the book with the given title by clicking [...] (Actions column) -> [Return book] -> [Yes]
-        final WebElement contentAppDiv = DriverUtils.findElementWithRetries(ngAppDiv, By.className("contentApp_myx"), 3, 2500L);
-        final WebElement contentContainerDiv = DriverUtils.findElementWithRetries(contentAppDiv, By.className("contentContainer_myx"), 4, 500L);
+        final WebElement contentAppDiv = DriverUtils.waitForElement(ngAppDiv, By.className("contentApp_myx"), ELEMENT_TIMEOUT_MILLIS);
+        final WebElement contentContainerDiv = DriverUtils.waitForElement(contentAppDiv, By.className("contentContainer_myx"), ELEMENT_TIMEOUT_MILLIS);
         final WebElement contentTableListDiv = contentContainerDiv.findElement(By.className("contentTableList_myx"));
         final WebElement gridUl = contentTableListDiv.findElement(By.tagName("ul"));
         final List<WebElement> lis = gridUl.findElements(By.tagName("li"));
@@ -1476,7 +1603,7 @@ public class AmazonKindle extends SiteScraper {
             if (title.equalsIgnoreCase(titleText)) {
                 final WebElement button = li.findElement(By.tagName("button"));
                 button.click(); // [...]
-                final WebElement returnLoanDiv = DriverUtils.findElementWithRetries(li, By.id("contentAction_returnLoan_myx"), 3, 2500L);
+                final WebElement returnLoanDiv = DriverUtils.waitForElement(li, By.id("contentAction_returnLoan_myx"), ELEMENT_TIMEOUT_MILLIS);
                 returnLoanDiv.click(); // [Return book]
                 final WebElement popoverModalDiv = driver.findElement(By.className("myx-popover-modal"));
                 final WebElement okButton = popoverModalDiv.findElement(By.id("dialogButton_ok_myx "));  // Apparently there is a space there!
@@ -1489,6 +1616,225 @@ public class AmazonKindle extends SiteScraper {
 
     private static class BookContent {
 
+        /**
+         * Mirrors {@link #addVisibleContent(WebDriver, WebElement)} within the browser.
+         * Each item has a `type` of `header` or `text` (with `id`, `nid`, `text`), `img` (with `src`, `dataurl`),
+         * `background` (with `value`, `nid`), or `frame` (with `element`, for frames whose document the script can not access).
+         */
+        private static final String SCRIPT_SNAPSHOT_FUNCTIONS =
+                "function isContentText(text) {" +
+                "  return text.length > 0 && /^.*[A-Za-z0-9].*$/.test(text);" +
+                "}" +
+                "function getVisibleText(el) {" +
+                "  return el.innerText.replace(/\\u00a0/g, ' ').trim();" +
+                "}" +
+                "function snapshot(el, items) {" +
+                "  var style = el.ownerDocument.defaultView.getComputedStyle(el);" +
+                "  if (style.visibility === 'hidden' || style.display === 'none') {" +
+                "    return;" +
+                "  }" +
+                "  var id = el.getAttribute('id');" +
+                "  var nid = el.getAttribute('data-nid');" +
+                "  var className = el.getAttribute('class');" +
+                "  var tag = el.tagName.toLowerCase();" +
+                "  var text;" +
+                "  if (el.getAttribute('align') === 'center' || /^h[1-7]$/.test(tag)) {" +
+                "    text = getVisibleText(el);" +
+                "    if (isContentText(text)) {" +
+                "      items.push({type: 'header', id: id, nid: nid, text: text});" +
+                "      return;" +
+                "    }" +
+                "  }" +
+                "  if (className !== null && className.indexOf('was-a-p') !== -1) {" +
+                "    text = getVisibleText(el);" +
+                "    if (isContentText(text)) {" +
+                "      items.push({type: 'text', id: id, nid: nid, text: text});" +
+                "      return;" +
+                "    }" +
+                "  }" +
+                "  if (tag === 'iframe') {" +
+                "    var frameDocument = null;" +
+                "    try {" +
+                "      frameDocument = el.contentDocument;" +
+                "    } catch (e) {" +
+                "    }" +
+                "    if (frameDocument && frameDocument.body) {" +
+                "      snapshotChildren(frameDocument.body, items);" +
+                "    } else {" +
+                "      items.push({type: 'frame', element: el});" +
+                "    }" +
+                "    return;" +
+                "  }" +
+                "  if (tag === 'img') {" +
+                "    items.push({type: 'img', src: el.src, dataurl: el.getAttribute('dataurl')});" +
+                "    return;" +
+                "  }" +
+                "  if (tag === 'div' && id === 'page-img') {" +
+                "    var backgroundImage = style.backgroundImage;" +
+                "    if (backgroundImage && backgroundImage !== 'none') {" +
+                "      items.push({type: 'background', value: backgroundImage, nid: nid});" +
+                "      return;" +
+                "    }" +
+                "  }" +
+                "  snapshotChildren(el, items);" +
+                "}" +
+                "function snapshotChildren(el, items) {" +
+                "  for (var i = 0; i < el.children.length; i++) {" +
+                "    snapshot(el.children[i], items);" +
+                "  }" +
+                "}";
+
+        private static final String SCRIPT_SNAPSHOT = SCRIPT_SNAPSHOT_FUNCTIONS +
+                "var items = [];" +
+                "if (arguments[1]) {" +
+                "  snapshotChildren(arguments[0], items);" +
+                "} else {" +
+                "  snapshot(arguments[0], items);" +
+                "}" +
+                "return items;";
+
+        /**
+         * Record every node which is added, and every element whose text, `style`, `class` or `src` changes,
+         * in this document and in every same-origin frame within it (including frames which are added or reloaded later).
+         * Idempotent for a given document.
+         */
+        private static final String SCRIPT_INSTALL_OBSERVER =
+                "if (window.__bookspiderCapture) {" +
+                "  return;" +
+                "}" +
+                "var state = {dirty: []};" +
+                "window.__bookspiderCapture = state;" +
+                "function observe(doc) {" +
+                "  new doc.defaultView.MutationObserver(function (mutations) {" +
+                "    for (var i = 0; i < mutations.length; i++) {" +
+                "      var mutation = mutations[i];" +
+                "      if (mutation.type === 'childList') {" +
+                "        for (var j = 0; j < mutation.addedNodes.length; j++) {" +
+                "          var node = mutation.addedNodes[j];" +
+                "          state.dirty.push(node);" +
+                "          if (node.nodeType === 1) {" +
+                "            watchFrames(node);" +
+                "          }" +
+                "        }" +
+                "      } else {" +
+                "        state.dirty.push(mutation.target);" +
+                "      }" +
+                "    }" +
+                "  }).observe(doc, {childList: true, subtree: true, characterData: true, attributes: true, attributeFilter: ['style', 'class', 'src']});" +
+                "  watchFrames(doc);" +
+                "}" +
+                "function watchFrames(node) {" +
+                "  var frames = node.tagName === 'IFRAME' ? [node] : node.getElementsByTagName('iframe');" +
+                "  for (var i = 0; i < frames.length; i++) {" +
+                "    watchFrame(frames[i]);" +
+                "  }" +
+                "}" +
+                "function watchFrame(frame) {" +
+                "  if (frame.__bookspiderWatched) {" +
+                "    return;" +
+                "  }" +
+                "  frame.__bookspiderWatched = true;" +
+                "  var attach = function () {" +
+                "    try {" +
+                "      var doc = frame.contentDocument;" +
+                "      if (doc && !doc.__bookspiderObserved) {" +
+                "        doc.__bookspiderObserved = true;" +
+                "        observe(doc);" +
+                "        state.dirty.push(frame);" +
+                "      }" +
+                "    } catch (e) {" +
+                "    }" +
+                "  };" +
+                "  frame.addEventListener('load', attach);" +
+                "  attach();" +
+                "}" +
+                "observe(document);";
+
+        /**
+         * Walk only the elements recorded by {@link #SCRIPT_INSTALL_OBSERVER} since the last drain, then forget them.
+         * Each recorded node is widened to its nearest header or paragraph ancestor, and nested recorded elements are
+         * walked only once (through their outermost recorded ancestor).
+         * Returns `null` if no observer has been installed in this document. Otherwise, returns items in the same format
+         * as {@link #SCRIPT_SNAPSHOT}, with `frame` items for every frame beneath `arguments[0]` which can not be observed.
+         */
+        private static final String SCRIPT_DRAIN_CHANGES = SCRIPT_SNAPSHOT_FUNCTIONS +
+                "var state = window.__bookspiderCapture;" +
+                "if (!state) {" +
+                "  return null;" +
+                "}" +
+                "var root = arguments[0];" +
+                "var dirty = state.dirty;" +
+                "state.dirty = [];" +
+                "function getParent(el) {" +
+                "  if (el.parentElement) {" +
+                "    return el.parentElement;" +
+                "  }" +
+                "  try {" +
+                "    return el.ownerDocument.defaultView.frameElement;" +
+                "  } catch (e) {" +
+                "    return null;" +
+                "  }" +
+                "}" +
+                "function isContentElement(el) {" +
+                "  var className = el.getAttribute('class');" +
+                "  return el.getAttribute('align') === 'center' ||" +
+                "      /^h[1-7]$/.test(el.tagName.toLowerCase()) ||" +
+                "      (className !== null && className.indexOf('was-a-p') !== -1);" +
+                "}" +
+                "function isWithinRoot(el) {" +
+                "  for (var e = el; e; e = getParent(e)) {" +
+                "    if (e === root) {" +
+                "      return true;" +
+                "    }" +
+                "  }" +
+                "  return false;" +
+                "}" +
+                "function isDisplayed(el) {" +
+                "  for (var e = getParent(el); e && e !== root; e = getParent(e)) {" +
+                "    if (e.ownerDocument.defaultView.getComputedStyle(e).display === 'none') {" +
+                "      return false;" +
+                "    }" +
+                "  }" +
+                "  return true;" +
+                "}" +
+                "var targets = [];" +
+                "for (var i = 0; i < dirty.length; i++) {" +
+                "  var el = dirty[i].nodeType === 1 ? dirty[i] : dirty[i].parentElement;" +
+                "  if (!el || !el.isConnected || !isWithinRoot(el)) {" +
+                "    continue;" +
+                "  }" +
+                "  for (var e = el.parentElement; e && e !== root; e = e.parentElement) {" +
+                "    if (isContentElement(e)) {" +
+                "      el = e;" +
+                "    }" +
+                "  }" +
+                "  if (targets.indexOf(el) === -1 && isDisplayed(el)) {" +
+                "    targets.push(el);" +
+                "  }" +
+                "}" +
+                "var items = [];" +
+                "for (var i = 0; i < targets.length; i++) {" +
+                "  var isNested = false;" +
+                "  for (var e = getParent(targets[i]); e && !isNested; e = getParent(e)) {" +
+                "    isNested = targets.indexOf(e) !== -1;" +
+                "  }" +
+                "  if (!isNested) {" +
+                "    snapshot(targets[i], items);" +
+                "  }" +
+                "}" +
+                "var frames = root.getElementsByTagName('iframe');" +
+                "for (var i = 0; i < frames.length; i++) {" +
+                "  var isAccessible = false;" +
+                "  try {" +
+                "    isAccessible = !!frames[i].contentDocument;" +
+                "  } catch (e) {" +
+                "  }" +
+                "  if (!isAccessible && isDisplayed(frames[i])) {" +
+                "    items.push({type: 'frame', element: frames[i]});" +
+                "  }" +
+                "}" +
+                "return items;";
+
         private final AmazonKindle kindle;
         private final Map<String, String> idToHeader = new HashMap<>();
         private final Map<String, String> idToText = new HashMap<>();
@@ -1516,15 +1862,14 @@ public class AmazonKindle extends SiteScraper {
                      String password,
                      boolean rememberMe,
                      boolean fromStart,
-                     long waitMillis) {
+                     long timeoutMillis) {
             driver.navigate().to("https://read.amazon.com/?asin=" + asin);
-            DriverUtils.sleep(waitMillis);
 
             // Access the main reader container.
             final WebElement kindleReaderContainerDiv;
             try {
-                kindleReaderContainerDiv = DriverUtils.findElementWithRetries(driver, By.id("KindleReaderContainer"), 7, 2500L);
-            } catch (NoSuchElementException e) {
+                kindleReaderContainerDiv = DriverUtils.waitForElement(driver, By.id("KindleReaderContainer"), timeoutMillis);
+            } catch (TimeoutException e) {
                 getLogger().log(Level.WARNING, "Unable to find `KindleReaderContainer` for book `" + bookId + "`, asin=`" + asin + "`.");
                 return;
             }
@@ -1532,13 +1877,24 @@ public class AmazonKindle extends SiteScraper {
             // Enter the first `iframe`.
             final WebElement kindleReaderFrame;
             try {
-                kindleReaderFrame = DriverUtils.findElementWithRetries(kindleReaderContainerDiv, By.id("KindleReaderIFrame"), 9, 2500L);
-            } catch (NoSuchElementException e) {
+                kindleReaderFrame = DriverUtils.waitForElement(kindleReaderContainerDiv, By.id("KindleReaderIFrame"), timeoutMillis);
+            } catch (TimeoutException e) {
                 getLogger().log(Level.WARNING, "Unable to find `KindleReaderIFrame` for book `" + bookId + "`, asin=`" + asin + "`.");
                 return;
             }
             final WebDriver readerDriver = driver.switchTo().frame(kindleReaderFrame);
 
+            // Find the main container within the `iframe`.
+            final WebElement bookContainerDiv;
+            try {
+                bookContainerDiv = DriverUtils.waitForElement(readerDriver, By.id("kindleReader_book_container"), timeoutMillis);
+            } catch (TimeoutException e) {
+                getLogger().log(Level.WARNING, "Unable to find `kindleReader_book_container` for book `" + bookId + "`, asin=`" + asin + "`.");
+                return;
+            }
+            // Allow the reader to load the book and open any dialogs.
+            kindle.waitForPageToSettle(readerDriver);
+
             // Close the 'Sync Position' dialog, if it's open.
             try {
                 final WebElement syncPositionDiv = readerDriver.findElement(By.id("kindleReader_dialog_syncPosition"));
@@ -1548,9 +1904,6 @@ public class AmazonKindle extends SiteScraper {
             } catch (WebDriverException ignored) {
             }
 
-            // Find the main container within the `iframe`.
-            final WebElement bookContainerDiv = readerDriver.findElement(By.id("kindleReader_book_container"));
-
             // Hide the app bars, if they are visible.
             try {
                 final WebElement appBarOverlayDiv = bookContainerDiv.findElement(By.id("appBarOverlay"));
@@ -1567,8 +1920,8 @@ public class AmazonKindle extends SiteScraper {
             // Find the navigation arrows.
             final WebElement touchLayerDiv;
             try {
-                touchLayerDiv = DriverUtils.findElementWithRetries(bookContainerDiv, By.id("kindleReader_touchLayer"), 3, 2500L);
-            } catch (NoSuchElementException e) {
+                touchLayerDiv = DriverUtils.waitForElement(bookContainerDiv, By.id("kindleReader_touchLayer"), ELEMENT_TIMEOUT_MILLIS);
+            } catch (TimeoutException e) {
                 getLogger().log(Level.WARNING, "Unable to find `kindleReader_touchLayer` for book `" + bookId + "`, asin=`" + asin + "`.");
                 return;
             }
@@ -1594,13 +1947,23 @@ public class AmazonKindle extends SiteScraper {
                 try {
                     final WebElement contentDiv = centerDiv.findElement(By.id("kindleReader_content"));
                     // Extract the visible text on this page.
-                    addVisibleContent(readerDriver, contentDiv);
+                    if (kindle.extractionMode == ExtractionMode.SNAPSHOT) {
+                        addSnapshotContent(readerDriver, contentDiv, false);
+                    } else if (kindle.extractionMode == ExtractionMode.INCREMENTAL) {
+                        addIncrementalContent(readerDriver, contentDiv);
+                    } else {
+                        addVisibleContent(readerDriver, contentDiv);
+                    }
                     // Attempt to turn the page right.
                     WebElement pageTurnAreaRightDiv = sideMarginDiv.findElement(By.id("kindleReader_pageTurnAreaRight"));
                     String className = pageTurnAreaRightDiv.getAttribute("class");
                     if (!className.contains("pageArrow")) {
                         // Allow right arrow to load, especially after re-logging in.
-                        DriverUtils.sleep(5000L);
+                        try {
+                            DriverUtils.waitUntil(sideMarginDiv, div -> div.findElement(By.id("kindleReader_pageTurnAreaRight"))
+                                    .getAttribute("class").contains("pageArrow"), 5000L);
+                        } catch (TimeoutException ignored) {
+                        }
                         pageTurnAreaRightDiv = sideMarginDiv.findElement(By.id("kindleReader_pageTurnAreaRight"));
                         className = pageTurnAreaRightDiv.getAttribute("class");
                         if (!className.contains("pageArrow")) {
@@ -1622,7 +1985,7 @@ public class AmazonKindle extends SiteScraper {
                         // If so, sign in again and continue collecting content from the same position in the reader.
                         kindle.signIn(driver, email, password, rememberMe);
                         getLogger().log(Level.INFO, "Logged in again during collection of book `" + bookId + "`, asin=`" + asin + "`.");
-                        collect(driver, bookId, asin, email, password, rememberMe, false, waitMillis);
+                        collect(driver, bookId, asin, email, password, rememberMe, false, timeoutMillis);
                     }
                     return;
                 }
@@ -1652,11 +2015,8 @@ public class AmazonKindle extends SiteScraper {
 
             // Check whether this textual element has already been scraped.
             final String id = element.getAttribute("id");
-            if (idToHeader.containsKey(id) || idToText.containsKey(id)) {
-                return;
-            }
             final String dataNid = element.getAttribute("data-nid");
-            if (idToHeader.containsKey(dataNid) || idToText.containsKey(dataNid)) {
+            if (hasCollected(id) || hasCollected(dataNid)) {
                 return;
             }
 
@@ -1677,12 +2037,8 @@ public class AmazonKindle extends SiteScraper {
                     tag.equals("h6") ||
                     tag.equals("h7")) {
                 final String visibleText = element.getText().trim();
-                if (!visibleText.isEmpty() && visibleText.matches("^.*[A-Za-z0-9].*$")) {
-                    if (isStandardId(id)) {
-                        idToHeader.put(id, visibleText);
-                    } else if (isStandardId(dataNid)) {
-                        idToHeader.put(dataNid, visibleText);
-                    }
+                if (isContentText(visibleText)) {
+                    putText(idToHeader, id, dataNid, visibleText);
                     return;
                 }
             }
@@ -1690,12 +2046,8 @@ public class AmazonKindle extends SiteScraper {
             // Find paragraphs.
             if (className != null && className.contains("was-a-p")) {
                 final String visibleText = element.getText().trim();
-                if (!visibleText.isEmpty() && visibleText.matches("^.*[A-Za-z0-9].*$")) {
-                    if (isStandardId(id)) {
-                        idToText.put(id, visibleText);
-                    } else if (isStandardId(dataNid)) {
-                        idToText.put(dataNid, visibleText);
-                    }
+                if (isContentText(visibleText)) {
+                    putText(idToText, id, dataNid, visibleText);
                     return;
                 }
             }
@@ -1716,40 +2068,14 @@ public class AmazonKindle extends SiteScraper {
                 return;
             } else if ("img".equals(tag)) {
                 // TODO: Capture ALL images - not just ones that are leaf elements!
-                final String src = element.getAttribute("src");
-                final String url;
-                final String dataurl = element.getAttribute("dataurl");
-                if (dataurl != null) {
-                    // For primarily textual books.
-                    url = WebUtils.getLastUrlComponent(dataurl).trim();
-                } else {
-                    // For illustrative (children's) books - especially cover page images.
-                    url = getImageUrlFromSrc(src);
-                }
-                if (!imgUrlToSrc.containsKey(url)) {
-                    imgUrlToSrc.put(url, src);
-                }
+                putImage(element.getAttribute("src"), element.getAttribute("dataurl"));
                 return;
             } else if ("div".equals(tag)) {
                 if ("page-img".equals(id)) {
                     // Capture background images of <div> elements, common in illustrative (children's) books.
                     final String backgroundImageValue = element.getCssValue("background-image");
-                    if (backgroundImageValue != null && !backgroundImageValue.isEmpty() && !"none".equals(backgroundImageValue)) {
-                        final String src;
-                        if (backgroundImageValue.startsWith("url(\"") && backgroundImageValue.endsWith("\")")) {
-                            src = backgroundImageValue.substring(5, backgroundImageValue.length() - 2).trim();
-                        } else {
-                            src = backgroundImageValue.trim();
-                        }
-                        final String url;
-                        if (dataNid != null) {
-                            url = dataNid.replaceAll(":", "_").trim();
-                        } else {
-                            url = getImageUrlFromSrc(src);
-                        }
-                        if (!imgUrlToSrc.containsKey(url)) {
-                            imgUrlToSrc.put(url, src);
-                        }
+                    if (isBackgroundImage(backgroundImageValue)) {
+                        putBackgroundImage(backgroundImageValue, dataNid);
                         return;
                     }
                 }
@@ -1773,6 +2099,123 @@ public class AmazonKindle extends SiteScraper {
             }
         }
 
+        /**
+         * Equivalent to {@link #addVisibleContent(WebDriver, WebElement)}, but walks the DOM within the browser,
+         * costing one round trip per page (plus one for each frame which can not be entered by script).
+         * Visibility and text are computed by the browser's `getComputedStyle` and `innerText`,
+         * which closely match the driver's own notion of each.
+         *
+         * @param driver       The driver, which should already be switched to the frame which contains `element`.
+         * @param element      The root of the content.
+         * @param childrenOnly When `true`, `element` itself is not considered; only its descendants are.
+         */
+        private void addSnapshotContent(WebDriver driver, WebElement element, boolean childrenOnly) {
+            final Object result = ((JavascriptExecutor) driver).executeScript(SCRIPT_SNAPSHOT, element, childrenOnly);
+            if (!(result instanceof List)) {
+                getLogger().log(Level.WARNING, "Unexpected result of content snapshot: `" + result + "`.");
+                return;
+            }
+            putSnapshotItems(driver, (List<?>) result);
+        }
+
+        /**
+         * Collect only the content which has been added or changed since the last call,
+         * as recorded by a `MutationObserver` in the reader frame and in each of its nested frames.
+         * The first call (or the first call after the reader reloads) installs the observers, then falls back to
+         * {@link #addSnapshotContent(WebDriver, WebElement, boolean)}.
+         *
+         * @param driver  The driver, which should already be switched to the reader frame.
+         * @param element The root of the content.
+         */
+        private void addIncrementalContent(WebDriver driver, WebElement element) {
+            final JavascriptExecutor executor = (JavascriptExecutor) driver;
+            final Object result = executor.executeScript(SCRIPT_DRAIN_CHANGES, element);
+            if (result == null) {
+                // Observe before taking the snapshot, so that no change is missed in between.
+                executor.executeScript(SCRIPT_INSTALL_OBSERVER);
+                addSnapshotContent(driver, element, false);
+                return;
+            }
+            if (!(result instanceof List)) {
+                getLogger().log(Level.WARNING, "Unexpected result of content changes: `" + result + "`.");
+                return;
+            }
+            putSnapshotItems(driver, (List<?>) result);
+        }
+
+        private void putSnapshotItems(WebDriver driver, List<?> items) {
+            for (Object itemObject : items) {
+                final Map<?, ?> item = (Map<?, ?>) itemObject;
+                final String type = (String) item.get("type");
+                if ("header".equals(type) || "text".equals(type)) {
+                    final String id = (String) item.get("id");
+                    final String dataNid = (String) item.get("nid");
+                    if (hasCollected(id) || hasCollected(dataNid)) {
+                        continue;
+                    }
+                    putText("header".equals(type) ? idToHeader : idToText, id, dataNid, (String) item.get("text"));
+                } else if ("img".equals(type)) {
+                    putImage((String) item.get("src"), (String) item.get("dataurl"));
+                } else if ("background".equals(type)) {
+                    putBackgroundImage((String) item.get("value"), (String) item.get("nid"));
+                } else if ("frame".equals(type)) {
+                    // The frame's document is not accessible to the script, so enter it through the driver.
+                    final WebDriver frameDriver = driver.switchTo().frame((WebElement) item.get("element"));
+                    final WebElement body = frameDriver.findElement(By.tagName("body"));
+                    addSnapshotContent(frameDriver, body, true);
+                    frameDriver.switchTo().parentFrame();
+                }
+            }
+        }
+
+        private boolean hasCollected(String id) {
+            return idToHeader.containsKey(id) || idToText.containsKey(id);
+        }
+
+        private static boolean isContentText(String text) {
+            return !text.isEmpty() && text.matches("^.*[A-Za-z0-9].*$");
+        }
+
+        private static void putText(Map<String, String> idToText, String id, String dataNid, String text) {
+            if (isStandardId(id)) {
+                idToText.put(id, text);
+            } else if (isStandardId(dataNid)) {
+                idToText.put(dataNid, text);
+            }
+        }
+
+        private void putImage(String src, String dataurl) {
+            final String url;
+            if (dataurl != null) {
+                // For primarily textual books.
+                url = WebUtils.getLastUrlComponent(dataurl).trim();
+            } else {
+                // For illustrative (children's) books - especially cover page images.
+                url = getImageUrlFromSrc(src);
+            }
+            imgUrlToSrc.putIfAbsent(url, src);
+        }
+
+        private static boolean isBackgroundImage(String backgroundImageValue) {
+            return backgroundImageValue != null && !backgroundImageValue.isEmpty() && !"none".equals(backgroundImageValue);
+        }
+
+        private void putBackgroundImage(String backgroundImageValue, String dataNid) {
+            final String src;
+            if (backgroundImageValue.startsWith("url(\"") && backgroundImageValue.endsWith("\")")) {
+                src = backgroundImageValue.substring(5, backgroundImageValue.length() - 2).trim();
+            } else {
+                src = backgroundImageValue.trim();
+            }
+            final String url;
+            if (dataNid != null) {
+                url = dataNid.replaceAll(":", "_").trim();
+            } else {
+                url = getImageUrlFromSrc(src);
+            }
+            imgUrlToSrc.putIfAbsent(url, src);
+        }
+
         private static boolean isStandardId(String id) {
             return id != null && id.contains(":");
         }
@@ -5,6 +5,7 @@ import com.ericrobertbrewer.bookspider.Launcher;
 import com.ericrobertbrewer.bookspider.sites.SiteScraper;
 import com.ericrobertbrewer.web.driver.DriverUtils;
 import com.ericrobertbrewer.web.driver.WebDriverFactory;
+import com.ericrobertbrewer.web.driver.WebDriverPool;
 import org.openqa.selenium.By;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
@@ -40,6 +41,9 @@ public class NewYorkTimesFirstChapters extends SiteScraper {
         });
     }
 
+    // Recycle the single browser sooner than the pool would by default.
+    private static final int MAX_PAGE_LOADS_PER_DRIVER = 200;
+
     private NewYorkTimesFirstChapters(Logger logger) {
         super(logger);
     }
@@ -75,12 +79,23 @@ public class NewYorkTimesFirstChapters extends SiteScraper {
             force = false;
         }
         getLogger().log(Level.INFO, "Scraping New York Times first chapters.");
-        final WebDriver driver = factory.newInstance();
-        // Set timeout for obsolete API call (to
-        // `http://barnesandnoble.bfast.com/booklink/serve?sourceid=4773&categoryid=nytsearch`).
-        driver.manage().timeouts().setScriptTimeout(1000L, TimeUnit.MILLISECONDS);
-//        driver.manage().timeouts().implicitlyWait(1000L, TimeUnit.MILLISECONDS);
-//        driver.manage().timeouts().pageLoadTimeout(1000L, TimeUnit.MILLISECONDS);
+        final WebDriverPool driverPool = new WebDriverPool(() -> {
+            final WebDriver driver = factory.newInstance();
+            // Set timeout for obsolete API call (to
+            // `http://barnesandnoble.bfast.com/booklink/serve?sourceid=4773&categoryid=nytsearch`).
+            driver.manage().timeouts().setScriptTimeout(1000L, TimeUnit.MILLISECONDS);
+//            driver.manage().timeouts().implicitlyWait(1000L, TimeUnit.MILLISECONDS);
+//            driver.manage().timeouts().pageLoadTimeout(1000L, TimeUnit.MILLISECONDS);
+            return driver;
+        }, 1, getLogger());
+        driverPool.setMaxPageLoads(MAX_PAGE_LOADS_PER_DRIVER);
+        final WebDriver driver;
+        try {
+            driver = driverPool.lease();
+        } catch (InterruptedException e) {
+            getLogger().log(Level.SEVERE, "Interrupted while launching web driver.", e);
+            return;
+        }
         // Navigate to home page.
         driver.navigate().to("https://archive.nytimes.com/www.nytimes.com/books/first/first-index.html");
         // Scroll the page.
@@ -131,11 +146,22 @@ public class NewYorkTimesFirstChapters extends SiteScraper {
                 getLogger().log(Level.INFO, "Anchor <a> element does not exist in list item <li> element.", e);
             }
         }
+        driverPool.release(driver);
         for (BookItem bookItem : bookItems) {
-            scrapeBook(driver, contentFolder, bookItem, contentsWriter, force);
+            try {
+                final WebDriver bookDriver = driverPool.lease();
+                try {
+                    scrapeBook(bookDriver, contentFolder, bookItem, contentsWriter, force);
+                } finally {
+                    driverPool.release(bookDriver);
+                }
+            } catch (InterruptedException e) {
+                getLogger().log(Level.SEVERE, "Interrupted while waiting for web driver.", e);
+                break;
+            }
         }
         contentsWriter.close();
-        driver.quit();
+        driverPool.close();
         callback.onComplete();
     }
 
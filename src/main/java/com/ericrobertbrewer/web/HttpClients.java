@@ -0,0 +1,37 @@
+package com.ericrobertbrewer.web;
+
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+
+import java.util.concurrent.TimeUnit;
+
+public final class HttpClients {
+
+    // Keep enough idle connections around for many concurrent fetches to the same host.
+    private static final int MAX_IDLE_CONNECTIONS = 64;
+
+    private static OkHttpClient shared = null;
+
+    /**
+     * Get the client which is shared by every downloader and fetcher in this process.
+     * Sharing one client lets concurrent requests reuse its connection pool and thread pool,
+     * so it should be preferred to building a new client.
+     * Customize it with {@link OkHttpClient#newBuilder()}, which shares the same pools.
+     *
+     * @return The shared client.
+     */
+    public static synchronized OkHttpClient getShared() {
+        if (shared == null) {
+            shared = new OkHttpClient.Builder()
+                    .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, 5, TimeUnit.MINUTES))
+                    .connectTimeout(10, TimeUnit.SECONDS)
+                    .writeTimeout(10, TimeUnit.SECONDS)
+                    .readTimeout(30, TimeUnit.SECONDS)
+                    .build();
+        }
+        return shared;
+    }
+
+    private HttpClients() {
+    }
+}
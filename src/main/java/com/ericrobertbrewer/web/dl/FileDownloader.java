@@ -1,5 +1,6 @@
 package com.ericrobertbrewer.web.dl;
 
+import com.ericrobertbrewer.web.HttpClients;
 import com.ericrobertbrewer.web.WebUtils;
 import okhttp3.Call;
 import okhttp3.OkHttpClient;
@@ -7,83 +8,53 @@ import okhttp3.Request;
 import okhttp3.Response;
 
 import java.io.*;
-import java.util.Queue;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class FileDownloader {
 
-    public interface Callback {
-        boolean doStayAlive();
-
-        void onComplete();
-    }
-
     private final Logger logger;
-    public final AtomicBoolean isDownloadingFiles = new AtomicBoolean(false);
+    private final OkHttpClient client;
 
     public FileDownloader(Logger logger) {
         this.logger = logger;
+        client = HttpClients.getShared();
     }
 
-    public void downloadFilesThreaded(Queue<FileDownloadInfo> filesQueue, boolean force, Callback callback) {
-        final Thread thread = new Thread(() -> {
-            final OkHttpClient client = new OkHttpClient.Builder()
-                    .connectTimeout(10, TimeUnit.SECONDS)
-                    .writeTimeout(10, TimeUnit.SECONDS)
-                    .readTimeout(30, TimeUnit.SECONDS)
-                    .build();
-            isDownloadingFiles.set(true);
-            downloadFiles(client, filesQueue, force, callback);
-            isDownloadingFiles.set(false);
-            callback.onComplete();
-        });
-        thread.start();
-    }
-
-    private void downloadFiles(OkHttpClient client, Queue<FileDownloadInfo> filesQueue, boolean force, Callback callback) {
-        while (callback.doStayAlive() || !filesQueue.isEmpty()) {
-            // Wait for file queue to fill.
-            if (filesQueue.isEmpty()) {
-                try {
-                    Thread.sleep(10000L);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-                continue;
-            }
-            // Download the file.
-            final FileDownloadInfo fileInfo = filesQueue.poll();
-            // Check for an existing file with the same name, optionally with a file extension.
-            final String fileNameCandidate = getFileName(fileInfo.url);
-            final File file;
-            final File similarFile = findSimilarFile(fileInfo.folder, fileNameCandidate);
-            file = similarFile != null ? similarFile : new File(fileInfo.folder, fileNameCandidate);
-            // Process `force` flag.
-            if (file.exists()) {
-                if (force) {
-                    if (!file.delete()) {
-                        logOrPrint(Level.SEVERE, "Unable to delete file `" + file.getPath() + "`.");
-                        continue;
-                    }
-                } else {
-                    continue;
+    /**
+     * Download a single file, retrying a few times on failure.
+     *
+     * @param fileInfo The URL and destination folder of the file.
+     * @param force    When `true`, an existing file with the same name will be replaced.
+     */
+    public void download(FileDownloadInfo fileInfo, boolean force) {
+        // Check for an existing file with the same name, optionally with a file extension.
+        final String fileNameCandidate = getFileName(fileInfo.url);
+        final File file;
+        final File similarFile = findSimilarFile(fileInfo.folder, fileNameCandidate);
+        file = similarFile != null ? similarFile : new File(fileInfo.folder, fileNameCandidate);
+        // Process `force` flag.
+        if (file.exists()) {
+            if (force) {
+                if (!file.delete()) {
+                    logOrPrint(Level.SEVERE, "Unable to delete file `" + file.getPath() + "`.");
+                    return;
                 }
+            } else {
+                return;
             }
-            int retries = 3;
-            while (retries > 0) {
-                try {
-                    downloadFile(client, fileInfo, file);
-                    break;
-                } catch (IOException e) {
-                    logOrPrint(Level.WARNING, "Encountered IOException while downloading file `" + fileInfo.url + "` to folder `" + fileInfo.folder.getName() + "`.", e);
-                } catch (Throwable t) {
-                    logOrPrint(Level.WARNING, "Encountered unknown error while downloading file `" + fileInfo.url + "` to folder `" + fileInfo.folder.getName() + "`.", t);
-                }
-                retries--;
+        }
+        int retries = 3;
+        while (retries > 0) {
+            try {
+                downloadFile(client, fileInfo, file);
+                break;
+            } catch (IOException e) {
+                logOrPrint(Level.WARNING, "Encountered IOException while downloading file `" + fileInfo.url + "` to folder `" + fileInfo.folder.getName() + "`.", e);
+            } catch (Throwable t) {
+                logOrPrint(Level.WARNING, "Encountered unknown error while downloading file `" + fileInfo.url + "` to folder `" + fileInfo.folder.getName() + "`.", t);
             }
+            retries--;
         }
     }
 
@@ -1,11 +1,28 @@
 package com.ericrobertbrewer.web.driver;
 
 import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeOptions;
+
+import java.util.HashMap;
+import java.util.Map;
 
 public class ChromeDriverFactory implements WebDriverFactory {
 
+    // Chrome content setting value which blocks a type of content.
+    private static final int CONTENT_SETTING_BLOCK = 2;
+
+    private final DriverProfile profile;
+
+    public ChromeDriverFactory() {
+        this(DriverProfile.defaults());
+    }
+
+    public ChromeDriverFactory(DriverProfile profile) {
+        this.profile = profile;
+    }
+
     /**
-     * Get a new instance of {@link ChromeDriver}.
+     * Get a new instance of {@link ChromeDriver}, configured by this factory's {@link DriverProfile}.
      * Be sure to set the {@code webdriver.chrome.driver} system property as the path to your local Chrome driver
      * executable before invoking this method. There are two ways to do so:
      * <ol>
@@ -16,6 +33,32 @@ public class ChromeDriverFactory implements WebDriverFactory {
      */
     @Override
     public ChromeDriver newInstance() {
-        return new ChromeDriver();
+        return new ChromeDriver(getOptions(profile));
+    }
+
+    private static ChromeOptions getOptions(DriverProfile profile) {
+        final ChromeOptions options = new ChromeOptions();
+        if (profile.isHeadless()) {
+            options.setHeadless(true);
+            options.addArguments("--window-size=" + profile.getWindowWidth() + "," + profile.getWindowHeight());
+        }
+        final Map<String, Object> prefs = new HashMap<>();
+        if (profile.shouldBlockImages()) {
+            prefs.put("profile.managed_default_content_settings.images", CONTENT_SETTING_BLOCK);
+        }
+        if (profile.shouldBlockStylesheets()) {
+            prefs.put("profile.managed_default_content_settings.stylesheets", CONTENT_SETTING_BLOCK);
+        }
+        if (!prefs.isEmpty()) {
+            options.setExperimentalOption("prefs", prefs);
+        }
+        if (profile.shouldBlockFonts()) {
+            options.addArguments("--disable-remote-fonts");
+        }
+        if (profile.shouldDisableExtensions()) {
+            options.addArguments("--disable-extensions");
+        }
+        options.setPageLoadStrategy(profile.getPageLoadStrategy());
+        return options;
     }
 }
@@ -0,0 +1,120 @@
+package com.ericrobertbrewer.web.driver;
+
+import org.openqa.selenium.PageLoadStrategy;
+
+/**
+ * Describes how a browser should be launched by a {@link WebDriverFactory}.
+ * Scrapers which only read text from the DOM can skip rendering and downloading assets which they never look at.
+ */
+public class DriverProfile {
+
+    /**
+     * A full, visible browser which loads everything.
+     */
+    public static DriverProfile defaults() {
+        return new DriverProfile();
+    }
+
+    /**
+     * A headless browser which skips images, web fonts and extensions and which does not wait for
+     * sub-resources to finish loading.
+     * Stylesheets are still loaded, since {@link org.openqa.selenium.WebElement#getText()} depends on visibility.
+     */
+    public static DriverProfile metadata() {
+        return new DriverProfile()
+                .setHeadless(true)
+                .setBlockImages(true)
+                .setBlockFonts(true)
+                .setDisableExtensions(true)
+                .setPageLoadStrategy(PageLoadStrategy.EAGER);
+    }
+
+    private boolean isHeadless = false;
+    private int windowWidth = 1280;
+    private int windowHeight = 978;
+    private boolean blockImages = false;
+    private boolean blockStylesheets = false;
+    private boolean blockFonts = false;
+    private boolean disableExtensions = false;
+    private PageLoadStrategy pageLoadStrategy = PageLoadStrategy.NORMAL;
+
+    public boolean isHeadless() {
+        return isHeadless;
+    }
+
+    /**
+     * @param isHeadless When `true`, the browser has no window, and its size is given by
+     *                   {@link #setWindowSize(int, int)}.
+     */
+    public DriverProfile setHeadless(boolean isHeadless) {
+        this.isHeadless = isHeadless;
+        return this;
+    }
+
+    public int getWindowWidth() {
+        return windowWidth;
+    }
+
+    public int getWindowHeight() {
+        return windowHeight;
+    }
+
+    public DriverProfile setWindowSize(int windowWidth, int windowHeight) {
+        this.windowWidth = windowWidth;
+        this.windowHeight = windowHeight;
+        return this;
+    }
+
+    public boolean shouldBlockImages() {
+        return blockImages;
+    }
+
+    public DriverProfile setBlockImages(boolean blockImages) {
+        this.blockImages = blockImages;
+        return this;
+    }
+
+    public boolean shouldBlockStylesheets() {
+        return blockStylesheets;
+    }
+
+    /**
+     * Only block stylesheets when content is read with `textContent` or `innerHTML`;
+     * without CSS, hidden elements become visible to {@link org.openqa.selenium.WebElement#getText()}.
+     */
+    public DriverProfile setBlockStylesheets(boolean blockStylesheets) {
+        this.blockStylesheets = blockStylesheets;
+        return this;
+    }
+
+    public boolean shouldBlockFonts() {
+        return blockFonts;
+    }
+
+    public DriverProfile setBlockFonts(boolean blockFonts) {
+        this.blockFonts = blockFonts;
+        return this;
+    }
+
+    public boolean shouldDisableExtensions() {
+        return disableExtensions;
+    }
+
+    public DriverProfile setDisableExtensions(boolean disableExtensions) {
+        this.disableExtensions = disableExtensions;
+        return this;
+    }
+
+    public PageLoadStrategy getPageLoadStrategy() {
+        return pageLoadStrategy;
+    }
+
+    /**
+     * @param pageLoadStrategy {@link PageLoadStrategy#EAGER} returns from navigation once the DOM is ready,
+     *                         without waiting for images, frames and other sub-resources.
+     */
+    public DriverProfile setPageLoadStrategy(PageLoadStrategy pageLoadStrategy) {
+        this.pageLoadStrategy = pageLoadStrategy;
+        return this;
+    }
+}
@@ -1,11 +1,75 @@
 package com.ericrobertbrewer.web.driver;
 
 import org.openqa.selenium.*;
+import org.openqa.selenium.remote.UnreachableBrowserException;
+import org.openqa.selenium.support.ui.FluentWait;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
 
 public class DriverUtils {
 
+    /**
+     * Default interval at which conditions are checked while waiting.
+     */
+    public static final long DEFAULT_POLL_MILLIS = 100L;
+
+    private static final String SCRIPT_IS_DOCUMENT_READY = "return document.readyState === 'complete';";
+    /**
+     * Counts the XHR and `fetch` requests of this document which have been sent but have not finished, by wrapping
+     * `XMLHttpRequest.prototype.send` and `window.fetch`. Installed at most once per document.
+     * A `fetch` is finished once its response headers arrive; the rest of its body shows up as a resource timing entry.
+     */
+    private static final String SCRIPT_TRACK_NETWORK_REQUESTS =
+            "if (!window.__bookspiderInFlight) {" +
+            "  var inFlight = { count: 0 };" +
+            "  window.__bookspiderInFlight = inFlight;" +
+            "  var send = XMLHttpRequest.prototype.send;" +
+            "  XMLHttpRequest.prototype.send = function() {" +
+            "    var isDone = false;" +
+            "    var done = function() {" +
+            "      if (!isDone) { isDone = true; inFlight.count--; }" +
+            "    };" +
+            "    inFlight.count++;" +
+            "    this.addEventListener('loadend', done);" +
+            "    try {" +
+            "      return send.apply(this, arguments);" +
+            "    } catch (e) {" +
+            "      done();" +
+            "      throw e;" +
+            "    }" +
+            "  };" +
+            "  if (window.fetch) {" +
+            "    var fetch = window.fetch;" +
+            "    window.fetch = function() {" +
+            "      var done = function() { inFlight.count--; };" +
+            "      inFlight.count++;" +
+            "      try {" +
+            "        var promise = fetch.apply(this, arguments);" +
+            "        promise.then(done, done);" +
+            "        return promise;" +
+            "      } catch (e) {" +
+            "        done();" +
+            "        throw e;" +
+            "      }" +
+            "    };" +
+            "  }" +
+            "}";
+    /**
+     * Returns the number of resources which this document has finished loading so far, the number of tracked requests
+     * which are still in flight, and whether the document itself has loaded.
+     * The resource timing buffer is enlarged so that the count is not capped at its default (150).
+     */
+    private static final String SCRIPT_GET_NETWORK_STATE =
+            SCRIPT_TRACK_NETWORK_REQUESTS +
+            "if (!window.__bookspiderResourceBufferSet) {" +
+            "  performance.setResourceTimingBufferSize(100000);" +
+            "  window.__bookspiderResourceBufferSet = true;" +
+            "}" +
+            "return [performance.getEntriesByType('resource').length, window.__bookspiderInFlight.count, document.readyState === 'complete'];";
+
     public interface TextFormatter {
         String format(String text);
     }
@@ -62,6 +126,26 @@ public class DriverUtils {
         return s.toString();
     }
 
+    /**
+     * Most driver exceptions (e.g., {@link StaleElementReferenceException}) are about the page, and the driver may be
+     * used again; only replace it once its session is gone.
+     *
+     * @param driver Driver which threw `e`.
+     * @param e      Exception thrown by `driver`.
+     * @return `true` if `driver` can no longer be used.
+     */
+    public static boolean isSessionLost(WebDriver driver, WebDriverException e) {
+        if (e instanceof NoSuchSessionException || e instanceof UnreachableBrowserException) {
+            return true;
+        }
+        try {
+            driver.getWindowHandle();
+            return false;
+        } catch (WebDriverException healthCheckException) {
+            return true;
+        }
+    }
+
     public static void sleep(long delayMillis) {
         try {
             Thread.sleep(delayMillis);
@@ -92,4 +176,133 @@ public class DriverUtils {
         }
         return element.findElement(by);
     }
+
+    /**
+     * Wait until `condition` returns a value which is neither `null` nor `false`.
+     * {@link NoSuchElementException} and {@link StaleElementReferenceException} thrown by `condition` are ignored,
+     * since they usually mean that the page has not finished rendering.
+     *
+     * @param input         Passed to `condition`. Usually a driver or an element.
+     * @param condition     Checked every `pollMillis` milliseconds.
+     * @param timeoutMillis Maximum number of milliseconds to wait.
+     * @param pollMillis    Number of milliseconds between checks.
+     * @return The last value returned by `condition`.
+     * @throws TimeoutException When `condition` is not met within `timeoutMillis`.
+     */
+    public static <I, T> T waitUntil(I input, Function<? super I, T> condition, long timeoutMillis, long pollMillis) {
+        return new FluentWait<>(input)
+                .withTimeout(Duration.ofMillis(timeoutMillis))
+                .pollingEvery(Duration.ofMillis(pollMillis))
+                .ignoring(NoSuchElementException.class, StaleElementReferenceException.class)
+                .until(condition);
+    }
+
+    public static <I, T> T waitUntil(I input, Function<? super I, T> condition, long timeoutMillis) {
+        return waitUntil(input, condition, timeoutMillis, DEFAULT_POLL_MILLIS);
+    }
+
+    /**
+     * Wait for an element to be present (though not necessarily visible).
+     *
+     * @param context       The driver or element from which the element will be found.
+     * @param by            The criterion to find the element.
+     * @param timeoutMillis Maximum number of milliseconds to wait.
+     * @return The element, as soon as it is found.
+     * @throws TimeoutException When the element is not found within `timeoutMillis`.
+     */
+    public static WebElement waitForElement(SearchContext context, By by, long timeoutMillis) {
+        return waitUntil(context, c -> c.findElement(by), timeoutMillis);
+    }
+
+    /**
+     * Wait for the current document (or frame) to finish loading, including sub-resources.
+     *
+     * @param driver        The driver.
+     * @param timeoutMillis Maximum number of milliseconds to wait.
+     * @throws TimeoutException When the document does not finish loading within `timeoutMillis`.
+     */
+    public static void waitForDocumentReady(WebDriver driver, long timeoutMillis) {
+        waitUntil(driver, d -> (Boolean) ((JavascriptExecutor) d).executeScript(SCRIPT_IS_DOCUMENT_READY), timeoutMillis);
+    }
+
+    /**
+     * Start counting the XHR and `fetch` requests of the current document (or frame) which are in flight.
+     * Call this before an action which loads content (e.g., a click), so that {@link #waitForNetworkIdle(WebDriver, long, long)}
+     * also sees requests which are still in flight. Does nothing if the document is already tracked.
+     *
+     * @param driver The driver.
+     */
+    public static void trackNetworkRequests(WebDriver driver) {
+        ((JavascriptExecutor) driver).executeScript(SCRIPT_TRACK_NETWORK_REQUESTS);
+    }
+
+    /**
+     * Wait for the current document (or frame) to stop making network requests,
+     * e.g., after a click which loads content with XHR.
+     * Requests which were sent before the document was tracked by {@link #trackNetworkRequests(WebDriver)} (or by the
+     * first call to this) are only seen once they have finished.
+     *
+     * @param driver        The driver.
+     * @param idleMillis    Number of milliseconds without any request in flight or finishing for the network to be considered idle.
+     * @param timeoutMillis Maximum number of milliseconds to wait.
+     * @throws TimeoutException When the network does not become idle within `timeoutMillis`.
+     */
+    public static void waitForNetworkIdle(WebDriver driver, long idleMillis, long timeoutMillis) {
+        final long[] lastCount = {-1L};
+        final long[] lastChangeTime = {System.currentTimeMillis()};
+        waitUntil(driver, d -> {
+            final List<?> state = (List<?>) ((JavascriptExecutor) d).executeScript(SCRIPT_GET_NETWORK_STATE);
+            final long count = ((Number) state.get(0)).longValue();
+            final long inFlightCount = ((Number) state.get(1)).longValue();
+            final boolean isReady = (Boolean) state.get(2);
+            final long now = System.currentTimeMillis();
+            if (count != lastCount[0] || inFlightCount > 0L || !isReady) {
+                lastCount[0] = count;
+                lastChangeTime[0] = now;
+                return false;
+            }
+            return now - lastChangeTime[0] >= idleMillis;
+        }, timeoutMillis);
+    }
+
+    /**
+     * Wait for an attribute of an element to change from a known value, e.g., the class of a button after clicking it.
+     *
+     * @param element       The element.
+     * @param attribute     Name of the attribute.
+     * @param oldValue      The value of the attribute before the change. May be `null`.
+     * @param timeoutMillis Maximum number of milliseconds to wait.
+     * @return The new value of the attribute.
+     * @throws TimeoutException When the attribute does not change within `timeoutMillis`.
+     */
+    public static String waitForAttributeChange(WebElement element, String attribute, String oldValue, long timeoutMillis) {
+        // Wrap the value, since `null` is a valid new value but would otherwise be interpreted as "not yet".
+        final String[] newValue = new String[1];
+        waitUntil(element, e -> {
+            newValue[0] = e.getAttribute(attribute);
+            return !Objects.equals(oldValue, newValue[0]);
+        }, timeoutMillis);
+        return newValue[0];
+    }
+
+    /**
+     * Wait for an element to be removed from the page or replaced, e.g., after submitting a form navigates away.
+     *
+     * @param element       The element, found before the change.
+     * @param timeoutMillis Maximum number of milliseconds to wait.
+     * @throws TimeoutException When the element is still attached to the page after `timeoutMillis`.
+     */
+    public static void waitForStaleness(WebElement element, long timeoutMillis) {
+        new FluentWait<>(element)
+                .withTimeout(Duration.ofMillis(timeoutMillis))
+                .pollingEvery(Duration.ofMillis(DEFAULT_POLL_MILLIS))
+                .until(e -> {
+                    try {
+                        e.isEnabled();
+                        return false;
+                    } catch (StaleElementReferenceException ignored) {
+                        return true;
+                    }
+                });
+    }
 }
@@ -0,0 +1,336 @@
+package com.ericrobertbrewer.web.driver;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.support.events.AbstractWebDriverEventListener;
+import org.openqa.selenium.support.events.EventFiringWebDriver;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A bounded pool of web drivers which are created by a {@link WebDriverFactory}.
+ * Tasks {@link #lease()} a driver, use it, then {@link #release(WebDriver)} it back to the pool.
+ * <p>
+ * Drivers are health-checked when they are leased; dead drivers are quit and replaced.
+ * Drivers may also be recycled (quit, then lazily replaced) after a number of page loads,
+ * or after their JavaScript heap grows beyond a threshold, since long-lived browser processes tend to bloat.
+ */
+public class WebDriverPool {
+
+    // Recycle drivers periodically by default, since long-running Chrome processes bloat.
+    public static final int DEFAULT_MAX_PAGE_LOADS = 500;
+    public static final long DEFAULT_MAX_HEAP_BYTES = 256L * 1024L * 1024L;
+
+    private static final String SCRIPT_USED_JS_HEAP_SIZE =
+            "return window.performance && window.performance.memory ? window.performance.memory.usedJSHeapSize : null;";
+
+    private final WebDriverFactory factory;
+    private final int size;
+    private final Logger logger;
+    private final Deque<PooledDriver> idle = new ArrayDeque<>();
+    private final Map<WebDriver, PooledDriver> leased = new IdentityHashMap<>();
+    private int launching = 0;
+    private volatile int maxPageLoads = DEFAULT_MAX_PAGE_LOADS;
+    private volatile long maxHeapBytes = DEFAULT_MAX_HEAP_BYTES;
+    private boolean isClosed = false;
+
+    /**
+     * @param factory Used to launch each driver.
+     * @param size    Maximum number of drivers which may be alive at once.
+     * @param logger  Logger.
+     */
+    public WebDriverPool(WebDriverFactory factory, int size, Logger logger) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Pool must contain at least one driver; found " + size + ".");
+        }
+        this.factory = factory;
+        this.size = size;
+        this.logger = logger;
+    }
+
+    /**
+     * @param maxPageLoads Number of page loads after which a driver is recycled when it is released.
+     *                     Zero never recycles drivers by page loads. Defaults to {@link #DEFAULT_MAX_PAGE_LOADS}.
+     */
+    public void setMaxPageLoads(int maxPageLoads) {
+        this.maxPageLoads = maxPageLoads;
+    }
+
+    /**
+     * @param maxHeapBytes Size of the used JavaScript heap of the current page beyond which a driver is recycled
+     *                     when it is released. Zero never recycles drivers by memory.
+     *                     Defaults to {@link #DEFAULT_MAX_HEAP_BYTES}.
+     */
+    public void setMaxHeapBytes(long maxHeapBytes) {
+        this.maxHeapBytes = maxHeapBytes;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Launch drivers in parallel until the pool is full, then wait for them to start.
+     * Drivers which fail to launch are logged and skipped; they will be launched lazily by {@link #lease()}.
+     */
+    public void warmUp() {
+        final int count;
+        synchronized (this) {
+            if (isClosed) {
+                throw new IllegalStateException("Unable to warm up closed pool.");
+            }
+            count = size - getAliveCount();
+            launching += count;
+        }
+        if (count <= 0) {
+            return;
+        }
+        logger.log(Level.INFO, "Warming up " + count + " web driver(s).");
+        final ExecutorService executor = Executors.newFixedThreadPool(count);
+        final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                PooledDriver pooledDriver = null;
+                try {
+                    pooledDriver = launch();
+                } catch (WebDriverException e) {
+                    logger.log(Level.WARNING, "Unable to launch web driver during warm-up.", e);
+                } finally {
+                    onLaunched(pooledDriver);
+                }
+            }, executor));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        executor.shutdown();
+    }
+
+    /**
+     * Wait for a healthy driver.
+     * Every driver which is leased must be passed back to either {@link #release(WebDriver)} or {@link #invalidate(WebDriver)}.
+     *
+     * @return A driver which is exclusively held by the caller.
+     * @throws InterruptedException When the calling thread is interrupted while waiting for a driver.
+     * @throws WebDriverException   When a new driver can not be launched.
+     */
+    public WebDriver lease() throws InterruptedException {
+        PooledDriver pooledDriver;
+        synchronized (this) {
+            while (true) {
+                if (isClosed) {
+                    throw new IllegalStateException("Unable to lease driver from closed pool.");
+                }
+                if (!idle.isEmpty()) {
+                    pooledDriver = idle.pop();
+                    leased.put(pooledDriver.driver, pooledDriver);
+                    break;
+                }
+                if (getAliveCount() < size) {
+                    pooledDriver = null;
+                    launching++;
+                    break;
+                }
+                wait();
+            }
+        }
+        if (pooledDriver != null) {
+            if (isAlive(pooledDriver)) {
+                return pooledDriver.driver;
+            }
+            logger.log(Level.WARNING, "Replacing unresponsive web driver.");
+            quit(pooledDriver);
+            // Hand the dead driver's slot directly to its replacement.
+            synchronized (this) {
+                leased.remove(pooledDriver.driver);
+                launching++;
+            }
+        }
+        try {
+            pooledDriver = launch();
+        } catch (WebDriverException e) {
+            synchronized (this) {
+                launching--;
+                notify();
+            }
+            throw e;
+        }
+        synchronized (this) {
+            launching--;
+            leased.put(pooledDriver.driver, pooledDriver);
+        }
+        return pooledDriver.driver;
+    }
+
+    /**
+     * Return a leased driver to the pool, so that it may be leased again.
+     * The driver is quit instead when it has been used for too long, or when the pool has been closed.
+     *
+     * @param driver A driver which was returned by {@link #lease()}.
+     */
+    public void release(WebDriver driver) {
+        final PooledDriver pooledDriver = getLeased(driver);
+        if (!shouldRecycle(pooledDriver)) {
+            synchronized (this) {
+                if (!isClosed) {
+                    leased.remove(driver);
+                    idle.push(pooledDriver);
+                    notify();
+                    return;
+                }
+            }
+        }
+        // Free the slot only once the browser process has exited.
+        quit(pooledDriver);
+        removeLeased(driver);
+    }
+
+    /**
+     * Quit a leased driver, e.g., when it has crashed or is left in an unknown state.
+     * A replacement will be launched by a later call to {@link #lease()}.
+     *
+     * @param driver A driver which was returned by {@link #lease()}.
+     */
+    public void invalidate(WebDriver driver) {
+        quit(getLeased(driver));
+        removeLeased(driver);
+    }
+
+    /**
+     * Quit every idle driver. Drivers which are still leased are quit when they are released.
+     * No driver may be leased after calling this method. Idempotent.
+     */
+    public void close() {
+        final List<PooledDriver> drivers;
+        synchronized (this) {
+            isClosed = true;
+            drivers = new ArrayList<>(idle);
+            idle.clear();
+            notifyAll();
+        }
+        for (PooledDriver pooledDriver : drivers) {
+            quit(pooledDriver);
+        }
+    }
+
+    private int getAliveCount() {
+        return idle.size() + leased.size() + launching;
+    }
+
+    private PooledDriver launch() {
+        final EventFiringWebDriver driver = new EventFiringWebDriver(factory.newInstance());
+        final PooledDriver pooledDriver = new PooledDriver(driver);
+        driver.register(new AbstractWebDriverEventListener() {
+            @Override
+            public void afterNavigateTo(String url, WebDriver driver) {
+                pooledDriver.pageLoads++;
+            }
+
+            @Override
+            public void afterNavigateBack(WebDriver driver) {
+                pooledDriver.pageLoads++;
+            }
+
+            @Override
+            public void afterNavigateForward(WebDriver driver) {
+                pooledDriver.pageLoads++;
+            }
+
+            @Override
+            public void afterNavigateRefresh(WebDriver driver) {
+                pooledDriver.pageLoads++;
+            }
+        });
+        return pooledDriver;
+    }
+
+    /**
+     * Account for a launch which was reserved during {@link #warmUp()}.
+     *
+     * @param pooledDriver The launched driver, or `null` if it failed to launch.
+     */
+    private void onLaunched(PooledDriver pooledDriver) {
+        final boolean shouldQuit;
+        synchronized (this) {
+            launching--;
+            shouldQuit = pooledDriver != null && isClosed;
+            if (pooledDriver != null && !isClosed) {
+                idle.push(pooledDriver);
+            }
+            notify();
+        }
+        if (shouldQuit) {
+            quit(pooledDriver);
+        }
+    }
+
+    private synchronized PooledDriver getLeased(WebDriver driver) {
+        final PooledDriver pooledDriver = leased.get(driver);
+        if (pooledDriver == null) {
+            throw new IllegalArgumentException("Driver was not leased from this pool.");
+        }
+        return pooledDriver;
+    }
+
+    private synchronized void removeLeased(WebDriver driver) {
+        leased.remove(driver);
+        notify();
+    }
+
+    private boolean isAlive(PooledDriver pooledDriver) {
+        try {
+            pooledDriver.driver.getWindowHandle();
+            return true;
+        } catch (WebDriverException e) {
+            return false;
+        }
+    }
+
+    private boolean shouldRecycle(PooledDriver pooledDriver) {
+        if (maxPageLoads > 0 && pooledDriver.pageLoads >= maxPageLoads) {
+            logger.log(Level.INFO, "Recycling web driver after " + pooledDriver.pageLoads + " page loads.");
+            return true;
+        }
+        // Only drivers which run JavaScript can report their heap size.
+        if (maxHeapBytes > 0L && pooledDriver.driver.getWrappedDriver() instanceof JavascriptExecutor) {
+            try {
+                final Object usedJsHeapSize = pooledDriver.driver.executeScript(SCRIPT_USED_JS_HEAP_SIZE);
+                if (usedJsHeapSize instanceof Number && ((Number) usedJsHeapSize).longValue() >= maxHeapBytes) {
+                    logger.log(Level.INFO, "Recycling web driver with JavaScript heap size of " + usedJsHeapSize + " bytes.");
+                    return true;
+                }
+            } catch (WebDriverException e) {
+                // The driver will not survive its next health check anyway.
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void quit(PooledDriver pooledDriver) {
+        try {
+            pooledDriver.driver.quit();
+        } catch (WebDriverException e) {
+            logger.log(Level.WARNING, "Unable to quit web driver.", e);
+        }
+    }
+
+    private static class PooledDriver {
+
+        final EventFiringWebDriver driver;
+        volatile int pageLoads = 0;
+
+        PooledDriver(EventFiringWebDriver driver) {
+            this.driver = driver;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.ericrobertbrewer.web.fetch;
+
+import com.ericrobertbrewer.web.driver.DriverUtils;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Counterparts to {@link DriverUtils} for pages which have been parsed locally.
+ */
+public final class DocumentUtils {
+
+    /**
+     * @param element  Element to search within.
+     * @param cssQuery Selector, e.g., `.title` or `#content`.
+     * @return The first matching descendant.
+     * @throws ElementNotFoundException When no descendant matches.
+     */
+    public static Element findElement(Element element, String cssQuery) {
+        final Element found = element.selectFirst(cssQuery);
+        if (found == null) {
+            throw new ElementNotFoundException("Unable to find element `" + cssQuery + "`.");
+        }
+        return found;
+    }
+
+    public static String getConcatenatedTexts(Element element, String cssQuery, String separator) {
+        return getConcatenatedTexts(element, cssQuery, separator, null);
+    }
+
+    /**
+     * Equivalent to {@link DriverUtils#getConcatenatedTexts(org.openqa.selenium.WebElement, org.openqa.selenium.By, String, DriverUtils.TextFormatter)}.
+     */
+    public static String getConcatenatedTexts(Element element, String cssQuery, String separator, DriverUtils.TextFormatter formatter) {
+        final List<Element> children = element.select(cssQuery);
+        final StringBuilder s = new StringBuilder();
+        for (Element child : children) {
+            // Same as the `textContent` attribute.
+            final String text = child.wholeText().trim();
+            // Ignore empty elements.
+            if (text.isEmpty()) {
+                continue;
+            }
+            if (s.length() > 0) {
+                s.append(separator);
+            }
+            if (formatter != null) {
+                s.append(formatter.format(text));
+            } else {
+                s.append(text);
+            }
+        }
+        return s.toString();
+    }
+
+    private static final Set<String> BLOCK_TAGS = new HashSet<>(Arrays.asList(
+            "address", "article", "aside", "blockquote", "dd", "div", "dl", "dt", "fieldset", "figcaption", "figure",
+            "footer", "form", "h1", "h2", "h3", "h4", "h5", "h6", "header", "hr", "li", "main", "nav", "ol", "p", "pre",
+            "section", "table", "tr", "ul"));
+
+    private static final Set<String> INVISIBLE_TAGS = new HashSet<>(Arrays.asList(
+            "head", "noscript", "script", "style", "template"));
+
+    /**
+     * Approximate {@link org.openqa.selenium.WebElement#getText()}, i.e., the rendered text of an element.
+     * Block elements and `br`s begin new lines, other whitespace is collapsed, and each line is trimmed.
+     * Since no styles are computed, only elements which are hidden by markup (e.g., the `hidden` attribute or
+     * an inline `display: none`) are skipped.
+     *
+     * @param element Element.
+     * @return The visible text of the element.
+     */
+    public static String getText(Element element) {
+        final StringBuilder s = new StringBuilder();
+        NodeTraversor.traverse(new NodeVisitor() {
+            private Node skipped = null;
+
+            @Override
+            public void head(Node node, int depth) {
+                if (skipped != null) {
+                    return;
+                }
+                if (node instanceof TextNode) {
+                    s.append(((TextNode) node).text());
+                } else if (node instanceof Element) {
+                    final Element child = (Element) node;
+                    if (isHidden(child)) {
+                        skipped = child;
+                    } else if ("br".equals(child.tagName())) {
+                        s.append('\n');
+                    } else if (BLOCK_TAGS.contains(child.tagName())) {
+                        s.append('\n');
+                    }
+                }
+            }
+
+            @Override
+            public void tail(Node node, int depth) {
+                if (node == skipped) {
+                    skipped = null;
+                } else if (skipped == null && node instanceof Element && BLOCK_TAGS.contains(((Element) node).tagName())) {
+                    s.append('\n');
+                }
+            }
+        }, element);
+        // Treat non-breaking spaces as spaces, trim each line, and drop empty lines.
+        final StringBuilder text = new StringBuilder();
+        for (String line : s.toString().replace('\u00a0', ' ').split("\n")) {
+            final String trimmedLine = line.replaceAll("\\s+", " ").trim();
+            if (trimmedLine.isEmpty()) {
+                continue;
+            }
+            if (text.length() > 0) {
+                text.append('\n');
+            }
+            text.append(trimmedLine);
+        }
+        return text.toString();
+    }
+
+    private static boolean isHidden(Element element) {
+        if (INVISIBLE_TAGS.contains(element.tagName()) || element.hasAttr("hidden")) {
+            return true;
+        }
+        final String style = element.attr("style").replaceAll("\\s", "").toLowerCase();
+        return style.contains("display:none") || style.contains("visibility:hidden");
+    }
+
+    private DocumentUtils() {
+    }
+}
@@ -0,0 +1,14 @@
+package com.ericrobertbrewer.web.fetch;
+
+/**
+ * Thrown when an expected element is missing from a parsed page.
+ * The counterpart of {@link org.openqa.selenium.NoSuchElementException} for documents which are not in a browser.
+ */
+public class ElementNotFoundException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ElementNotFoundException(String message) {
+        super(message);
+    }
+}
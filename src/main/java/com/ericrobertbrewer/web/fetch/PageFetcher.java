@@ -0,0 +1,59 @@
+package com.ericrobertbrewer.web.fetch;
+
+import com.ericrobertbrewer.web.HttpClients;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.IOException;
+
+/**
+ * Fetches server-rendered pages over plain HTTP and parses them locally, without a browser.
+ * Thread-safe; one instance may serve any number of concurrent fetches.
+ */
+public class PageFetcher {
+
+    // Some sites serve a reduced page (or none at all) to unknown user agents.
+    private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/71.0.3578.98 Safari/537.36";
+
+    private final OkHttpClient client;
+
+    public PageFetcher() {
+        this(HttpClients.getShared());
+    }
+
+    public PageFetcher(OkHttpClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Download and parse a page.
+     *
+     * @param url URL of the page.
+     * @return The parsed page, whose base URI is the final URL after any redirects,
+     * so that `abs:` attribute keys resolve the same way they do in a browser.
+     * @throws HttpStatusException When the server responds with an unsuccessful status code, e.g., `429` or `503`.
+     * @throws IOException         When the page can not be downloaded.
+     */
+    public Document fetch(String url) throws IOException {
+        final Request request = new Request.Builder()
+                .url(url)
+                .header("User-Agent", USER_AGENT)
+                .header("Accept", "text/html,application/xhtml+xml")
+                .build();
+        try (Response response = client.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new HttpStatusException("Unable to fetch page.", response.code(), url);
+            }
+            final ResponseBody body = response.body();
+            if (body == null) {
+                throw new IOException("Received empty response from `" + url + "`.");
+            }
+            return Jsoup.parse(body.string(), response.request().url().toString());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.ericrobertbrewer.bookspider.sites;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScrapeSchedulerTest {
+
+    private static final Logger LOGGER = Logger.getLogger(ScrapeSchedulerTest.class.getSimpleName());
+
+    @Test
+    void completesOnceAfterQueueIsDrained() throws InterruptedException {
+        final ScrapeScheduler scheduler = new ScrapeScheduler(LOGGER);
+        final WorkQueue<Integer> queue = new WorkQueue<>();
+        final Set<Integer> taken = ConcurrentHashMap.newKeySet();
+        final AtomicInteger completions = new AtomicInteger(0);
+        final CountDownLatch latch = new CountDownLatch(1);
+        scheduler.submit("producer", 1, () -> {
+            for (int i = 0; i < 1000; i++) {
+                queue.offer(i);
+            }
+        }).whenComplete((result, t) -> queue.close());
+        scheduler.submit("consumer", 4, () -> {
+            Integer item;
+            while ((item = queue.take()) != null) {
+                taken.add(item);
+            }
+        });
+        scheduler.whenComplete(() -> {
+            completions.incrementAndGet();
+            latch.countDown();
+        });
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(1000, taken.size());
+        // Give any erroneous second notification a chance to arrive.
+        Thread.sleep(100L);
+        assertEquals(1, completions.get());
+    }
+
+    @Test
+    void completesWhenWorkerThrows() throws InterruptedException {
+        final ScrapeScheduler scheduler = new ScrapeScheduler(LOGGER);
+        final CountDownLatch latch = new CountDownLatch(1);
+        scheduler.submit("failing", 2, () -> {
+            throw new IllegalStateException("Expected.");
+        });
+        scheduler.whenComplete(latch::countDown);
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+    }
+}
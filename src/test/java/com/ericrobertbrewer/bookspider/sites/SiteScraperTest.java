@@ -36,7 +36,6 @@ public abstract class SiteScraperTest<T extends SiteScraper> {
 
     @BeforeEach
     public void setUp() throws IOException {
-        factory = new ChromeDriverFactory();
         final SiteScraper.Provider<T> provider = getTestProvider();
         final String id = provider.getId();
         final Logger logger = Logger.getLogger(provider.getClass().getSimpleName());
@@ -47,6 +46,7 @@ public abstract class SiteScraperTest<T extends SiteScraper> {
         fileHandler.setFormatter(formatter);
         contentFolder = Folders.getOrMakeContentFolder(id);
         scraper = provider.newInstance(logger);
+        factory = new ChromeDriverFactory(scraper.getDriverProfile());
     }
 
     @AfterEach
@@ -0,0 +1,223 @@
+package com.ericrobertbrewer.bookspider.sites.db;
+
+import com.ericrobertbrewer.bookspider.sites.meta.BookCave;
+import com.ericrobertbrewer.bookspider.sites.meta.CommonSenseMedia;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatabaseHelperMigrationTest {
+
+    private static final Logger LOGGER = Logger.getLogger(DatabaseHelperMigrationTest.class.getSimpleName());
+
+    private File file;
+    private DatabaseHelper databaseHelper;
+
+    @BeforeEach
+    void createOldDatabase() throws IOException, SQLException {
+        file = File.createTempFile("database-helper-migration-test", ".db");
+        // The schema from before strings were stored as IDs, with neither content hashes nor full-text indexes.
+        final Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+        final Statement statement = connection.createStatement();
+        statement.execute("CREATE TABLE " + DatabaseHelper.TABLE_BOOKCAVE_BOOKS + " (" +
+                "id TEXT PRIMARY KEY" +
+                ", title TEXT NOT NULL" +
+                ", authors TEXT NOT NULL" +
+                ", summary TEXT NOT NULL" +
+                ", description TEXT DEFAULT NULL" +
+                ", community_ratings_count INTEGER NOT NULL" +
+                ", community_average_rating TEXT DEFAULT NULL" +
+                ", pages INTEGER DEFAULT NULL" +
+                ", genres TEXT DEFAULT NULL" +
+                ", amazon_kindle_url TEXT DEFAULT NULL" +
+                ", amazon_print_url TEXT DEFAULT NULL" +
+                ", audible_url TEXT DEFAULT NULL" +
+                ", apple_books_url TEXT DEFAULT NULL" +
+                ", barnes_and_noble_url TEXT DEFAULT NULL" +
+                ", barnes_and_noble_audiobook_url TEXT DEFAULT NULL" +
+                ", barnes_and_noble_print_url TEXT DEFAULT NULL" +
+                ", google_play_url TEXT DEFAULT NULL" +
+                ", kobo_url TEXT DEFAULT NULL" +
+                ", smashwords_url TEXT DEFAULT NULL" +
+                ", last_updated INTEGER NOT NULL" +
+                ", asin TEXT DEFAULT NULL" +
+                ");");
+        statement.execute("CREATE TABLE " + DatabaseHelper.TABLE_BOOKCAVE_BOOK_RATINGS + " (" +
+                "book_id TEXT NOT NULL" +
+                ", rating TEXT NOT NULL" +
+                ", count INTEGER NOT NULL" +
+                ", PRIMARY KEY (book_id, rating)" +
+                ");");
+        statement.execute("CREATE TABLE " + DatabaseHelper.TABLE_BOOKCAVE_BOOK_RATING_LEVELS + " (" +
+                "book_id TEXT NOT NULL" +
+                ", rating TEXT NOT NULL" +
+                ", title TEXT NOT NULL" +
+                ", count INTEGER NOT NULL" +
+                ", PRIMARY KEY (book_id, rating, title)" +
+                ");");
+        statement.execute("CREATE TABLE " + DatabaseHelper.TABLE_COMMONSENSEMEDIA_BOOKS + " (" +
+                "id TEXT PRIMARY KEY" +
+                ", title TEXT NOT NULL" +
+                ", authors TEXT NOT NULL" +
+                ", illustrators TEXT DEFAULT NULL" +
+                ", age TEXT NOT NULL" +
+                ", stars INTEGER NOT NULL" +
+                ", kicker TEXT NOT NULL" +
+                ", amazon_url TEXT DEFAULT NULL" +
+                ", apple_books_url TEXT DEFAULT NULL" +
+                ", google_play_url TEXT DEFAULT NULL" +
+                ", genre TEXT NOT NULL" +
+                ", topics TEXT DEFAULT NULL" +
+                ", type TEXT NOT NULL" +
+                ", know TEXT DEFAULT NULL" +
+                ", story TEXT DEFAULT NULL" +
+                ", good TEXT DEFAULT NULL" +
+                ", talk TEXT DEFAULT NULL" +
+                ", publishers TEXT DEFAULT NULL" +
+                ", publication_date TEXT DEFAULT NULL" +
+                ", publishers_recommended_ages TEXT DEFAULT NULL" +
+                ", pages INTEGER DEFAULT NULL" +
+                ", last_updated INTEGER NOT NULL" +
+                ", asin TEXT DEFAULT NULL" +
+                ");");
+        statement.execute("INSERT INTO " + DatabaseHelper.TABLE_BOOKCAVE_BOOKS +
+                "(id, title, authors, summary, community_ratings_count, community_average_rating, pages, genres, last_updated, asin)" +
+                " VALUES('the-haunting-of-gillespie-house', 'The Haunting of Gillespie House', 'Darcy Coates', 'Elle minds the Gillespie property.', 1, 'Moderate', 200, 'Fiction/Horror', 1000, 'B00TEST001')" +
+                ", ('a-quiet-book', 'A Quiet Book', 'Someone', 'Nothing happens.', 0, NULL, NULL, NULL, 2000, NULL)" +
+                ", ('another-horror', 'Another Horror', 'Someone Else', 'A haunted lighthouse.', 2, 'Mild', 150, 'Fiction/Horror', 3000, NULL);");
+        // Leave a gap in the row IDs, which the full-text index must still agree with after the migration.
+        statement.execute("DELETE FROM " + DatabaseHelper.TABLE_BOOKCAVE_BOOKS + " WHERE id='a-quiet-book';");
+        statement.execute("INSERT INTO " + DatabaseHelper.TABLE_BOOKCAVE_BOOK_RATINGS + "(book_id, rating, count)" +
+                " VALUES('the-haunting-of-gillespie-house', 'Moderate', 1)" +
+                ", ('another-horror', 'Mild', 2);");
+        statement.execute("INSERT INTO " + DatabaseHelper.TABLE_BOOKCAVE_BOOK_RATING_LEVELS + "(book_id, rating, title, count)" +
+                " VALUES('the-haunting-of-gillespie-house', 'Moderate', 'Mild Language', 1)" +
+                ", ('another-horror', 'Mild', 'Mild Language', 2);");
+        statement.execute("INSERT INTO " + DatabaseHelper.TABLE_COMMONSENSEMEDIA_BOOKS +
+                "(id, title, authors, age, stars, kicker, genre, topics, type, story, last_updated)" +
+                " VALUES('the-unwanted', 'The Unwanted', 'Don Brown', '13+', 5, 'Compassionate account.', 'graphic novel', 'history', 'non-fiction', 'Refugees leave Syria.', 1000)" +
+                ", ('pirates', 'Pirates', 'Someone', '8+', 3, 'Swashbuckling.', 'adventure', NULL, 'fiction', 'Pirates sail the sea.', 2000);");
+        statement.close();
+        connection.close();
+        databaseHelper = new DatabaseHelper(LOGGER);
+        databaseHelper.connectToDatabase(file.getPath());
+    }
+
+    @AfterEach
+    void close() {
+        databaseHelper.close();
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    @Test
+    void keepsBookCaveBooksAndDecodesTheirGenres() throws SQLException {
+        final BookCave.Book book = databaseHelper.getBookCaveBook("the-haunting-of-gillespie-house");
+        assertNotNull(book);
+        assertEquals("The Haunting of Gillespie House", book.title);
+        assertEquals("Moderate", book.communityAverageRating);
+        assertEquals("Fiction/Horror", book.genres);
+        assertEquals("B00TEST001", book.asin);
+        final List<BookCave.Book> books = databaseHelper.getBookCaveBooks();
+        assertEquals(2, books.size());
+        // Decoded values are shared between rows.
+        assertSame(books.get(0).genres, books.get(1).genres);
+        assertNull(databaseHelper.getBookCaveBook("a-quiet-book"));
+    }
+
+    @Test
+    void keepsBookCaveRatingsAndRatingLevels() throws SQLException {
+        final Map<String, BookCave.BookRating> ratings = new HashMap<>();
+        for (BookCave.BookRating rating : databaseHelper.getBookCaveRatings()) {
+            ratings.put(rating.bookId, rating);
+        }
+        assertEquals(2, ratings.size());
+        assertEquals("Moderate", ratings.get("the-haunting-of-gillespie-house").rating);
+        assertEquals(1, ratings.get("the-haunting-of-gillespie-house").count);
+        assertEquals("Mild", ratings.get("another-horror").rating);
+        assertEquals(2, ratings.get("another-horror").count);
+        final Statement select = databaseHelper.getReadConnection().createStatement();
+        final ResultSet result = select.executeQuery("SELECT l.book_id, r.value, t.value, l.count" +
+                " FROM " + DatabaseHelper.TABLE_BOOKCAVE_BOOK_RATING_LEVELS + " l" +
+                " JOIN " + DatabaseHelper.TABLE_STRINGS + " r ON r.id=l.rating_id" +
+                " JOIN " + DatabaseHelper.TABLE_STRINGS + " t ON t.id=l.title_id" +
+                " ORDER BY l.book_id;");
+        final List<String> levels = new ArrayList<>();
+        while (result.next()) {
+            levels.add(result.getString(1) + "|" + result.getString(2) + "|" + result.getString(3) + "|" + result.getInt(4));
+        }
+        result.close();
+        select.close();
+        assertEquals(2, levels.size());
+        assertEquals("another-horror|Mild|Mild Language|2", levels.get(0));
+        assertEquals("the-haunting-of-gillespie-house|Moderate|Mild Language|1", levels.get(1));
+    }
+
+    @Test
+    void keepsCommonSenseMediaBooksAndDecodesTheirGenresAndTypes() throws SQLException {
+        final Map<String, CommonSenseMedia.Book> books = new HashMap<>();
+        for (CommonSenseMedia.Book book : databaseHelper.getCommonSenseMediaBooks()) {
+            books.put(book.id, book);
+        }
+        assertEquals(2, books.size());
+        assertEquals("graphic novel", books.get("the-unwanted").genre);
+        assertEquals("non-fiction", books.get("the-unwanted").type);
+        assertEquals("history", books.get("the-unwanted").topics);
+        assertEquals("adventure", books.get("pirates").genre);
+        assertEquals("fiction", books.get("pirates").type);
+        assertNull(books.get("pirates").topics);
+    }
+
+    @Test
+    void keepsFullTextIndexesInStepWithTheRebuiltTables() throws SQLException {
+        assertEquals(Collections.singletonList("the-haunting-of-gillespie-house"),
+                databaseHelper.getMatchingKeys(DatabaseHelper.TextIndex.BOOKCAVE_BOOKS, "gillespie"));
+        assertEquals(Collections.singletonList("another-horror"),
+                databaseHelper.getMatchingKeys(DatabaseHelper.TextIndex.BOOKCAVE_BOOKS, "lighthouse"));
+        assertEquals(Collections.singletonList("the-unwanted"),
+                databaseHelper.getMatchingKeys(DatabaseHelper.TextIndex.COMMONSENSEMEDIA_BOOKS, "refugees"));
+        // The triggers which maintain the indexes still fire.
+        final BookCave.Book book = new BookCave.Book();
+        book.id = "a-new-book";
+        book.title = "A New Book";
+        book.authors = "Someone New";
+        book.summary = "A haunted windmill.";
+        book.genres = "Fiction/Horror";
+        book.lastUpdated = 4000L;
+        databaseHelper.insert(book);
+        assertEquals(Collections.singletonList("a-new-book"),
+                databaseHelper.getMatchingKeys(DatabaseHelper.TextIndex.BOOKCAVE_BOOKS, "windmill"));
+        assertEquals("Fiction/Horror", databaseHelper.getBookCaveBook("a-new-book").genres);
+    }
+
+    @Test
+    void keepsIndexesOfTheRebuiltTables() throws SQLException {
+        final Statement select = databaseHelper.getReadConnection().createStatement();
+        final ResultSet result = select.executeQuery("SELECT name FROM sqlite_master" +
+                " WHERE type='index' AND tbl_name='" + DatabaseHelper.TABLE_COMMONSENSEMEDIA_BOOKS + "';");
+        final List<String> names = new ArrayList<>();
+        while (result.next()) {
+            names.add(result.getString(1));
+        }
+        result.close();
+        select.close();
+        assertTrue(names.contains(DatabaseHelper.TABLE_COMMONSENSEMEDIA_BOOKS + "_asin"));
+        assertTrue(names.contains(DatabaseHelper.TABLE_COMMONSENSEMEDIA_BOOKS + "_last_updated"));
+    }
+}
@@ -0,0 +1,167 @@
+package com.ericrobertbrewer.bookspider.sites.db;
+
+import com.ericrobertbrewer.bookspider.sites.meta.BookCave;
+import com.ericrobertbrewer.bookspider.sites.text.AmazonKindle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatabaseHelperUpsertTest {
+
+    private static final Logger LOGGER = Logger.getLogger(DatabaseHelperUpsertTest.class.getSimpleName());
+
+    private File file;
+    private DatabaseHelper databaseHelper;
+
+    @BeforeEach
+    void connect() throws IOException {
+        file = File.createTempFile("database-helper-upsert-test", ".db");
+        databaseHelper = new DatabaseHelper(LOGGER);
+        databaseHelper.connectToDatabase(file.getPath());
+    }
+
+    @AfterEach
+    void close() {
+        databaseHelper.close();
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    private static AmazonKindle.Book newAmazonBook(String title, long lastUpdated) {
+        final AmazonKindle.Book book = new AmazonKindle.Book();
+        book.asin = "B00TEST001";
+        book.title = title;
+        book.isKindleUnlimited = true;
+        book.price = "$0.99";
+        book.lastUpdated = lastUpdated;
+        return book;
+    }
+
+    private static BookCave.Book newBookCaveBook(String id, String title, long lastUpdated) {
+        final BookCave.Book book = new BookCave.Book();
+        book.id = id;
+        book.title = title;
+        book.authors = "Darcy Coates";
+        book.summary = "Elle minds the Gillespie property.";
+        book.communityRatingsCount = 1;
+        book.genres = "Fiction/Horror";
+        book.lastUpdated = lastUpdated;
+        return book;
+    }
+
+    /**
+     * Write a column behind the helper's back, to tell whether a later upsert rewrites it or only touches the row.
+     */
+    private void setColumn(String table, String key, String keyValue, String column, Object value) throws SQLException {
+        final PreparedStatement update = databaseHelper.getWriteConnection().prepareStatement("UPDATE " + table +
+                " SET " + column + "=?" +
+                " WHERE " + key + "=?;");
+        update.setObject(1, value);
+        update.setString(2, keyValue);
+        assertEquals(1, update.executeUpdate());
+        update.close();
+    }
+
+    private Object getColumn(String table, String key, String keyValue, String column) throws SQLException {
+        final PreparedStatement select = databaseHelper.getReadConnection().prepareStatement("SELECT " + column +
+                " FROM " + table +
+                " WHERE " + key + "=?;");
+        select.setString(1, keyValue);
+        final ResultSet result = select.executeQuery();
+        assertTrue(result.next());
+        final Object value = result.getObject(1);
+        result.close();
+        select.close();
+        return value;
+    }
+
+    @Test
+    void onlyTouchesAnUnchangedAmazonBook() throws SQLException {
+        assertEquals(1, databaseHelper.upsert(newAmazonBook("Title", 1000L)));
+        setColumn(DatabaseHelper.TABLE_AMAZON_BOOKS, "asin", "B00TEST001", "title", "Marker");
+        assertEquals(1, databaseHelper.upsert(newAmazonBook("Title", 2000L)));
+        assertEquals("Marker", getColumn(DatabaseHelper.TABLE_AMAZON_BOOKS, "asin", "B00TEST001", "title"));
+        assertEquals(2000L, ((Number) getColumn(DatabaseHelper.TABLE_AMAZON_BOOKS, "asin", "B00TEST001", "last_updated")).longValue());
+    }
+
+    @Test
+    void rewritesAChangedAmazonBook() throws SQLException {
+        databaseHelper.upsert(newAmazonBook("Title", 1000L));
+        final Object rowId = getColumn(DatabaseHelper.TABLE_AMAZON_BOOKS, "asin", "B00TEST001", "rowid");
+        assertEquals(1, databaseHelper.upsert(newAmazonBook("New Title", 2000L)));
+        final AmazonKindle.Book book = databaseHelper.getAmazonBook("B00TEST001");
+        assertEquals("New Title", book.title);
+        assertEquals(2000L, book.lastUpdated);
+        assertEquals(rowId, getColumn(DatabaseHelper.TABLE_AMAZON_BOOKS, "asin", "B00TEST001", "rowid"));
+    }
+
+    @Test
+    void rewritesALegacyAmazonBookWithoutAHashOnce() throws SQLException {
+        databaseHelper.upsert(newAmazonBook("Title", 1000L));
+        // As saved before content hashes existed.
+        setColumn(DatabaseHelper.TABLE_AMAZON_BOOKS, "asin", "B00TEST001", "content_hash", null);
+        setColumn(DatabaseHelper.TABLE_AMAZON_BOOKS, "asin", "B00TEST001", "title", "Marker");
+        databaseHelper.upsert(newAmazonBook("Title", 2000L));
+        assertEquals("Title", getColumn(DatabaseHelper.TABLE_AMAZON_BOOKS, "asin", "B00TEST001", "title"));
+        assertNotNull(getColumn(DatabaseHelper.TABLE_AMAZON_BOOKS, "asin", "B00TEST001", "content_hash"));
+        // Now that it has a hash, the next unchanged upsert only touches it.
+        setColumn(DatabaseHelper.TABLE_AMAZON_BOOKS, "asin", "B00TEST001", "title", "Marker");
+        databaseHelper.upsert(newAmazonBook("Title", 3000L));
+        assertEquals("Marker", getColumn(DatabaseHelper.TABLE_AMAZON_BOOKS, "asin", "B00TEST001", "title"));
+        assertEquals(3000L, ((Number) getColumn(DatabaseHelper.TABLE_AMAZON_BOOKS, "asin", "B00TEST001", "last_updated")).longValue());
+    }
+
+    @Test
+    void touchesUnchangedAndRewritesChangedBookCaveBooksInOneBatch() throws SQLException {
+        databaseHelper.upsertBookCaveBooks(Arrays.asList(
+                newBookCaveBook("unchanged", "Unchanged", 1000L),
+                newBookCaveBook("changed", "Changed", 1000L)));
+        databaseHelper.updateBookCaveBookAsin("changed", "B00TEST002");
+        setColumn(DatabaseHelper.TABLE_BOOKCAVE_BOOKS, "id", "unchanged", "title", "Marker");
+        final Object rowId = getColumn(DatabaseHelper.TABLE_BOOKCAVE_BOOKS, "id", "changed", "rowid");
+        final BookCave.Book changedAgain = newBookCaveBook("changed", "Changed Again", 2000L);
+        changedAgain.summary = "A haunted windmill.";
+        final int[] results = databaseHelper.upsertBookCaveBooks(Arrays.asList(
+                newBookCaveBook("unchanged", "Unchanged", 2000L),
+                changedAgain,
+                newBookCaveBook("new", "New", 2000L)));
+        assertArrayEquals(new int[]{1, 1, 1}, results);
+        final BookCave.Book unchanged = databaseHelper.getBookCaveBook("unchanged");
+        assertEquals("Marker", unchanged.title);
+        assertEquals(2000L, unchanged.lastUpdated);
+        // Updated in place, so the row keeps its ID (which the full-text index refers to) and its ASIN.
+        final BookCave.Book changed = databaseHelper.getBookCaveBook("changed");
+        assertEquals("Changed Again", changed.title);
+        assertEquals(2000L, changed.lastUpdated);
+        assertEquals("B00TEST002", changed.asin);
+        assertEquals(rowId, getColumn(DatabaseHelper.TABLE_BOOKCAVE_BOOKS, "id", "changed", "rowid"));
+        assertEquals(Collections.singletonList("changed"),
+                databaseHelper.getMatchingKeys(DatabaseHelper.TextIndex.BOOKCAVE_BOOKS, "windmill"));
+        assertEquals("New", databaseHelper.getBookCaveBook("new").title);
+    }
+
+    @Test
+    void rewritesALegacyBookCaveBookWithoutAHashOnce() throws SQLException {
+        databaseHelper.upsertBookCaveBooks(Collections.singletonList(newBookCaveBook("legacy", "Legacy", 1000L)));
+        setColumn(DatabaseHelper.TABLE_BOOKCAVE_BOOKS, "id", "legacy", "content_hash", null);
+        setColumn(DatabaseHelper.TABLE_BOOKCAVE_BOOKS, "id", "legacy", "title", "Marker");
+        databaseHelper.upsertBookCaveBooks(Collections.singletonList(newBookCaveBook("legacy", "Legacy", 2000L)));
+        assertEquals("Legacy", databaseHelper.getBookCaveBook("legacy").title);
+        setColumn(DatabaseHelper.TABLE_BOOKCAVE_BOOKS, "id", "legacy", "title", "Marker");
+        databaseHelper.upsertBookCaveBooks(Collections.singletonList(newBookCaveBook("legacy", "Legacy", 3000L)));
+        final BookCave.Book book = databaseHelper.getBookCaveBook("legacy");
+        assertEquals("Marker", book.title);
+        assertEquals(3000L, book.lastUpdated);
+    }
+}
@@ -0,0 +1,130 @@
+package com.ericrobertbrewer.bookspider.sites.db;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrontierStoreTest {
+
+    private static final Logger LOGGER = Logger.getLogger(FrontierStoreTest.class.getSimpleName());
+
+    private File contentFolder;
+    private FrontierStore frontierStore;
+
+    @BeforeEach
+    void connect() throws IOException {
+        contentFolder = Files.createTempDirectory("frontier-store-test").toFile();
+        frontierStore = newConnectedStore();
+    }
+
+    @AfterEach
+    void close() {
+        frontierStore.close();
+        final File[] files = contentFolder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        contentFolder.delete();
+    }
+
+    private FrontierStore newConnectedStore() {
+        final FrontierStore store = new FrontierStore(LOGGER);
+        store.connectToFrontier(contentFolder);
+        return store;
+    }
+
+    @Test
+    void addsOnlyNewItems() throws SQLException {
+        assertEquals(Arrays.asList("a", "b"), frontierStore.addAll(Arrays.asList("a", "b")));
+        assertEquals(Collections.singletonList("c"), frontierStore.addAll(Arrays.asList("b", "c", "a")));
+        assertEquals(Arrays.asList("a", "b", "c"), frontierStore.getClaimable(System.currentTimeMillis()));
+    }
+
+    @Test
+    void claimsAnItemOnlyOnce() throws SQLException {
+        frontierStore.addAll(Collections.singletonList("a"));
+        assertTrue(frontierStore.claim("a"));
+        assertFalse(frontierStore.claim("a"));
+        assertEquals(Collections.emptyList(), frontierStore.getClaimable(System.currentTimeMillis()));
+        frontierStore.markDone("a");
+        assertFalse(frontierStore.claim("a"));
+        assertFalse(frontierStore.claim("unknown"));
+    }
+
+    @Test
+    void makesFailedItemsClaimableAfterTheirRetryTime() throws SQLException {
+        frontierStore.addAll(Collections.singletonList("a"));
+        assertTrue(frontierStore.claim("a"));
+        frontierStore.markFailed("a", 5000L);
+        assertEquals(Collections.emptyList(), frontierStore.getClaimable(4999L));
+        assertEquals(Collections.singletonList("a"), frontierStore.getClaimable(5000L));
+        assertTrue(frontierStore.claim("a"));
+        assertEquals(Collections.emptyList(), frontierStore.getClaimable(5000L));
+    }
+
+    @Test
+    void requeuesOnlyFinishedItems() throws SQLException {
+        frontierStore.addAll(Arrays.asList("done", "in-flight"));
+        assertTrue(frontierStore.claim("done"));
+        frontierStore.markDone("done");
+        assertTrue(frontierStore.claim("in-flight"));
+        frontierStore.requeue(Arrays.asList("done", "in-flight", "new"));
+        assertEquals(Arrays.asList("done", "new"), frontierStore.getClaimable(System.currentTimeMillis()));
+        final Map<FrontierStore.State, Integer> counts = frontierStore.getCountsByState();
+        assertEquals(Integer.valueOf(2), counts.get(FrontierStore.State.PENDING));
+        assertEquals(Integer.valueOf(1), counts.get(FrontierStore.State.IN_FLIGHT));
+        assertNull(counts.get(FrontierStore.State.DONE));
+    }
+
+    @Test
+    void resetsInFlightItemsOnReconnect() throws SQLException {
+        frontierStore.addAll(Arrays.asList("in-flight", "done", "failed"));
+        assertTrue(frontierStore.claim("in-flight"));
+        assertTrue(frontierStore.claim("done"));
+        frontierStore.markDone("done");
+        assertTrue(frontierStore.claim("failed"));
+        frontierStore.markFailed("failed", Long.MAX_VALUE);
+        // As if the previous run had crashed.
+        frontierStore.close();
+        frontierStore = newConnectedStore();
+        final Map<FrontierStore.State, Integer> counts = frontierStore.getCountsByState();
+        assertEquals(Integer.valueOf(1), counts.get(FrontierStore.State.PENDING));
+        assertEquals(Integer.valueOf(1), counts.get(FrontierStore.State.DONE));
+        assertEquals(Integer.valueOf(1), counts.get(FrontierStore.State.FAILED));
+        assertNull(counts.get(FrontierStore.State.IN_FLIGHT));
+        assertEquals(Collections.singletonList("in-flight"), frontierStore.getClaimable(System.currentTimeMillis()));
+    }
+
+    @Test
+    void importsTheLegacyFileOnlyOnce() throws IOException, SQLException {
+        // The store is still empty, so the file is imported on the next connection.
+        frontierStore.close();
+        final File legacyFile = new File(contentFolder, "frontier.txt");
+        Files.write(legacyFile.toPath(), Arrays.asList("a", "  b  ", "", "a"));
+        frontierStore = newConnectedStore();
+        assertEquals(Arrays.asList("a", "b"), frontierStore.getClaimable(System.currentTimeMillis()));
+        assertTrue(frontierStore.claim("a"));
+        frontierStore.markDone("a");
+        // Items added to the legacy file since are ignored once the store has items.
+        Files.write(legacyFile.toPath(), Arrays.asList("a", "b", "c"));
+        frontierStore.close();
+        frontierStore = newConnectedStore();
+        assertEquals(Collections.singletonList("b"), frontierStore.getClaimable(System.currentTimeMillis()));
+        assertEquals(Integer.valueOf(1), frontierStore.getCountsByState().get(FrontierStore.State.DONE));
+    }
+}
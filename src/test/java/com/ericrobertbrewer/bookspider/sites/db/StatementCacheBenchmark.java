@@ -0,0 +1,114 @@
+package com.ericrobertbrewer.bookspider.sites.db;
+
+import com.ericrobertbrewer.bookspider.sites.meta.BookCave;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.logging.Logger;
+
+/**
+ * Compares statements which are compiled for every call (as {@link DatabaseHelper} used to do) with the statements
+ * cached by {@link AbstractDatabaseHelper#prepareCached(java.sql.Connection, String)}.
+ * Run as a program. Only a temporary database is written.
+ */
+public class StatementCacheBenchmark {
+
+    private static final Logger LOGGER = Logger.getLogger(StatementCacheBenchmark.class.getSimpleName());
+
+    private static final int RECORDS = 20000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException, SQLException {
+        final File file = File.createTempFile("statement-cache-benchmark", ".db");
+        file.deleteOnExit();
+        final DatabaseHelper db = new DatabaseHelper(LOGGER);
+        db.connectToDatabase(file.getPath());
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                final long uncachedInsertNanos = insertUncached(db, round);
+                final long cachedInsertNanos = insertCached(db, round);
+                final long uncachedLookupNanos = lookUpUncached(db);
+                final long cachedLookupNanos = lookUpCached(db);
+                System.out.println("Round " + (round + 1) + ": " +
+                        "insert " + toMicrosPerCall(uncachedInsertNanos) + " -> " + toMicrosPerCall(cachedInsertNanos) + " us/call, " +
+                        "recordExists " + toMicrosPerCall(uncachedLookupNanos) + " -> " + toMicrosPerCall(cachedLookupNanos) + " us/call");
+            }
+        } finally {
+            db.close();
+        }
+    }
+
+    private static long insertUncached(DatabaseHelper db, int round) throws SQLException {
+        final long start = System.nanoTime();
+        db.getWriteConnection().setAutoCommit(false);
+        for (int i = 0; i < RECORDS; i++) {
+            final BookCave.BookRatingLevel level = makeLevel("uncached-" + round, i);
+            final PreparedStatement insert = db.getWriteConnection().prepareStatement("INSERT" +
+                    " INTO " + DatabaseHelper.TABLE_BOOKCAVE_BOOK_RATING_LEVELS + "(" +
+                    "book_id" +
+                    ",rating_id" +
+                    ",title_id" +
+                    ",count" +
+                    ") VALUES(?,?,?,?);");
+            insert.setString(1, level.bookId);
+            insert.setLong(2, db.getStringId(level.rating));
+            insert.setLong(3, db.getStringId(level.title));
+            insert.setInt(4, level.count);
+            insert.executeUpdate();
+            insert.close();
+        }
+        db.getWriteConnection().commit();
+        db.getWriteConnection().setAutoCommit(true);
+        return System.nanoTime() - start;
+    }
+
+    private static long insertCached(DatabaseHelper db, int round) throws SQLException {
+        final long start = System.nanoTime();
+        db.getWriteConnection().setAutoCommit(false);
+        for (int i = 0; i < RECORDS; i++) {
+            db.insert(makeLevel("cached-" + round, i));
+        }
+        db.getWriteConnection().commit();
+        db.getWriteConnection().setAutoCommit(true);
+        return System.nanoTime() - start;
+    }
+
+    private static long lookUpUncached(DatabaseHelper db) throws SQLException {
+        final long start = System.nanoTime();
+        for (int i = 0; i < RECORDS; i++) {
+            final PreparedStatement select = db.getReadConnection().prepareStatement(
+                    "SELECT book_id" +
+                    " FROM " + DatabaseHelper.TABLE_BOOKCAVE_BOOK_RATING_LEVELS +
+                    " WHERE book_id=?;");
+            select.setString(1, "book-" + i);
+            final ResultSet result = select.executeQuery();
+            result.next();
+            select.close();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long lookUpCached(DatabaseHelper db) throws SQLException {
+        final long start = System.nanoTime();
+        for (int i = 0; i < RECORDS; i++) {
+            db.recordExists(DatabaseHelper.TABLE_BOOKCAVE_BOOK_RATING_LEVELS, "book_id", "book-" + i);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static BookCave.BookRatingLevel makeLevel(String prefix, int i) {
+        final BookCave.BookRatingLevel level = new BookCave.BookRatingLevel();
+        level.bookId = "book-" + i;
+        level.rating = prefix;
+        level.title = "Title";
+        level.count = i;
+        return level;
+    }
+
+    private static String toMicrosPerCall(long nanos) {
+        return String.format("%.2f", nanos / 1000.0 / RECORDS);
+    }
+}
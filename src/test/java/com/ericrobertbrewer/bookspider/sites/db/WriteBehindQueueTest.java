@@ -0,0 +1,112 @@
+package com.ericrobertbrewer.bookspider.sites.db;
+
+import com.ericrobertbrewer.bookspider.sites.meta.BookCave;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteBehindQueueTest {
+
+    private static final Logger LOGGER = Logger.getLogger(WriteBehindQueueTest.class.getSimpleName());
+
+    private File file;
+    private DatabaseHelper databaseHelper;
+
+    @BeforeEach
+    void connect() throws IOException {
+        file = File.createTempFile("write-behind-queue-test", ".db");
+        databaseHelper = new DatabaseHelper(LOGGER);
+        databaseHelper.connectToDatabase(file.getPath());
+    }
+
+    @AfterEach
+    void close() {
+        databaseHelper.close();
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    private static BookCave.BookRating newRating(String bookId) {
+        final BookCave.BookRating rating = new BookCave.BookRating();
+        rating.bookId = bookId;
+        rating.rating = "Mild";
+        rating.count = 1;
+        return rating;
+    }
+
+    @Test
+    void writesInBatchesAndCompletesEveryFutureOnClose() throws InterruptedException, SQLException {
+        final List<Integer> batchSizes = new ArrayList<>();
+        final WriteBehindQueue<BookCave.BookRating> queue = new WriteBehindQueue<>("write", databaseHelper, (db, ratings) -> {
+            batchSizes.add(ratings.size());
+            db.insertBookCaveBookRatings(ratings);
+        }, LOGGER);
+        queue.setMaxBatchSize(10);
+        queue.setMaxDelayMillis(60000L);
+        final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            futures.add(queue.submit(newRating("book-" + i)));
+        }
+        queue.close();
+        for (CompletableFuture<Void> future : futures) {
+            assertTrue(future.isDone());
+            assertFalse(future.isCompletedExceptionally());
+        }
+        assertEquals(25, databaseHelper.getBookCaveRatings().size());
+        assertEquals(25, batchSizes.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(batchSizes.size() <= 3);
+    }
+
+    @Test
+    void failsOnlyTheOffendingRecordOfABatch() throws InterruptedException, SQLException {
+        final WriteBehindQueue<BookCave.BookRating> queue = new WriteBehindQueue<>("write", databaseHelper, DatabaseHelper::insertBookCaveBookRatings, LOGGER);
+        final CompletableFuture<Void> first = queue.submit(newRating("book"));
+        final CompletableFuture<Void> duplicate = queue.submit(newRating("book"));
+        final CompletableFuture<Void> other = queue.submit(newRating("other-book"));
+        queue.close();
+        assertFalse(first.isCompletedExceptionally());
+        assertTrue(duplicate.isCompletedExceptionally());
+        assertFalse(other.isCompletedExceptionally());
+        assertEquals(2, databaseHelper.getBookCaveRatings().size());
+    }
+
+    @Test
+    void insertsSingleRecordsWithTheStatementOfABatch() throws InterruptedException, SQLException {
+        final WriteBehindQueue<BookCave.BookRating> queue = new WriteBehindQueue<>("write", databaseHelper, DatabaseHelper::insertBookCaveBookRatings, LOGGER);
+        final CompletableFuture<Void> first = queue.submit(newRating("book"));
+        final CompletableFuture<Void> second = queue.submit(newRating("other-book"));
+        queue.close();
+        assertFalse(first.isCompletedExceptionally());
+        assertFalse(second.isCompletedExceptionally());
+        // The cached statement which ran the batch must also run a single insert.
+        assertEquals(1, databaseHelper.insert(newRating("single-book")));
+        assertEquals(3, databaseHelper.getBookCaveRatings().size());
+    }
+
+    @Test
+    void writesARecordOnceItHasWaitedTheDelayLimit() throws ExecutionException, InterruptedException, SQLException, TimeoutException {
+        final WriteBehindQueue<BookCave.BookRating> queue = new WriteBehindQueue<>("write", databaseHelper, DatabaseHelper::insertBookCaveBookRatings, LOGGER);
+        queue.setMaxBatchSize(10);
+        queue.setMaxDelayMillis(100L);
+        // Let the writer start waiting on the empty queue, as it would between records of a slow scrape.
+        Thread.sleep(500L);
+        final CompletableFuture<Void> future = queue.submit(newRating("book"));
+        // Well before the queue is closed.
+        future.get(5L, TimeUnit.SECONDS);
+        assertEquals(1, databaseHelper.getBookCaveRatings().size());
+        queue.close();
+    }
+}
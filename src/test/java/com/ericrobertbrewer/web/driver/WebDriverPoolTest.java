@@ -0,0 +1,125 @@
+package com.ericrobertbrewer.web.driver;
+
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebDriverPoolTest {
+
+    private static final Logger LOGGER = Logger.getLogger(WebDriverPoolTest.class.getSimpleName());
+
+    /**
+     * A stand-in for a browser which can be made unresponsive.
+     */
+    private static class FakeDriver {
+        final AtomicBoolean isDead = new AtomicBoolean(false);
+        final AtomicBoolean isQuit = new AtomicBoolean(false);
+        final WebDriver driver = (WebDriver) Proxy.newProxyInstance(
+                WebDriver.class.getClassLoader(),
+                new Class<?>[]{WebDriver.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getWindowHandle":
+                            if (isDead.get()) {
+                                throw new WebDriverException("Dead.");
+                            }
+                            return "window";
+                        case "quit":
+                            isQuit.set(true);
+                            return null;
+                        case "navigate":
+                            return Proxy.newProxyInstance(
+                                    WebDriver.Navigation.class.getClassLoader(),
+                                    new Class<?>[]{WebDriver.Navigation.class},
+                                    (navigationProxy, navigationMethod, navigationArgs) -> null);
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    private final List<FakeDriver> launched = new ArrayList<>();
+
+    private synchronized WebDriver newFakeDriver() {
+        final FakeDriver fakeDriver = new FakeDriver();
+        launched.add(fakeDriver);
+        return fakeDriver.driver;
+    }
+
+    @Test
+    void warmUpLaunchesEveryDriverAndLeasesReuseThem() throws InterruptedException {
+        final WebDriverPool pool = new WebDriverPool(this::newFakeDriver, 3, LOGGER);
+        pool.warmUp();
+        assertEquals(3, launched.size());
+        final WebDriver a = pool.lease();
+        final WebDriver b = pool.lease();
+        final WebDriver c = pool.lease();
+        pool.release(a);
+        pool.release(b);
+        pool.release(c);
+        pool.release(pool.lease());
+        assertEquals(3, launched.size());
+        pool.close();
+        for (FakeDriver fakeDriver : launched) {
+            assertTrue(fakeDriver.isQuit.get());
+        }
+    }
+
+    @Test
+    void replacesDeadDriverOnLease() throws InterruptedException {
+        final WebDriverPool pool = new WebDriverPool(this::newFakeDriver, 1, LOGGER);
+        pool.release(pool.lease());
+        launched.get(0).isDead.set(true);
+        pool.release(pool.lease());
+        assertEquals(2, launched.size());
+        assertTrue(launched.get(0).isQuit.get());
+        assertFalse(launched.get(1).isQuit.get());
+        pool.close();
+    }
+
+    @Test
+    void recyclesDriverAfterMaxPageLoads() throws InterruptedException {
+        final WebDriverPool pool = new WebDriverPool(this::newFakeDriver, 1, LOGGER);
+        pool.setMaxPageLoads(2);
+        for (int i = 0; i < 4; i++) {
+            final WebDriver driver = pool.lease();
+            driver.navigate().to("https://example.com/" + i);
+            pool.release(driver);
+        }
+        // Two page loads per driver.
+        assertEquals(2, launched.size());
+        pool.close();
+    }
+
+    @Test
+    void leaseWaitsForReleaseWhenFull() throws InterruptedException {
+        final WebDriverPool pool = new WebDriverPool(this::newFakeDriver, 1, LOGGER);
+        final WebDriver driver = pool.lease();
+        final Thread waiter = new Thread(() -> {
+            try {
+                pool.release(pool.lease());
+            } catch (InterruptedException ignored) {
+            }
+        });
+        waiter.start();
+        waiter.join(200L);
+        assertTrue(waiter.isAlive());
+        pool.release(driver);
+        waiter.join(5000L);
+        assertFalse(waiter.isAlive());
+        assertEquals(1, launched.size());
+        pool.close();
+    }
+}